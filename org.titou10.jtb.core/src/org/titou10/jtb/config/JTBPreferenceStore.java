@@ -88,6 +88,7 @@ public class JTBPreferenceStore extends EventManager implements IPersistentPrefe
 
       setDefault(Constants.PREF_MAX_MESSAGES, Constants.PREF_MAX_MESSAGES_DEFAULT);
       setDefault(Constants.PREF_AUTO_REFRESH_DELAY, Constants.PREF_AUTO_REFRESH_DELAY_DEFAULT);
+      setDefault(Constants.PREF_AUTO_REFRESH_INCREMENTAL, Constants.PREF_AUTO_REFRESH_INCREMENTAL_DEFAULT);
       setDefault(Constants.PREF_SHOW_SYSTEM_OBJECTS, Constants.PREF_SHOW_SYSTEM_OBJECTS_DEFAULT);
       setDefault(Constants.PREF_AUTO_RESIZE_COLS_BROWSER, Constants.PREF_AUTO_RESIZE_COLS_BROWSER_DEFAULT);
       setDefault(Constants.PREF_EDIT_MESSAGE_DND, Constants.PREF_EDIT_MESSAGE_DND_DEFAULT);
@@ -100,6 +101,10 @@ public class JTBPreferenceStore extends EventManager implements IPersistentPrefe
       setDefault(Constants.PREF_SYNCHRONIZE_SESSIONS_MESSAGES, Constants.PREF_SYNCHRONIZE_SESSIONS_MESSAGES_DEFAULT);
       setDefault(Constants.PREF_MESSAGE_TAB_DISPLAY, Constants.PREF_MESSAGE_TAB_DISPLAY_DEFAULT);
       setDefault(Constants.PREF_COLUMNSSET_DEFAULT_NAME, Constants.JTB_COLUMNSSETS_SYSTEM_CS_NAME);
+      setDefault(Constants.PREF_Q_DEPTH_PARALLELISM, Constants.PREF_Q_DEPTH_PARALLELISM_DEFAULT);
+      setDefault(Constants.PREF_DRAIN_PARALLELISM, Constants.PREF_DRAIN_PARALLELISM_DEFAULT);
+      setDefault(Constants.PREF_TOPIC_CAPTURE_FILE, Constants.PREF_TOPIC_CAPTURE_FILE_DEFAULT);
+      setDefault(Constants.PREF_PAYLOAD_SEARCH_CHARSET, Constants.PREF_PAYLOAD_SEARCH_CHARSET_DEFAULT);
    }
 
    public String getPreferenceFileName() {
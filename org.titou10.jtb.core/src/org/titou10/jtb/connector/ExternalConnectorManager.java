@@ -18,6 +18,7 @@ package org.titou10.jtb.connector;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import javax.inject.Inject;
@@ -45,12 +46,15 @@ import org.titou10.jtb.jms.model.JTBConnection;
 import org.titou10.jtb.jms.model.JTBDestination;
 import org.titou10.jtb.jms.model.JTBMessage;
 import org.titou10.jtb.jms.model.JTBMessageTemplate;
+import org.titou10.jtb.jms.model.JTBMessageType;
 import org.titou10.jtb.jms.model.JTBQueue;
 import org.titou10.jtb.jms.model.JTBSession;
 import org.titou10.jtb.jms.model.JTBSessionClientType;
 import org.titou10.jtb.jms.model.JTBTopic;
+import org.titou10.jtb.jms.model.MessageSendBatch;
 import org.titou10.jtb.script.ScriptExecutionEngine;
 import org.titou10.jtb.template.TemplatesManager;
+import org.titou10.jtb.variable.VariableTemplate;
 import org.titou10.jtb.variable.VariablesManager;
 
 /**
@@ -222,7 +226,19 @@ public class ExternalConnectorManager {
                                             String templateName) throws EmptyMessageException, UnknownSessionException,
                                                                  ExecutionException, UnknownDestinationException,
                                                                  UnknownTemplateException {
-      log.debug("postMessageTemplate");
+      return postMessageTemplate(sessionName, destinationName, templateName, 1, 1);
+   }
+
+   // Post "count" messages built from the template, with one transaction every "batchSize" messages
+   // Returns the last message posted
+   public MessageOutput postMessageTemplate(String sessionName,
+                                            String destinationName,
+                                            String templateName,
+                                            int count,
+                                            int batchSize) throws EmptyMessageException, UnknownSessionException,
+                                                           ExecutionException, UnknownDestinationException,
+                                                           UnknownTemplateException {
+      log.debug("postMessageTemplate count={} batchSize={}", count, batchSize);
 
       // Get JTBSession
       JTBConnection jtbConnection = getJTBConnection(sessionName);
@@ -243,29 +259,31 @@ public class ExternalConnectorManager {
       // Get JTBTemplate
       JTBMessageTemplate jtbMessageTemplate = getJTBMessageTemplate(templateName);
 
+      // The payload is parsed once, the variables are resolved for each message
+      VariableTemplate payloadTemplate = VariableTemplate.compile(jtbMessageTemplate.getPayloadText());
+
       try {
-         Message m = jtbConnection.createJMSMessage(jtbMessageTemplate.getJtbMessageType());
-
-         // Resolve variables
-         byte[] payloadBytes = null;
-         switch (jtbMessageTemplate.getJtbMessageType()) {
-            case TEXT:
-               String payload = variablesManager.replaceTemplateVariables(jtbMessageTemplate.getPayloadText());
-               jtbMessageTemplate.setPayloadText(payload);
-               break;
-
-            case BYTES:
-               payloadBytes = jtbMessageTemplate.getPayloadBytes();
-               break;
-            default:
-               break;
+         // One message: send it with the cached producer of the connection
+         if (count == 1) {
+            Message m = jtbConnection.createJMSMessage(jtbMessageTemplate.getJtbMessageType());
+            JTBMessage jtbMessage = buildMessage(jtbMessageTemplate, payloadTemplate, jtbDestination, m);
+            jtbConnection.sendMessage(jtbMessage);
+            return new MessageOutput(jtbMessage, getPayloadBytes(jtbMessageTemplate));
          }
 
-         // Send Message
-         JTBMessage jtbMessage = jtbMessageTemplate.toJTBMessage(jtbDestination, m);
-         jtbDestination.getJtbConnection().sendMessage(jtbMessage);
-
-         return new MessageOutput(jtbMessage, payloadBytes);
+         // Many messages: build and send them with the session of the batch
+         try (MessageSendBatch sendBatch = jtbConnection.openSendBatch(batchSize)) {
+            JTBMessage jtbMessage = null;
+            JTBMessageTemplate t = null;
+            for (int i = 0; i < count; i++) {
+               // Variables are resolved for each message
+               t = new JTBMessageTemplate(jtbMessageTemplate);
+               Message m = sendBatch.createJMSMessage(t.getJtbMessageType());
+               jtbMessage = buildMessage(t, payloadTemplate, jtbDestination, m);
+               sendBatch.send(jtbMessage);
+            }
+            return jtbMessage == null ? null : new MessageOutput(jtbMessage, getPayloadBytes(t));
+         }
       } catch (Exception e) {
          log.error("Exception when posting message to destination '{}::{}' with template",
                    sessionName,
@@ -303,6 +321,21 @@ public class ExternalConnectorManager {
    // ----------------------------
    // Helpers
    // ----------------------------
+   // Build a message from the template, with the variables of the payload resolved
+   private JTBMessage buildMessage(JTBMessageTemplate t,
+                                   VariableTemplate payloadTemplate,
+                                   JTBDestination jtbDestination,
+                                   Message m) throws JMSException {
+      if (t.getJtbMessageType() == JTBMessageType.TEXT) {
+         t.setPayloadText(variablesManager.replaceTemplateVariables(payloadTemplate, Collections.emptyMap()));
+      }
+      return t.toJTBMessage(jtbDestination, m);
+   }
+
+   private byte[] getPayloadBytes(JTBMessageTemplate t) {
+      return t.getJtbMessageType() == JTBMessageType.BYTES ? t.getPayloadBytes() : null;
+   }
+
    private JTBConnection getJTBConnection(String sessionName) throws UnknownSessionException {
       if (sessionName == null) {
          throw new UnknownSessionException(UNSPECIFIED);
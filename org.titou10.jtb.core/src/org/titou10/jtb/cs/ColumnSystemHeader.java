@@ -26,6 +26,8 @@ import javax.jms.Message;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.titou10.jtb.jms.model.JTBMessage;
+import org.titou10.jtb.jms.model.JTBMessageProjection;
 import org.titou10.jtb.jms.model.JTBMessageType;
 import org.titou10.jtb.jms.util.JTBDeliveryMode;
 import org.titou10.jtb.util.Utils;
@@ -97,6 +99,58 @@ public enum ColumnSystemHeader {
       return csh == null ? false : csh.isTimestamp();
    }
 
+   // Read the value from the headers kept in the JTBMessage, without calling the JMS Message
+   public Object getColumnSystemValue(JTBMessage jtbMessage, boolean withLong) {
+      JTBMessageProjection p = jtbMessage.getProjection();
+      if (p == null) {
+         return getColumnSystemValue(jtbMessage.getJmsMessage(), withLong);
+      }
+
+      switch (this) {
+         case JMS_CORRELATION_ID:
+            return p.getJmsCorrelationID() == null ? "" : p.getJmsCorrelationID();
+
+         case JMS_DELIVERY_MODE:
+            StringBuilder deliveryMode = new StringBuilder(32);
+            deliveryMode.append(JTBDeliveryMode.fromValue(p.getJmsDeliveryMode()).name());
+            deliveryMode.append(" (");
+            deliveryMode.append(p.getJmsDeliveryMode());
+            deliveryMode.append(")");
+            return deliveryMode.toString();
+
+         case JMS_DELIVERY_TIME:
+            return p.hasJmsDeliveryTime() ? Utils.formatTimestamp(p.getJmsDeliveryTime(), withLong) : "";
+
+         case JMS_DESTINATION:
+            return p.getJmsDestination() == null ? "" : p.getJmsDestination();
+
+         case JMS_EXPIRATION:
+            return Utils.formatTimestamp(p.getJmsExpiration(), withLong);
+
+         case JMS_MESSAGE_ID:
+            return p.getJmsMessageID();
+
+         case JMS_PRIORITY:
+            return Integer.valueOf(p.getJmsPriority());
+
+         case JMS_REDELIVERED:
+            return Boolean.valueOf(p.isJmsRedelivered());
+
+         case JMS_REPLY_TO:
+            return p.getJmsReplyTo() == null ? "" : p.getJmsReplyTo();
+
+         case JMS_TIMESTAMP:
+            return Utils.formatTimestamp(p.getJmsTimestamp(), withLong);
+
+         case JMS_TYPE:
+            return p.getJmsType();
+
+         case MESSAGE_TYPE:
+            return p.getJtbMessageType().getDescription();
+      }
+      return "";
+   }
+
    public Object getColumnSystemValue(Message m, boolean withLong) {
 
       // DF: could probably better be implemented via a java 8 Function<>
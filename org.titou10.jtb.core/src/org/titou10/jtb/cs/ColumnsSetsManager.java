@@ -55,6 +55,8 @@ import org.titou10.jtb.cs.gen.ColumnsSets;
 import org.titou10.jtb.cs.gen.UserProperty;
 import org.titou10.jtb.cs.gen.UserPropertyType;
 import org.titou10.jtb.jms.model.JTBDestination;
+import org.titou10.jtb.jms.model.JTBMessage;
+import org.titou10.jtb.jms.model.JTBMessageProjection;
 import org.titou10.jtb.jms.model.JTBSession;
 import org.titou10.jtb.util.Constants;
 
@@ -336,11 +338,28 @@ public class ColumnsSetsManager {
    }
 
    public String getColumnUserPropertyValue(Message m, Column c) {
+      return getColumnUserPropertyValue(m, null, c);
+   }
+
+   // Read the value from the JTBMessage, the JMS Message is only called the first time the property is requested
+   public String getColumnUserPropertyValue(JTBMessage jtbMessage, Column c) {
+      JTBMessageProjection p = jtbMessage.getProjection();
+      if (p == null) {
+         return getColumnUserPropertyValue(jtbMessage.getJmsMessage(), null, c);
+      }
+      return getColumnUserPropertyValue(null, jtbMessage, c);
+   }
+
+   private String getColumnUserPropertyValue(Message m, JTBMessage jtbMessage, Column c) {
 
       String val = null;
       UserProperty u = c.getUserProperty();
       try {
-         val = m.getStringProperty(u.getUserPropertyName());
+         if (jtbMessage == null) {
+            val = m.getStringProperty(u.getUserPropertyName());
+         } else {
+            val = jtbMessage.getProjection().getStringProperty(u.getUserPropertyName(), jtbMessage);
+         }
          if (val == null) {
             return "";
          }
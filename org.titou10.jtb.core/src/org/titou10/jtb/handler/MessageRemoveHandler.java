@@ -16,16 +16,22 @@
  */
 package org.titou10.jtb.handler;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.jms.JMSException;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.e4.core.di.annotations.CanExecute;
 import org.eclipse.e4.core.di.annotations.Execute;
 import org.eclipse.e4.core.di.annotations.Optional;
 import org.eclipse.e4.core.services.events.IEventBroker;
+import org.eclipse.e4.ui.di.UISynchronize;
 import org.eclipse.e4.ui.model.application.ui.menu.MMenuItem;
 import org.eclipse.e4.ui.services.IServiceConstants;
 import org.eclipse.jface.dialogs.MessageDialog;
@@ -48,7 +54,10 @@ import org.titou10.jtb.util.Utils;
  */
 public class MessageRemoveHandler {
 
-   private static final Logger log = LoggerFactory.getLogger(MessageRemoveHandler.class);
+   private static final Logger log                = LoggerFactory.getLogger(MessageRemoveHandler.class);
+
+   // Number of messages removed in one transaction
+   private static final int    REMOVE_CHUNK_SIZE  = 100;
 
    @Inject
    private IEventBroker        eventBroker;
@@ -57,7 +66,9 @@ public class MessageRemoveHandler {
    private JTBStatusReporter   jtbStatusReporter;
 
    @Execute
-   public void execute(Shell shell, @Named(IServiceConstants.ACTIVE_SELECTION) @Optional List<JTBMessage> selection) {
+   public void execute(Shell shell,
+                       UISynchronize sync,
+                       @Named(IServiceConstants.ACTIVE_SELECTION) @Optional List<JTBMessage> selection) {
       log.debug("execute");
 
       String msg;
@@ -78,15 +89,20 @@ public class MessageRemoveHandler {
          // All messages are from the same Queue...
          JTBDestination jtbDestination = jtbMessage1.getJtbDestination();
 
-         // Remove Messages
+         // Many messages: remove them in chunks, in the background
+         if (!(Utils.containsOneElement(selection))) {
+            RemoveMessagesJob job = new RemoveMessagesJob(sync, jtbDestination, new ArrayList<>(selection));
+            job.schedule();
+            return;
+         }
+
+         // Remove Message
          BusyIndicator.showWhile(Display.getCurrent(), new Runnable() {
 
             @Override
             public void run() {
                try {
-                  for (JTBMessage jtbMessage : selection) {
-                     jtbDestination.getJtbConnection().removeMessage(jtbMessage);
-                  }
+                  jtbDestination.getJtbConnection().removeMessage(jtbMessage1);
                } catch (JMSException e) {
                   jtbStatusReporter.showError("Exception occurred when removing messages", e, "");
                }
@@ -132,4 +148,68 @@ public class MessageRemoveHandler {
 
       return Utils.disableMenu(menuItem);
    }
+
+   // --------------
+   // Helper Classes
+   // --------------
+
+   /**
+    * Job that removes messages in chunks, with one transaction per chunk
+    */
+   private final class RemoveMessagesJob extends Job {
+
+      private final UISynchronize    sync;
+      private final JTBDestination   jtbDestination;
+      private final List<JTBMessage> jtbMessages;
+
+      private RemoveMessagesJob(UISynchronize sync, JTBDestination jtbDestination, List<JTBMessage> jtbMessages) {
+         super("Removing " + jtbMessages.size() + " messages from " + jtbDestination.getName());
+         this.sync = sync;
+         this.jtbDestination = jtbDestination;
+         this.jtbMessages = jtbMessages;
+      }
+
+      @Override
+      protected IStatus run(IProgressMonitor monitor) {
+         int nbMessages = jtbMessages.size();
+         monitor.beginTask(getName(), nbMessages);
+
+         int nbRemoved = 0;
+         int nbProcessed = 0;
+         try {
+            while ((nbProcessed < nbMessages) && (!monitor.isCanceled())) {
+               List<JTBMessage> chunk = jtbMessages.subList(nbProcessed, Math.min(nbProcessed + REMOVE_CHUNK_SIZE, nbMessages));
+               nbRemoved += jtbDestination.getJtbConnection().removeMessages(chunk);
+               nbProcessed += chunk.size();
+
+               monitor.worked(chunk.size());
+               monitor.subTask(nbRemoved + "/" + nbMessages + " messages removed");
+            }
+         } catch (JMSException e) {
+            log.error("Exception occurred when removing messages", e);
+            sync.asyncExec(() -> jtbStatusReporter.showError("Exception occurred when removing messages", e, ""));
+         } finally {
+            monitor.done();
+         }
+
+         log.info("{} messages removed from {} out of {} selected", nbRemoved, jtbDestination.getName(), nbMessages);
+         if ((nbProcessed == nbMessages) && (nbRemoved < nbMessages)) {
+            String msg = (nbMessages - nbRemoved) + " messages were not found in the queue (already consumed?)";
+            sync.asyncExec(() -> jtbStatusReporter.showWarning(msg, null, ""));
+         }
+
+         // Refresh List of Message
+         sync.asyncExec(() -> eventBroker.send(Constants.EVENT_REFRESH_QUEUE_MESSAGES, jtbDestination));
+
+         return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+      }
+
+      @Override
+      public boolean belongsTo(Object family) {
+         if (family instanceof String) {
+            return Constants.JTB_JOBS_FAMILY.equals(family);
+         }
+         return false;
+      }
+   }
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2015 Denis Forveille titou10.titou10@gmail.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.titou10.jtb.jms.model;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * A MessageProducer that is reused to send many JTBMessages
+ *
+ * Delivery mode, priority and time to live are passed on each send. The delivery delay can only be set on the producer, so the
+ * value currently set is kept to only call setDeliveryDelay() when it changes
+ *
+ * @author Denis Forveille
+ *
+ */
+final class CachedMessageProducer {
+
+   private static final Logger   log = LoggerFactory.getLogger(CachedMessageProducer.class);
+
+   private final MessageProducer producer;
+   private long                  deliveryDelay;
+
+   CachedMessageProducer(MessageProducer producer) {
+      this.producer = producer;
+      this.deliveryDelay = 0L;
+   }
+
+   void send(JTBMessage jtbMessage, Session jmsSession) throws JMSException {
+      Message m = jtbMessage.getJmsMessage();
+
+      if (jtbMessage.getReplyToDestinationName() != null) {
+         m.setJMSReplyTo(jmsSession.createQueue(jtbMessage.getReplyToDestinationName()));
+      }
+      setDeliveryDelay(jtbMessage.getDeliveryDelay());
+
+      int deliveryMode = jtbMessage.getDeliveryMode() == null ? Message.DEFAULT_DELIVERY_MODE
+               : jtbMessage.getDeliveryMode().intValue();
+      int priority = jtbMessage.getPriority() == null ? Message.DEFAULT_PRIORITY : jtbMessage.getPriority();
+      long timeToLive = jtbMessage.getTimeToLive() == null ? Message.DEFAULT_TIME_TO_LIVE : jtbMessage.getTimeToLive();
+
+      producer.send(m, deliveryMode, priority, timeToLive);
+   }
+
+   void close() {
+      try {
+         producer.close();
+      } catch (JMSException e) {
+         log.warn("Exception occurred when closing MessageProducer. Ignoring: {}", e.getMessage());
+      }
+   }
+
+   // -------
+   // Helpers
+   // -------
+
+   private void setDeliveryDelay(Long delay) {
+      long d = delay == null ? 0L : delay;
+      if (d == deliveryDelay) {
+         return;
+      }
+      try {
+         producer.setDeliveryDelay(d);
+         deliveryDelay = d;
+      } catch (Throwable t) {
+         log.warn("JMS 2.0 feature 'setDeliveryDelay' failed. ignoring. Msg: {}", t.getMessage());
+      }
+   }
+}
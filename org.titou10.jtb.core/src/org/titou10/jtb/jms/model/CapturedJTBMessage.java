@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2015 Denis Forveille titou10.titou10@gmail.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.titou10.jtb.jms.model;
+
+import java.lang.ref.SoftReference;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * A JTBMessage stored in a MessageCaptureFile
+ *
+ * The JMS Message is read from the file the first time it is needed, and kept through a SoftReference so it can be reclaimed
+ * when memory is low. JMS Messages are created on the main session of the JTBConnection: this must only be called from the UI
+ * thread
+ *
+ * @author Denis Forveille
+ *
+ */
+final class CapturedJTBMessage extends JTBMessage {
+
+   private static final Logger      log = LoggerFactory.getLogger(CapturedJTBMessage.class);
+
+   private final MessageCaptureFile captureFile;
+   private final int                index;
+
+   private SoftReference<Message>   jmsMessageRef;
+
+   // ------------------------
+   // Constructor
+   // ------------------------
+
+   CapturedJTBMessage(JTBMessage jtbMessage, MessageCaptureFile captureFile, int index) {
+      super(jtbMessage);
+      this.captureFile = captureFile;
+      this.index = index;
+      this.jmsMessageRef = new SoftReference<>(null);
+   }
+
+   // ------------------------
+   // JTBMessage
+   // ------------------------
+
+   @Override
+   public Message getJmsMessage() {
+      Message jmsMessage = jmsMessageRef.get();
+      if (jmsMessage == null) {
+         try {
+            jmsMessage = captureFile.load(index, getJtbDestination());
+            jmsMessageRef = new SoftReference<>(jmsMessage);
+         } catch (JMSException e) {
+            log.error("Exception occurred when loading captured message #{}", index, e);
+            return emptyMessage();
+         }
+      }
+      return jmsMessage;
+   }
+
+   @Override
+   public void setJmsMessage(Message jmsMessage) {
+      jmsMessageRef = new SoftReference<>(jmsMessage);
+   }
+
+   // -------
+   // Helpers
+   // -------
+
+   // Message shown when the captured message can not be read
+   private Message emptyMessage() {
+      try {
+         Message jmsMessage = getJtbDestination().getJtbConnection().createJMSMessage(JTBMessageType.MESSAGE);
+         jmsMessage.setJMSMessageID("Captured message #" + index + " not available");
+         return jmsMessage;
+      } catch (JMSException e) {
+         log.error("Exception occurred when creating empty message", e);
+         return null;
+      }
+   }
+
+   @Override
+   public String toString() {
+      return "CapturedJTBMessage [jtbDestination=" + getJtbDestination().getName() + ", index=" + index + "]";
+   }
+}
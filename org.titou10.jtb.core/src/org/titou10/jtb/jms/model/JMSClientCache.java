@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2015 Denis Forveille titou10.titou10@gmail.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.titou10.jtb.jms.model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * Cache of the MessageProducers created on the main Session of a JTBConnection
+ *
+ * Producers are keyed by destination. The least recently used producer is closed when the cache is full, and producers not used
+ * for more than "idleTimeoutMs" are closed by a background task. The cache lives as long as the JTBConnection: it is opened on
+ * the Session when the JTBConnection connects, and invalidated when it disconnects.
+ *
+ * Consumers are not cached: an idle consumer on a queue would hold prefetched messages that the other consumers could not get.
+ *
+ * The Session is not thread safe: callers must hold the lock on the cache while they use the Session and the producers the cache
+ * returns
+ *
+ * @author Denis Forveille
+ *
+ */
+final class JMSClientCache {
+
+   private static final Logger                   log     = LoggerFactory.getLogger(JMSClientCache.class);
+
+   private static final ScheduledExecutorService EVICTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+                                                            Thread t = new Thread(r, "JTB-ClientCache-Evictor");
+                                                            t.setDaemon(true);
+                                                            return t;
+                                                         });
+
+   private final long                            idleTimeoutMs;
+   private final Map<Destination, CacheEntry>    entries;
+
+   private Session                               jmsSession;
+   private ScheduledFuture<?>                    evictionTask;
+
+   // ------------------------
+   // Constructor
+   // ------------------------
+
+   JMSClientCache(final int maxSize, long idleTimeoutMs) {
+      this.idleTimeoutMs = idleTimeoutMs;
+      this.jmsSession = null;
+
+      // LinkedHashMap in access order: the eldest entry is the least recently used
+      this.entries = new LinkedHashMap<Destination, CacheEntry>(maxSize, 0.75f, true) {
+         private static final long serialVersionUID = 1L;
+
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<Destination, CacheEntry> eldest) {
+            if (size() > maxSize) {
+               log.debug("Cache full. Closing producer on {}", eldest.getKey());
+               eldest.getValue().close();
+               return true;
+            }
+            return false;
+         }
+      };
+   }
+
+   // ------------------------
+   // Business Interface
+   // ------------------------
+
+   // Start caching the producers created on the Session
+   synchronized void open(Session jmsSession) {
+      this.jmsSession = jmsSession;
+
+      long period = Math.max(1000L, idleTimeoutMs / 2);
+      this.evictionTask = EVICTOR.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+   }
+
+   synchronized CachedMessageProducer getProducer(Destination destination) throws JMSException {
+      checkNotClosed();
+
+      CacheEntry entry = entries.get(destination);
+      if (entry == null) {
+         log.debug("Creating producer on {}", destination);
+         entry = new CacheEntry(new CachedMessageProducer(jmsSession.createProducer(destination)));
+         entries.put(destination, entry);
+      }
+      entry.lastUsed = System.currentTimeMillis();
+      return entry.producer;
+   }
+
+   // Close all the producers. The cache can not be used until it is opened again
+   synchronized void invalidate() {
+      if (jmsSession == null) {
+         return;
+      }
+      jmsSession = null;
+
+      evictionTask.cancel(false);
+      evictionTask = null;
+
+      log.debug("Invalidating cache. Closing {} producers", entries.size());
+      for (CacheEntry entry : entries.values()) {
+         entry.close();
+      }
+      entries.clear();
+   }
+
+   // -------
+   // Helpers
+   // -------
+
+   private synchronized void evictIdle() {
+      long limit = System.currentTimeMillis() - idleTimeoutMs;
+      for (Iterator<Map.Entry<Destination, CacheEntry>> i = entries.entrySet().iterator(); i.hasNext();) {
+         Map.Entry<Destination, CacheEntry> e = i.next();
+         if (e.getValue().lastUsed < limit) {
+            log.debug("Closing idle producer on {}", e.getKey());
+            e.getValue().close();
+            i.remove();
+         }
+      }
+   }
+
+   private void checkNotClosed() {
+      if (jmsSession == null) {
+         throw new IllegalStateException("The cache is not open");
+      }
+   }
+
+   // --------------
+   // Helper Classes
+   // --------------
+
+   private static final class CacheEntry {
+      private final CachedMessageProducer producer;
+      private long                        lastUsed;
+
+      private CacheEntry(CachedMessageProducer producer) {
+         this.producer = producer;
+      }
+
+      private void close() {
+         producer.close();
+      }
+   }
+}
@@ -17,6 +17,8 @@
 package org.titou10.jtb.jms.model;
 
 import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -37,7 +39,6 @@ import javax.jms.Message;
 import javax.jms.MessageConsumer;
 import javax.jms.MessageEOFException;
 import javax.jms.MessageListener;
-import javax.jms.MessageProducer;
 import javax.jms.ObjectMessage;
 import javax.jms.Queue;
 import javax.jms.QueueBrowser;
@@ -71,6 +72,11 @@ public class JTBConnection {
 
    private static final Long    RECEIVE_MAX_WAIT_REMOVE       = 1 * 100L;                                    // 1 secs
    private static final Long    RECEIVE_MAX_WAIT_REMOVE_ID    = 30 * 1000L;                                  // 30 seconds
+   private static final Long    RECEIVE_MAX_WAIT_REMOVE_NEXT  = 2 * 1000L;                                   // 2 seconds
+   private static final long    SEND_BATCH_MAX_WAIT           = 1 * 1000L;                                   // 1 second
+   private static final int     CLIENT_CACHE_MAX_SIZE         = 32;
+   private static final int     EMPTY_QUEUE_BATCH_SIZE        = 500;
+   private static final long    CLIENT_CACHE_IDLE_TIMEOUT     = 30 * 1000L;                                  // 30 seconds
 
    private static final String  UNKNOWN                       = "Unknown";
    private static final String  JMSMESSAGEID_STD_PREFIX       = "ID:";
@@ -89,6 +95,7 @@ public class JTBConnection {
    private Connection           jmsConnection;
    private Session              jmsSession;
    private Map<String, Session> jmsAsynchronousSessions       = new HashMap<>();
+   private final JMSClientCache clientCache;
 
    // Connection Metadata
    private String               metaJMSVersion                = UNKNOWN;
@@ -129,6 +136,9 @@ public class JTBConnection {
 
       this.connected = false;
 
+      // Producers created on the main session are reused between calls. The cache is also the lock on the main session
+      this.clientCache = new JMSClientCache(CLIENT_CACHE_MAX_SIZE, CLIENT_CACHE_IDLE_TIMEOUT);
+
       if (df != null) {
          this.apply = df.isApply();
          this.filterPattern = df.getPattern();
@@ -289,7 +299,10 @@ public class JTBConnection {
 
       buildFilteredSortedSet();
 
-      connected = true;
+      synchronized (clientCache) {
+         clientCache.open(jmsSession);
+         connected = true;
+      }
    }
 
    public void rescanDestinations() throws Exception {
@@ -331,6 +344,12 @@ public class JTBConnection {
          return;
       }
 
+      // Calls using the main session after this point fail with "not connected"
+      synchronized (clientCache) {
+         clientCache.invalidate();
+         connected = false;
+      }
+
       // No need to close sessions, producers etc . They will be closed when closing connection
       try {
          jmsConnection.stop();
@@ -339,7 +358,6 @@ public class JTBConnection {
          log.warn("Exception occured when disconnecting. Ignoring: {}", e.getMessage());
       }
 
-      connected = false;
       // jmsSessionAsynchronous = null;
       jmsSession = null;
       jmsAsynchronousSessions.clear();
@@ -383,6 +401,15 @@ public class JTBConnection {
       return null; // Impossible
    }
 
+   // Destination with the given name, ie to set the JMSReplyTo header of a message rebuilt from its name
+   Destination getJmsDestination(String destinationName, boolean topic) throws JMSException {
+      JTBDestination jtbDestination = getJTBDestinationByName(destinationName);
+      if ((jtbDestination != null) && (jtbDestination.isJTBTopic() == topic)) {
+         return jtbDestination.getJmsDestination();
+      }
+      return topic ? jmsSession.createTopic(destinationName) : jmsSession.createQueue(destinationName);
+   }
+
    public Message cloneJMSMessage(Message message) throws JMSException {
       log.debug("cloneJMSMessage {}", message);
 
@@ -520,94 +547,117 @@ public class JTBConnection {
       }
       sb.append("'");
 
-      try (MessageConsumer consumer = jmsSession.createConsumer(jtbDestination.getJmsDestination(), sb.toString());) {
-         message = consumer.receive(RECEIVE_MAX_WAIT_REMOVE_ID);
-         if (message == null) {
-            throw new JMSException("JMSToolBox was not able to receive the message within " + RECEIVE_MAX_WAIT_REMOVE_ID + "ms");
+      // The selector is specific to this message: the consumer is not cached
+      synchronized (clientCache) {
+         checkConnected();
+         try (MessageConsumer consumer = jmsSession.createConsumer(jtbDestination.getJmsDestination(), sb.toString());) {
+            message = consumer.receive(RECEIVE_MAX_WAIT_REMOVE_ID);
+            if (message == null) {
+               throw new JMSException("JMSToolBox was not able to receive the message within " + RECEIVE_MAX_WAIT_REMOVE_ID + "ms");
+            }
          }
-      }
 
-      jmsSession.commit();
+         jmsSession.commit();
+      }
    }
 
-   public List<JTBMessage> removeFirstMessages(JTBDestination jtbDestination, int limit) throws JMSException {
-      log.debug("Remove First {} Message from {}", limit, jtbDestination);
+   /**
+    * Remove a set of messages from the same queue in one transaction. The caller is responsible for splitting large sets in chunks
+    *
+    * @return the number of messages removed
+    */
+   public int removeMessages(List<JTBMessage> jtbMessages) throws JMSException {
+      if (jtbMessages.isEmpty()) {
+         return 0;
+      }
 
-      List<JTBMessage> jtbMessages = new ArrayList<>(limit);
+      JTBDestination jtbDestination = jtbMessages.get(0).getJtbDestination();
+      log.debug("Remove {} Messages from {}", jtbMessages.size(), jtbDestination);
+
+      List<String> jmsMessageIDs = new ArrayList<>(jtbMessages.size());
+      for (JTBMessage jtbMessage : jtbMessages) {
+         String jmsMessageID = jtbMessage.getJmsMessage().getJMSMessageID();
+         if (qm.mustRemoveIDFromJMSMessageID()) {
+            jmsMessageID = jmsMessageID.substring(JMSMESSAGEID_STD_PREFIX_START);
+         }
+         jmsMessageIDs.add(jmsMessageID);
+      }
 
-      Message message;
-      int n = 0;
-      try (MessageConsumer consumer = jmsSession.createConsumer(jtbDestination.getJmsDestination());) {
-         while (n++ < limit) {
-            message = consumer.receive(RECEIVE_MAX_WAIT_REMOVE); // Seems necessary for ActiveMQ instead of receiveNoWait()
-            if (message != null) {
-               if (qm.manulAcknoledge()) {
-                  message.acknowledge();
+      // Use the admin API of the Q Manager if it supports it
+      Integer nbRemoved = qm.removeMessages(jmsConnection, jtbDestination.getName(), jmsMessageIDs);
+      if (nbRemoved != null) {
+         return nbRemoved;
+      }
+
+      // Consume the messages with one selector for all the messages: JMSMessageID IN ('id1','id2',...)
+      StringBuilder sb = new StringBuilder(32 + (jmsMessageIDs.size() * 64));
+      sb.append("JMSMessageID IN (");
+      for (int i = 0; i < jmsMessageIDs.size(); i++) {
+         if (i > 0) {
+            sb.append(",");
+         }
+         sb.append("'").append(jmsMessageIDs.get(i).replace("'", "''")).append("'");
+      }
+      sb.append(")");
+
+      int nb = 0;
+      synchronized (clientCache) {
+         checkConnected();
+         try (MessageConsumer consumer = jmsSession.createConsumer(jtbDestination.getJmsDestination(), sb.toString());) {
+            // Some brokers are slow to evaluate the selector: wait longer for the first message
+            long wait = RECEIVE_MAX_WAIT_REMOVE_ID;
+            while (nb < jmsMessageIDs.size()) {
+               Message message = consumer.receive(wait);
+               if (message == null) {
+                  break;
                }
-               jtbMessages.add(new JTBMessage(jtbDestination, message));
-            } else {
-               break;
+               nb++;
+               wait = RECEIVE_MAX_WAIT_REMOVE_NEXT;
             }
          }
+
+         jmsSession.commit();
       }
 
-      jmsSession.commit();
+      return nb;
+   }
 
-      return jtbMessages;
+   public List<JTBMessage> removeFirstMessages(JTBDestination jtbDestination, int limit) throws JMSException {
+      log.debug("Remove First {} Message from {}", limit, jtbDestination);
 
+      // The messages are returned to the caller: keep their order with one consumer
+      List<JTBMessage> jtbMessages = new ArrayList<>(limit);
+      newQueueDrainer(1).drain(jtbDestination, limit, jtbMessages);
+      return jtbMessages;
    }
 
    public int emptyQueue(JTBQueue jtbQueue) throws JMSException {
-      Message message = null;
-      Integer nb = 0;
-      try (MessageConsumer consumer = jmsSession.createConsumer(jtbQueue.getJmsDestination());) {
-         do {
-            message = consumer.receive(RECEIVE_MAX_WAIT_REMOVE); // Seems necessary for ActiveMQ instead of receiveNoWait()
-            if (message != null) {
-               if (qm.manulAcknoledge()) {
-                  message.acknowledge();
-               }
-               nb++;
-            }
-         } while (message != null);
+      log.debug("emptyQueue {}", jtbQueue);
+
+      // Use the admin API of the Q Manager if it supports it
+      Integer nbPurged = qm.purgeQueue(jmsConnection, jtbQueue.getName());
+      if (nbPurged != null) {
+         log.debug("{} messages purged from {}", nbPurged, jtbQueue);
+         return nbPurged;
       }
-      jmsSession.commit();
 
-      return nb;
+      // Drain the queue with parallel consumers, with one transaction per batch of messages. The order does not matter here
+      return newQueueDrainer(ps.getInt(Constants.PREF_DRAIN_PARALLELISM)).drain(jtbQueue, Integer.MAX_VALUE, null);
+   }
+
+   private QueueDrainer newQueueDrainer(int nbConsumers) {
+      // receive(RECEIVE_MAX_WAIT_REMOVE) seems necessary for ActiveMQ instead of receiveNoWait()
+      return new QueueDrainer(this, qm.manulAcknoledge(), nbConsumers, EMPTY_QUEUE_BATCH_SIZE, RECEIVE_MAX_WAIT_REMOVE);
    }
 
    public void sendMessage(JTBMessage jtbMessage, JTBDestination jtbDestination) throws JMSException {
       log.debug("sendMessage {} to {}", jtbMessage, jtbDestination);
-      Message m = jtbMessage.getJmsMessage();
-      Destination d = jtbDestination.getJmsDestination();
-
-      try (MessageProducer p = jmsSession.createProducer(d);) {
-         if (jtbMessage.getDeliveryMode() != null) {
-            p.setDeliveryMode(jtbMessage.getDeliveryMode().intValue());
-         }
-         if (jtbMessage.getPriority() != null) {
-            p.setPriority(jtbMessage.getPriority());
-         }
-         if (jtbMessage.getTimeToLive() != null) {
-            p.setTimeToLive(jtbMessage.getTimeToLive());
-         }
-         if (jtbMessage.getReplyToDestinationName() != null) {
-            // Destination replyToDest = jmsSession.createTemporaryQueue();
-            Destination replyToDest = jmsSession.createQueue(jtbMessage.getReplyToDestinationName());
-            m.setJMSReplyTo(replyToDest);
-         }
-         if (jtbMessage.getDeliveryDelay() != null) {
-            try {
-               p.setDeliveryDelay(jtbMessage.getDeliveryDelay());
-            } catch (Throwable t) {
-               log.warn("JMS 2.0 feature 'setDeliveryDelay' failed. ignoring. Msg: {}", t.getMessage());
-            }
-         }
 
-         p.send(m);
+      synchronized (clientCache) {
+         checkConnected();
+         clientCache.getProducer(jtbDestination.getJmsDestination()).send(jtbMessage, jmsSession);
+         jmsSession.commit();
       }
-
-      jmsSession.commit();
       log.debug("Message sent");
    }
 
@@ -615,6 +665,18 @@ public class JTBConnection {
       sendMessage(jtbMessage, jtbMessage.getJtbDestination());
    }
 
+   /**
+    * Open a batch to send many messages with one transaction every "batchSize" messages. The batch must be closed by the caller
+    */
+   public MessageSendBatch openSendBatch(int batchSize) throws JMSException {
+      return openSendBatch(batchSize, SEND_BATCH_MAX_WAIT);
+   }
+
+   public MessageSendBatch openSendBatch(int batchSize, long maxWaitMs) throws JMSException {
+      log.debug("openSendBatch batchSize={} maxWaitMs={}", batchSize, maxWaitMs);
+      return new MessageSendBatch(createWorkerSession(), batchSize, maxWaitMs);
+   }
+
    // ----------------------
    // Topic Subscribver
    // ----------------------
@@ -637,7 +699,12 @@ public class JTBConnection {
    // Browse/Search Messages
    // ------------------------
    public Date getFirstMessageTimestamp(JTBQueue jtbQueue) throws JMSException {
-      try (QueueBrowser browser = jmsSession.createBrowser(jtbQueue.getJmsQueue());) {
+      return getFirstMessageTimestamp(jtbQueue, jmsSession);
+   }
+
+   // Variant used by threads that own their own session, as JMS sessions can not be shared between threads
+   public Date getFirstMessageTimestamp(JTBQueue jtbQueue, Session session) throws JMSException {
+      try (QueueBrowser browser = session.createBrowser(jtbQueue.getJmsQueue());) {
          Enumeration<?> msgs = browser.getEnumeration();
          while (msgs.hasMoreElements()) {
             Message firstMessage = (Message) msgs.nextElement();
@@ -645,11 +712,16 @@ public class JTBConnection {
          }
       }
 
-      jmsSession.commit();
+      session.commit();
 
       return null;
    }
 
+   // Create a new session on the JMS connection, for threads that work in parallel to the main session
+   public Session createWorkerSession() throws JMSException {
+      return jmsConnection.createSession(true, Session.SESSION_TRANSACTED);
+   }
+
    public List<JTBMessage> browseQueue(JTBQueue jtbQueue, int maxMessages) throws JMSException {
       return browseQueue(jtbQueue, maxMessages, "", "");
    }
@@ -666,69 +738,60 @@ public class JTBConnection {
 
       int limit = maxMessages == 0 ? Integer.MAX_VALUE : maxMessages;
 
-      List<JTBMessage> jtbMessages = new ArrayList<>(Math.min(256, maxMessages));
-
-      // JMS Browser with selector
-      try (QueueBrowser browser = jmsSession.createBrowser(jtbQueue.getJmsQueue(), selectorsSearchText);) {
-         int n = 0;
-
-         Enumeration<?> msgs = browser.getEnumeration();
-         loopOnMessages: while (msgs.hasMoreElements()) {
-            Message message = (Message) msgs.nextElement();
-
-            // No filter on payload, keep all messages
-            if (payloadSearchText.isEmpty()) {
-               jtbMessages.add(new JTBMessage(jtbQueue, message));
-               if (++n >= limit) {
-                  break loopOnMessages;
-               }
-               continue loopOnMessages;
-            }
-
-            // Search on text payload of Text Messages
-            if (message instanceof TextMessage) {
-               String text = ((TextMessage) message).getText();
-               if (text != null) {
-                  if (text.contains(payloadSearchText)) {
-                     jtbMessages.add(new JTBMessage(jtbQueue, message));
-                     if (++n >= limit) {
-                        break loopOnMessages;
-                     }
-                  }
-               }
-               continue loopOnMessages;
-            }
-
-            // Search on "values" of Map Message content
-            if (message instanceof MapMessage) {
-               MapMessage mm = (MapMessage) message;
-               Enumeration<?> mapNames = mm.getMapNames();
-               while (mapNames.hasMoreElements()) {
-                  Object value = mm.getObject((String) mapNames.nextElement());
-                  if (value != null) {
-                     if (value.toString().contains(payloadSearchText)) {
-                        jtbMessages.add(new JTBMessage(jtbQueue, message));
-                        if (++n >= limit) {
-                           break loopOnMessages;
-                        }
-                     }
-                  }
-               }
-
-               continue loopOnMessages;
-            }
-         }
+      try (QueueBrowserCursor cursor = openQueueBrowserCursor(jtbQueue, maxMessages, payloadSearchText, selectorsSearchText);) {
+         return cursor.nextPage(limit);
       }
+   }
 
-      jmsSession.commit();
+   /**
+    * Open a cursor to browse the queue page by page. The cursor must be closed by the caller
+    */
+   public QueueBrowserCursor openQueueBrowserCursor(JTBQueue jtbQueue,
+                                                    int maxMessages,
+                                                    String payloadSearchText,
+                                                    String selectorsSearchText) throws JMSException {
+      log.debug("openQueueBrowserCursor {} maxMessages={}, payloadSearchText='{}' selectorsSearchText='{}'",
+                jtbQueue,
+                maxMessages,
+                payloadSearchText,
+                selectorsSearchText);
 
-      return jtbMessages;
+      // A cursor may stay opened between pages: use a dedicated session
+      Session browseSession = createWorkerSession();
+      try {
+         return new QueueBrowserCursor(jtbQueue,
+                                       browseSession,
+                                       maxMessages,
+                                       payloadSearchText,
+                                       selectorsSearchText,
+                                       getPayloadSearchCharset());
+      } catch (JMSException | RuntimeException e) {
+         browseSession.close();
+         throw e;
+      }
    }
 
    // ------------------------
    // Helpers
    // ------------------------
 
+   // Must be called with the lock on clientCache held, before using the main session
+   private void checkConnected() throws JMSException {
+      if (!connected) {
+         throw new JMSException("Session '" + getSessionName() + "' is not connected");
+      }
+   }
+
+   private Charset getPayloadSearchCharset() {
+      String charsetName = ps.getString(Constants.PREF_PAYLOAD_SEARCH_CHARSET);
+      try {
+         return Charset.forName(charsetName);
+      } catch (IllegalArgumentException e) {
+         log.warn("Invalid charset '{}' to search payloads. Using {}", charsetName, StandardCharsets.UTF_8);
+         return StandardCharsets.UTF_8;
+      }
+   }
+
    public JTBDestination getJTBDestinationByName(String destinationName) {
       for (JTBQueue jtbQueue : jtbQueues) {
          if (jtbQueue.getName().equals(destinationName)) {
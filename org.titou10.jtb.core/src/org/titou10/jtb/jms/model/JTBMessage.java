@@ -19,6 +19,8 @@ package org.titou10.jtb.jms.model;
 import javax.jms.JMSException;
 import javax.jms.Message;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.titou10.jtb.jms.util.JTBDeliveryMode;
 import org.titou10.jtb.util.Utils;
 
@@ -30,21 +32,26 @@ import org.titou10.jtb.util.Utils;
  */
 public class JTBMessage {
 
+   private static final Logger  log = LoggerFactory.getLogger(JTBMessage.class);
+
    // JMS Object
-   private Message         jmsMessage;
+   private Message              jmsMessage;
+
+   // Values of the headers shown in the message browser
+   private JTBMessageProjection projection;
 
    // Owner Destination
-   private JTBDestination  jtbDestination;
+   private JTBDestination       jtbDestination;
 
    // Helpers
-   private JTBMessageType  jtbMessageType;
-   private String          replyToDestinationName;
+   private JTBMessageType       jtbMessageType;
+   private String               replyToDestinationName;
 
    // Attributes not related to Messages but to MessageProducer
-   private JTBDeliveryMode deliveryMode;
-   private Integer         priority;
-   private Long            timeToLive;
-   private Long            deliveryDelay;         // JMS 2.0
+   private JTBDeliveryMode      deliveryMode;
+   private Integer              priority;
+   private Long                 timeToLive;
+   private Long                 deliveryDelay;         // JMS 2.0
 
    // ------------------------
    // Constructor
@@ -56,6 +63,19 @@ public class JTBMessage {
       this.deliveryMode = JTBDeliveryMode.fromValue(jmsMessage.getJMSDeliveryMode());
       this.priority = jmsMessage.getJMSPriority();
       this.replyToDestinationName = Utils.getDestinationName(jmsMessage.getJMSReplyTo());
+      this.projection = new JTBMessageProjection(jmsMessage, jtbMessageType);
+   }
+
+   // Copy all the attributes except the JMS Message
+   protected JTBMessage(JTBMessage jtbMessage) {
+      this.jtbDestination = jtbMessage.jtbDestination;
+      this.jtbMessageType = jtbMessage.jtbMessageType;
+      this.deliveryMode = jtbMessage.deliveryMode;
+      this.priority = jtbMessage.priority;
+      this.replyToDestinationName = jtbMessage.replyToDestinationName;
+      this.timeToLive = jtbMessage.timeToLive;
+      this.deliveryDelay = jtbMessage.deliveryDelay;
+      this.projection = jtbMessage.projection;
    }
 
    // ------------------------
@@ -106,6 +126,18 @@ public class JTBMessage {
 
    public void setJmsMessage(Message jmsMessage) {
       this.jmsMessage = jmsMessage;
+      this.projection = null; // Built again when needed, the headers of the message may not be set yet
+   }
+
+   public JTBMessageProjection getProjection() {
+      if (projection == null) {
+         try {
+            projection = new JTBMessageProjection(getJmsMessage(), jtbMessageType);
+         } catch (JMSException e) {
+            log.warn("Exception occurred when reading headers of message. Ignoring: {}", e.getMessage());
+         }
+      }
+      return projection;
    }
 
    public JTBDestination getJtbDestination() {
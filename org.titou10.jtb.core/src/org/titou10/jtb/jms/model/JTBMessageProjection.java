@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2015 Denis Forveille titou10.titou10@gmail.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.titou10.jtb.jms.model;
+
+import java.util.Arrays;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * Values of the JMS headers of a message, read once when the JTBMessage is created
+ *
+ * Some providers decode the headers and properties of their messages each time a getter is called. The message browser reads the
+ * values shown in its columns from this projection instead of the JMS Message. The values of the user properties are read from
+ * the JMS Message the first time they are requested, and then kept here
+ *
+ * @author Denis Forveille
+ *
+ */
+public final class JTBMessageProjection {
+
+   private static final Logger   log              = LoggerFactory.getLogger(JTBMessageProjection.class);
+
+   private static final String[] EMPTY            = new String[0];
+   private static final long     NO_DELIVERY_TIME = Long.MIN_VALUE;
+
+   private final JTBMessageType  jtbMessageType;
+   private final String          jmsCorrelationID;
+   private final int             jmsDeliveryMode;
+   private final long            jmsDeliveryTime;
+   private final String          jmsDestination;
+   private final long            jmsExpiration;
+   private final String          jmsMessageID;
+   private final int             jmsPriority;
+   private final boolean         jmsRedelivered;
+   private final String          jmsReplyTo;
+   private final long            jmsTimestamp;
+   private final String          jmsType;
+
+   // User properties already read: names and values, in parallel arrays
+   private String[]              propertyNames    = EMPTY;
+   private String[]              propertyValues   = EMPTY;
+
+   // ------------------------
+   // Constructor
+   // ------------------------
+
+   JTBMessageProjection(Message m, JTBMessageType jtbMessageType) throws JMSException {
+      this.jtbMessageType = jtbMessageType;
+      this.jmsCorrelationID = m.getJMSCorrelationID();
+      this.jmsDeliveryMode = m.getJMSDeliveryMode();
+      this.jmsDestination = m.getJMSDestination() == null ? null : m.getJMSDestination().toString();
+      this.jmsExpiration = m.getJMSExpiration();
+      this.jmsMessageID = m.getJMSMessageID();
+      this.jmsPriority = m.getJMSPriority();
+      this.jmsRedelivered = m.getJMSRedelivered();
+      this.jmsReplyTo = m.getJMSReplyTo() == null ? null : m.getJMSReplyTo().toString();
+      this.jmsTimestamp = m.getJMSTimestamp();
+      this.jmsType = m.getJMSType();
+
+      long deliveryTime;
+      try {
+         deliveryTime = m.getJMSDeliveryTime();
+      } catch (Throwable t) {
+         // JMS 2.0+ only..
+         deliveryTime = NO_DELIVERY_TIME;
+      }
+      this.jmsDeliveryTime = deliveryTime;
+   }
+
+   // ------------------------
+   // Business Interface
+   // ------------------------
+
+   /**
+    * Value of a user property, as returned by Message.getStringProperty(). The JMS Message of the JTBMessage is only read the first
+    * time the property is requested
+    */
+   public synchronized String getStringProperty(String name, JTBMessage jtbMessage) throws JMSException {
+      for (int i = 0; i < propertyNames.length; i++) {
+         if (propertyNames[i].equals(name)) {
+            return propertyValues[i];
+         }
+      }
+
+      String value = jtbMessage.getJmsMessage().getStringProperty(name);
+      log.trace("Keeping value of property '{}' for message {}", name, jmsMessageID);
+
+      int n = propertyNames.length;
+      propertyNames = Arrays.copyOf(propertyNames, n + 1);
+      propertyValues = Arrays.copyOf(propertyValues, n + 1);
+      propertyNames[n] = name;
+      propertyValues[n] = value;
+      return value;
+   }
+
+   public boolean hasJmsDeliveryTime() {
+      return jmsDeliveryTime != NO_DELIVERY_TIME;
+   }
+
+   // ----------------
+   // Standard Getters
+   // ----------------
+
+   public JTBMessageType getJtbMessageType() {
+      return jtbMessageType;
+   }
+
+   public String getJmsCorrelationID() {
+      return jmsCorrelationID;
+   }
+
+   public int getJmsDeliveryMode() {
+      return jmsDeliveryMode;
+   }
+
+   public long getJmsDeliveryTime() {
+      return jmsDeliveryTime;
+   }
+
+   public String getJmsDestination() {
+      return jmsDestination;
+   }
+
+   public long getJmsExpiration() {
+      return jmsExpiration;
+   }
+
+   public String getJmsMessageID() {
+      return jmsMessageID;
+   }
+
+   public int getJmsPriority() {
+      return jmsPriority;
+   }
+
+   public boolean isJmsRedelivered() {
+      return jmsRedelivered;
+   }
+
+   public String getJmsReplyTo() {
+      return jmsReplyTo;
+   }
+
+   public long getJmsTimestamp() {
+      return jmsTimestamp;
+   }
+
+   public String getJmsType() {
+      return jmsType;
+   }
+
+}
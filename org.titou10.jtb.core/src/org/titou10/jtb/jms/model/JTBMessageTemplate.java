@@ -108,6 +108,35 @@ public class JTBMessageTemplate implements Serializable {
    public JTBMessageTemplate() {
    }
 
+   /**
+    * Copy a template, to build a message from it without changing it. The payload text and bytes are shared with the template:
+    * they are replaced, never modified in place. The maps of the payload and of the properties are copied
+    */
+   public JTBMessageTemplate(JTBMessageTemplate template) {
+      this.jmsType = template.jmsType;
+      this.jmsCorrelationID = template.jmsCorrelationID;
+
+      this.jmsMessageID = template.jmsMessageID;
+      this.jmsTimestamp = template.jmsTimestamp;
+      this.jmsDeliveryTime = template.jmsDeliveryTime;
+      this.jmsExpiration = template.jmsExpiration;
+
+      this.deliveryMode = template.deliveryMode;
+      this.priority = template.priority;
+      this.timeToLive = template.timeToLive;
+      this.deliveryDelay = template.deliveryDelay;
+
+      this.jtbMessageType = template.jtbMessageType;
+      this.replyToDestinationName = template.replyToDestinationName;
+
+      this.payloadText = template.payloadText;
+      this.payloadBytes = template.payloadBytes;
+      this.payloadMap = template.payloadMap == null ? null : new HashMap<>(template.payloadMap);
+      this.payloadObject = copyPayloadObject(template.payloadObject);
+
+      this.properties = template.properties == null ? null : new HashMap<>(template.properties);
+   }
+
    public JTBMessageTemplate(JTBMessage jtbMessage) throws JMSException {
       Message message = jtbMessage.getJmsMessage();
 
@@ -313,17 +342,22 @@ public class JTBMessageTemplate implements Serializable {
 
    }
 
-   public static JTBMessageTemplate deepClone(JTBMessageTemplate object) {
+   // The Object payload may be mutable: it is the only part of the template copied through serialization
+   private static Serializable copyPayloadObject(Serializable payloadObject) {
+      if (payloadObject == null) {
+         return null;
+      }
       try {
          ByteArrayOutputStream baos = new ByteArrayOutputStream();
-         ObjectOutputStream oos = new ObjectOutputStream(baos);
-         oos.writeObject(object);
-         ByteArrayInputStream bais = new ByteArrayInputStream(baos.toByteArray());
-         ObjectInputStream ois = new ObjectInputStream(bais);
-         return (JTBMessageTemplate) ois.readObject();
+         try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            oos.writeObject(payloadObject);
+         }
+         try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            return (Serializable) ois.readObject();
+         }
       } catch (Exception e) {
-         e.printStackTrace();
-         return null;
+         log.warn("Exception occurred when copying the Object payload. Sharing it: {}", e.getMessage());
+         return payloadObject;
       }
    }
 
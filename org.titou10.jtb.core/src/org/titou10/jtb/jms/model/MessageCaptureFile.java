@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2015 Denis Forveille titou10.titou10@gmail.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.titou10.jtb.jms.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.jms.BytesMessage;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Topic;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.titou10.jtb.util.Utils;
+
+/**
+ *
+ * Append-only file, mapped in memory by segments, used to capture messages published to a topic
+ *
+ * Messages are stored as serialized JTBMessageTemplates, with the headers and properties a template does not keep: JMSRedelivered,
+ * JMSReplyTo with its kind, and all the properties with their type, including the JMSX and provider specific ones. Only the
+ * position and the length of each message are kept in memory, in arrays of primitives. The JMS Message is rebuilt from the file
+ * when it is needed, ie when the row showing it is displayed or the message is opened
+ *
+ * Properties that the JMS provider does not allow to set on a new message, if any, are not shown for captured messages
+ *
+ * @author Denis Forveille
+ *
+ */
+public final class MessageCaptureFile implements AutoCloseable {
+
+   private static final Logger          log                = LoggerFactory.getLogger(MessageCaptureFile.class);
+
+   private static final int             SEGMENT_SIZE       = 64 * 1024 * 1024; // 64 MB
+   private static final int             INITIAL_INDEX_SIZE = 1024;
+
+   private final Path                   path;
+   private final FileChannel            channel;
+   private final long                   maxSize;
+   private final List<MappedByteBuffer> segments;
+
+   // Index of the records
+   private long[]                       positions;
+   private int[]                        lengths;
+   private int                          nbRecords;
+
+   private long                         size;
+   private boolean                      closed;
+
+   // ------------------------
+   // Constructor
+   // ------------------------
+
+   private MessageCaptureFile(Path path, long maxSize) throws IOException {
+      this.path = path;
+      this.maxSize = maxSize;
+      this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      this.segments = new ArrayList<>();
+
+      this.positions = new long[INITIAL_INDEX_SIZE];
+      this.lengths = new int[INITIAL_INDEX_SIZE];
+      this.nbRecords = 0;
+
+      this.size = 0;
+      this.closed = false;
+   }
+
+   /**
+    * Create a new capture file in the temporary directory. The file is deleted when closed
+    *
+    * @param name
+    *           name of the file, ie the name of the topic
+    * @param maxSize
+    *           max size of the file, in bytes
+    */
+   public static MessageCaptureFile create(String name, long maxSize) throws IOException {
+      String prefix = "jtb-capture-" + name.replaceAll("[^a-zA-Z0-9._-]", "_") + "-";
+      Path path = Files.createTempFile(prefix, ".dat");
+      path.toFile().deleteOnExit();
+      log.debug("Capture file for '{}' is {}", name, path);
+      return new MessageCaptureFile(path, maxSize);
+   }
+
+   // ------------------------
+   // Business Interface
+   // ------------------------
+
+   /**
+    * Store the message in the file
+    *
+    * @return a JTBMessage that reads its JMS Message from the file, or the message itself if it can not be stored in the file
+    *         (STREAM messages, file full, too large...)
+    */
+   public JTBMessage capture(JTBMessage jtbMessage) {
+      if (jtbMessage.getJtbMessageType() == JTBMessageType.STREAM) {
+         return jtbMessage;
+      }
+      try {
+         CaptureRecord record = new CaptureRecord(jtbMessage);
+
+         ByteArrayOutputStream baos = new ByteArrayOutputStream(1024);
+         try (ObjectOutputStream oos = new ObjectOutputStream(baos);) {
+            oos.writeObject(record);
+         }
+
+         int index = append(baos.toByteArray());
+         if (index < 0) {
+            return jtbMessage;
+         }
+         return new CapturedJTBMessage(jtbMessage, this, index);
+
+      } catch (JMSException | IOException e) {
+         log.warn("Exception occurred when capturing message in file. Keeping it in memory: {}", e.getMessage());
+         return jtbMessage;
+      }
+   }
+
+   /**
+    * Rebuild the JMS Message stored at the given index, with its headers and properties
+    */
+   public Message load(int index, JTBDestination jtbDestination) throws JMSException {
+      CaptureRecord record;
+      try {
+         byte[] bytes = read(index);
+         try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));) {
+            record = (CaptureRecord) ois.readObject();
+         }
+      } catch (IOException | ClassNotFoundException e) {
+         throw new JMSException("Exception occurred when reading message #" + index + " from capture file: " + e.getMessage());
+      }
+      JTBMessageTemplate template = record.template;
+
+      JTBConnection jtbConnection = jtbDestination.getJtbConnection();
+      Message m = jtbConnection.createJMSMessage(template.getJtbMessageType());
+      template.toJTBMessage(jtbDestination, m);
+
+      // Headers set by the provider
+      m.setJMSDestination(jtbDestination.getJmsDestination());
+      m.setJMSMessageID(template.getJmsMessageID());
+      if (template.getJmsTimestamp() != null) {
+         m.setJMSTimestamp(template.getJmsTimestamp());
+      }
+      if (template.getJmsExpiration() != null) {
+         m.setJMSExpiration(template.getJmsExpiration());
+      }
+      if (template.getDeliveryMode() != null) {
+         m.setJMSDeliveryMode(template.getDeliveryMode().intValue());
+      }
+      if (template.getPriority() != null) {
+         m.setJMSPriority(template.getPriority());
+      }
+      if (template.getJmsDeliveryTime() != null) {
+         try {
+            m.setJMSDeliveryTime(template.getJmsDeliveryTime());
+         } catch (Throwable t) {
+            // JMS 2.0+ only..
+         }
+      }
+      m.setJMSRedelivered(record.jmsRedelivered);
+      if (record.replyToName != null) {
+         try {
+            m.setJMSReplyTo(jtbConnection.getJmsDestination(record.replyToName, record.replyToTopic));
+         } catch (JMSException | RuntimeException e) {
+            log.debug("JMSReplyTo '{}' can not be set on captured message: {}", record.replyToName, e.getMessage());
+         }
+      }
+
+      // All the properties, with their type
+      for (Map.Entry<String, Object> property : record.properties.entrySet()) {
+         try {
+            m.setObjectProperty(property.getKey(), property.getValue());
+         } catch (JMSException | RuntimeException e) {
+            log.debug("Property '{}' can not be set on captured message: {}", property.getKey(), e.getMessage());
+         }
+      }
+
+      // Payload has been written: make it readable
+      if (m instanceof BytesMessage) {
+         ((BytesMessage) m).reset();
+      }
+
+      return m;
+   }
+
+   @Override
+   public synchronized void close() {
+      if (closed) {
+         return;
+      }
+      closed = true;
+
+      log.debug("Closing capture file {}. {} messages, {} bytes", path, nbRecords, size);
+      segments.clear();
+      try {
+         channel.close();
+      } catch (IOException e) {
+         log.warn("Exception occurred when closing capture file. Ignoring: {}", e.getMessage());
+      }
+      try {
+         Files.deleteIfExists(path);
+      } catch (IOException e) {
+         // Mapped files may not be deleted before being garbage collected on some OS. Will be deleted on exit
+         log.debug("Capture file {} not deleted: {}", path, e.getMessage());
+      }
+   }
+
+   // -------
+   // Helpers
+   // -------
+
+   // Returns the index of the record, or -1 if it can not be stored
+   private synchronized int append(byte[] bytes) throws IOException {
+      if (closed) {
+         return -1;
+      }
+
+      // A record never spans two segments
+      if (bytes.length > SEGMENT_SIZE) {
+         log.debug("Message of {} bytes is too large for the capture file", bytes.length);
+         return -1;
+      }
+      long position = size;
+      long segmentStart = (segments.size() - 1) * (long) SEGMENT_SIZE;
+      if ((segments.isEmpty()) || (position + bytes.length > segmentStart + SEGMENT_SIZE)) {
+         segmentStart = segments.size() * (long) SEGMENT_SIZE;
+         position = segmentStart;
+         if (segmentStart + SEGMENT_SIZE > maxSize) {
+            log.debug("Capture file {} is full", path);
+            return -1;
+         }
+         segments.add(channel.map(MapMode.READ_WRITE, segmentStart, SEGMENT_SIZE));
+      }
+
+      ByteBuffer segment = segments.get(segments.size() - 1).duplicate();
+      segment.position((int) (position - segmentStart));
+      segment.put(bytes);
+
+      if (nbRecords == positions.length) {
+         int newLength = positions.length * 2;
+         positions = Arrays.copyOf(positions, newLength);
+         lengths = Arrays.copyOf(lengths, newLength);
+      }
+      positions[nbRecords] = position;
+      lengths[nbRecords] = bytes.length;
+
+      size = position + bytes.length;
+      return nbRecords++;
+   }
+
+   private synchronized byte[] read(int index) throws IOException {
+      if (closed) {
+         throw new IOException("Capture file is closed");
+      }
+      checkIndex(index);
+
+      long position = positions[index];
+      ByteBuffer segment = segments.get((int) (position / SEGMENT_SIZE)).duplicate();
+      segment.position((int) (position % SEGMENT_SIZE));
+      byte[] bytes = new byte[lengths[index]];
+      segment.get(bytes);
+      return bytes;
+   }
+
+   private void checkIndex(int index) {
+      if ((index < 0) || (index >= nbRecords)) {
+         throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + nbRecords);
+      }
+   }
+
+   // --------------
+   // Helper Classes
+   // --------------
+
+   // Content of a record of the file. Only classes of the JDK and of JMSToolBox are serialized, not classes of the JMS provider
+   private static final class CaptureRecord implements Serializable {
+      private static final long                   serialVersionUID = 1L;
+
+      private final JTBMessageTemplate            template;
+      private final boolean                       jmsRedelivered;
+      private final String                        replyToName;
+      private final boolean                       replyToTopic;
+      private final LinkedHashMap<String, Object> properties;
+
+      private CaptureRecord(JTBMessage jtbMessage) throws JMSException {
+         Message message = jtbMessage.getJmsMessage();
+
+         this.template = new JTBMessageTemplate(jtbMessage);
+         this.jmsRedelivered = message.getJMSRedelivered();
+
+         Destination replyTo = message.getJMSReplyTo();
+         this.replyToName = Utils.getDestinationName(replyTo);
+         this.replyToTopic = replyTo instanceof Topic;
+
+         // Property values are Strings or boxed primitives
+         this.properties = new LinkedHashMap<>();
+         @SuppressWarnings("unchecked")
+         Enumeration<String> e = message.getPropertyNames();
+         while (e.hasMoreElements()) {
+            String key = e.nextElement();
+            Object value = message.getObjectProperty(key);
+            if (value != null) {
+               properties.put(key, value instanceof Serializable ? value : value.toString());
+            }
+         }
+      }
+   }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2015 Denis Forveille titou10.titou10@gmail.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.titou10.jtb.jms.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * Send messages in batches, in one transaction per batch
+ *
+ * The batch owns its own JMS Session and keeps one MessageProducer per destination. The transaction is committed every
+ * "batchSize" messages, or when the first message of the current transaction has been sent more than "maxWaitMs" ms ago.
+ * Pending messages are committed when the batch is flushed or closed
+ *
+ * @author Denis Forveille
+ *
+ */
+public final class MessageSendBatch implements AutoCloseable {
+
+   private static final Logger                           log = LoggerFactory.getLogger(MessageSendBatch.class);
+
+   private final Session                                 jmsSession;
+   private final int                                     batchSize;
+   private final long                                    maxWaitMs;
+
+   private final Map<Destination, CachedMessageProducer> producers;
+
+   private int                                           nbPending;
+   private long                                          firstPendingTime;
+   private int                                           nbMessages;
+   private int                                           nbCommits;
+   private boolean                                       closed;
+
+   // ------------------------
+   // Constructor
+   // ------------------------
+
+   MessageSendBatch(Session jmsSession, int batchSize, long maxWaitMs) {
+      this.jmsSession = jmsSession;
+      this.batchSize = Math.max(1, batchSize);
+      this.maxWaitMs = maxWaitMs;
+
+      this.producers = new HashMap<>();
+
+      this.nbPending = 0;
+      this.nbMessages = 0;
+      this.nbCommits = 0;
+      this.closed = false;
+   }
+
+   // ------------------------
+   // Business Interface
+   // ------------------------
+
+   /**
+    * Send a message to its destination. The message is committed with the current batch
+    */
+   public void send(JTBMessage jtbMessage) throws JMSException {
+      send(jtbMessage, jtbMessage.getJtbDestination());
+   }
+
+   /**
+    * Send a message to a destination. The message is committed with the current batch
+    */
+   public void send(JTBMessage jtbMessage, JTBDestination jtbDestination) throws JMSException {
+      if (closed) {
+         throw new IllegalStateException("The batch is closed");
+      }
+
+      getProducer(jtbDestination.getJmsDestination()).send(jtbMessage, jmsSession);
+
+      if (nbPending == 0) {
+         firstPendingTime = System.currentTimeMillis();
+      }
+      nbPending++;
+      nbMessages++;
+
+      if ((nbPending >= batchSize) || ((System.currentTimeMillis() - firstPendingTime) >= maxWaitMs)) {
+         flush();
+      }
+   }
+
+   /**
+    * Create an empty JMS Message with the session of the batch
+    */
+   public Message createJMSMessage(JTBMessageType jtbMessageType) throws JMSException {
+      switch (jtbMessageType) {
+         case TEXT:
+            return jmsSession.createTextMessage();
+
+         case BYTES:
+            return jmsSession.createBytesMessage();
+
+         case MESSAGE:
+            return jmsSession.createMessage();
+
+         case MAP:
+            return jmsSession.createMapMessage();
+
+         case OBJECT:
+            return jmsSession.createObjectMessage();
+
+         case STREAM:
+            return jmsSession.createStreamMessage();
+      }
+      return null; // Impossible
+   }
+
+   /**
+    * Commit the messages sent since the last commit
+    */
+   public void flush() throws JMSException {
+      if (nbPending == 0) {
+         return;
+      }
+      jmsSession.commit();
+      nbCommits++;
+      log.debug("Batch of {} messages committed", nbPending);
+      nbPending = 0;
+   }
+
+   public int getNbMessages() {
+      return nbMessages;
+   }
+
+   public int getNbCommits() {
+      return nbCommits;
+   }
+
+   /**
+    * Commit the pending messages, then close the producers and the session
+    */
+   @Override
+   public void close() throws JMSException {
+      if (closed) {
+         return;
+      }
+      closed = true;
+
+      log.debug("close batch. {} messages sent in {} transactions", nbMessages, nbCommits + (nbPending > 0 ? 1 : 0));
+      try {
+         flush();
+      } finally {
+         for (CachedMessageProducer producer : producers.values()) {
+            producer.close();
+         }
+         producers.clear();
+         try {
+            jmsSession.close();
+         } catch (JMSException e) {
+            log.warn("Exception occurred when closing sending session. Ignoring: {}", e.getMessage());
+         }
+      }
+   }
+
+   // ------------------------
+   // Helpers
+   // ------------------------
+
+   private CachedMessageProducer getProducer(Destination destination) throws JMSException {
+      CachedMessageProducer producer = producers.get(destination);
+      if (producer == null) {
+         producer = new CachedMessageProducer(jmsSession.createProducer(destination));
+         producers.put(destination, producer);
+      }
+      return producer;
+   }
+}
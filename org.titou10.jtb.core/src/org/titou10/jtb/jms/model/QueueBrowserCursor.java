@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2015 Denis Forveille titou10.titou10@gmail.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.titou10.jtb.jms.model;
+
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.QueueBrowser;
+import javax.jms.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.titou10.jtb.jms.util.PayloadMatcher;
+
+/**
+ *
+ * Lazy, page by page, browsing of a Queue
+ *
+ * The underlying QueueBrowser enumeration is only read when a new page is requested. The cursor owns its own JMS Session so it
+ * can stay open between pages without interfering with the other operations done on the JTBConnection
+ *
+ * The payload search text is compiled once into a PayloadMatcher when the cursor is opened. When there is a payload filter, the
+ * messages read from the enumeration are matched in parallel by a pool of workers while the next messages are fetched. The
+ * number of messages being matched is bounded, and the messages are returned in the order of the enumeration
+ *
+ * @author Denis Forveille
+ *
+ */
+public final class QueueBrowserCursor implements AutoCloseable {
+
+   private static final Logger         log                     = LoggerFactory.getLogger(QueueBrowserCursor.class);
+
+   private static final int            NB_MATCHERS             = Runtime.getRuntime().availableProcessors();
+   private static final int            MAX_PENDING_PER_MATCHER = 64;
+
+   private static final AtomicInteger  MATCHER_THREAD_NB       = new AtomicInteger(0);
+   private static final ForkJoinPool   MATCHER_POOL            = new ForkJoinPool(NB_MATCHERS,
+                                                                                  QueueBrowserCursor::newMatcherThread,
+                                                                                  null,
+                                                                                  false);
+
+   private final JTBQueue              jtbQueue;
+   private final Session               jmsSession;
+   private final QueueBrowser          browser;
+   private final Enumeration<?>        msgs;
+   private final PayloadMatcher        payloadMatcher;
+   private final int                   limit;
+
+   // Messages read from the enumeration, in order, with the result of their matching
+   private final Deque<PendingMessage> pending;
+   private final int                   maxPending;
+   private boolean                     enumerationExhausted;
+
+   private volatile int                nbMessages;
+   private volatile boolean            exhausted;
+   private volatile boolean            closed;
+
+   // ------------------------
+   // Constructor
+   // ------------------------
+
+   QueueBrowserCursor(JTBQueue jtbQueue,
+                      Session jmsSession,
+                      int maxMessages,
+                      String payloadSearchText,
+                      String selectorsSearchText,
+                      Charset payloadCharset) throws JMSException {
+      this.jtbQueue = jtbQueue;
+      this.jmsSession = jmsSession;
+      this.payloadMatcher = PayloadMatcher.compile(payloadSearchText, payloadCharset);
+      this.limit = maxMessages == 0 ? Integer.MAX_VALUE : maxMessages;
+
+      this.pending = new ArrayDeque<>();
+      this.maxPending = NB_MATCHERS * MAX_PENDING_PER_MATCHER;
+      this.enumerationExhausted = false;
+
+      this.browser = jmsSession.createBrowser(jtbQueue.getJmsQueue(), selectorsSearchText);
+      this.msgs = browser.getEnumeration();
+
+      this.nbMessages = 0;
+      this.exhausted = false;
+      this.closed = false;
+   }
+
+   // ------------------------
+   // Business Interface
+   // ------------------------
+
+   /**
+    * Read the next page of messages from the QueueBrowser enumeration
+    *
+    * @param pageSize
+    *           max number of messages to return, after payload filtering
+    * @return the messages of the page, empty if there is no more messages
+    * @throws JMSException
+    */
+   public synchronized List<JTBMessage> nextPage(int pageSize) throws JMSException {
+      if (!hasMore()) {
+         return Collections.emptyList();
+      }
+
+      int max = Math.min(pageSize, limit - nbMessages);
+      List<JTBMessage> page = new ArrayList<>(Math.min(256, max));
+
+      // No need to go through the pool of matchers if there is no payload filter or only one CPU
+      if ((payloadMatcher == PayloadMatcher.ALL) || (NB_MATCHERS == 1)) {
+         readPage(page, max);
+      } else {
+         readPageInParallel(page, max);
+      }
+
+      nbMessages += page.size();
+      exhausted = enumerationExhausted && pending.isEmpty();
+
+      log.debug("nextPage for {}. pageSize={} returned={} total={}", jtbQueue, pageSize, page.size(), nbMessages);
+      return page;
+   }
+
+   public boolean hasMore() {
+      return !closed && !exhausted && (nbMessages < limit);
+   }
+
+   public boolean isLimitReached() {
+      return nbMessages >= limit;
+   }
+
+   public int getNbMessages() {
+      return nbMessages;
+   }
+
+   public JTBQueue getJtbQueue() {
+      return jtbQueue;
+   }
+
+   @Override
+   public synchronized void close() {
+      if (closed) {
+         return;
+      }
+      closed = true;
+
+      log.debug("close cursor on {}. {} messages read", jtbQueue, nbMessages);
+      for (PendingMessage pm : pending) {
+         pm.matching.cancel(false);
+      }
+      pending.clear();
+      try {
+         browser.close();
+      } catch (JMSException e) {
+         log.warn("Exception occurred when closing QueueBrowser. Ignoring: {}", e.getMessage());
+      }
+      try {
+         jmsSession.close();
+      } catch (JMSException e) {
+         log.warn("Exception occurred when closing browsing session. Ignoring: {}", e.getMessage());
+      }
+   }
+
+   // -------
+   // Helpers
+   // -------
+
+   private void readPage(List<JTBMessage> page, int max) throws JMSException {
+      while (page.size() < max) {
+         if (!msgs.hasMoreElements()) {
+            enumerationExhausted = true;
+            break;
+         }
+
+         Message message = (Message) msgs.nextElement();
+         if (payloadMatcher.matches(message)) {
+            page.add(new JTBMessage(jtbQueue, message));
+         }
+      }
+   }
+
+   // The enumeration is only read from the calling thread, as the JMS Session is not thread safe. Messages are read while the
+   // previous ones are being matched, until "maxPending" messages are waiting for their result
+   private void readPageInParallel(List<JTBMessage> page, int max) throws JMSException {
+      while (page.size() < max) {
+
+         // Collect the results available, in order
+         PendingMessage head = pending.peekFirst();
+         if ((head != null) && (head.matching.isDone())) {
+            pending.removeFirst();
+            if (isMatching(head)) {
+               page.add(new JTBMessage(jtbQueue, head.message));
+            }
+            continue;
+         }
+
+         // Read the next message while the others are being matched
+         if ((!enumerationExhausted) && (pending.size() < maxPending)) {
+            if (msgs.hasMoreElements()) {
+               Message message = (Message) msgs.nextElement();
+               pending.addLast(new PendingMessage(message, CompletableFuture.supplyAsync(() -> {
+                  try {
+                     return payloadMatcher.matches(message);
+                  } catch (JMSException e) {
+                     throw new CompletionException(e);
+                  }
+               }, MATCHER_POOL)));
+               continue;
+            }
+            enumerationExhausted = true;
+         }
+
+         // Nothing more to read
+         if (head == null) {
+            break;
+         }
+
+         // Wait for the result of the first message
+         pending.removeFirst();
+         if (isMatching(head)) {
+            page.add(new JTBMessage(jtbQueue, head.message));
+         }
+      }
+   }
+
+   private boolean isMatching(PendingMessage pm) throws JMSException {
+      try {
+         return pm.matching.join();
+      } catch (CancellationException e) {
+         return false;
+      } catch (CompletionException e) {
+         if (e.getCause() instanceof JMSException) {
+            throw (JMSException) e.getCause();
+         }
+         if (e.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) e.getCause();
+         }
+         throw e;
+      }
+   }
+
+   private static ForkJoinWorkerThread newMatcherThread(ForkJoinPool pool) {
+      ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      t.setName("JTB-PayloadMatcher-" + MATCHER_THREAD_NB.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+   }
+
+   private static final class PendingMessage {
+      private final Message                    message;
+      private final CompletableFuture<Boolean> matching;
+
+      private PendingMessage(Message message, CompletableFuture<Boolean> matching) {
+         this.message = message;
+         this.matching = matching;
+      }
+   }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2015 Denis Forveille titou10.titou10@gmail.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.titou10.jtb.jms.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * Remove messages from a destination with many consumers working in parallel
+ *
+ * Each consumer has its own transacted Session on the JMS Connection and commits every "batchSize" messages. A consumer stops
+ * when no message is received within "receiveWaitMs" ms. The number of messages to remove is shared by all the consumers: a
+ * consumer reserves one before each receive and gives it back when nothing is received, so no more than "limit" messages are
+ * ever removed
+ *
+ * The order of the messages removed is kept per consumer, not across consumers
+ *
+ * @author Denis Forveille
+ *
+ */
+final class QueueDrainer {
+
+   private static final Logger              log = LoggerFactory.getLogger(QueueDrainer.class);
+
+   private final JTBConnection              jtbConnection;
+   private final boolean                    manualAcknowledge;
+   private final int                        nbConsumers;
+   private final int                        batchSize;
+   private final long                       receiveWaitMs;
+
+   private final AtomicInteger              remaining;
+   private final AtomicInteger              nbRemoved;
+   private final AtomicReference<Exception> error;
+
+   // ------------------------
+   // Constructor
+   // ------------------------
+
+   QueueDrainer(JTBConnection jtbConnection, boolean manualAcknowledge, int nbConsumers, int batchSize, long receiveWaitMs) {
+      this.jtbConnection = jtbConnection;
+      this.manualAcknowledge = manualAcknowledge;
+      this.nbConsumers = Math.max(1, nbConsumers);
+      this.batchSize = Math.max(1, batchSize);
+      this.receiveWaitMs = receiveWaitMs;
+
+      this.remaining = new AtomicInteger();
+      this.nbRemoved = new AtomicInteger();
+      this.error = new AtomicReference<>();
+   }
+
+   // ------------------------
+   // Business Interface
+   // ------------------------
+
+   /**
+    * Remove at most "limit" messages from the destination. The messages removed are added to "jtbMessages" if not null
+    *
+    * @return the number of messages removed
+    */
+   int drain(JTBDestination jtbDestination, int limit, List<JTBMessage> jtbMessages) throws JMSException {
+      log.debug("drain {} limit={} with {} consumers", jtbDestination, limit, nbConsumers);
+
+      remaining.set(limit);
+      nbRemoved.set(0);
+      error.set(null);
+
+      // Single consumer: stay on the caller thread
+      if (nbConsumers == 1) {
+         consume(jtbDestination, jtbMessages);
+      } else {
+         AtomicInteger threadNumber = new AtomicInteger(0);
+         ExecutorService executor = Executors.newFixedThreadPool(nbConsumers, r -> {
+            Thread t = new Thread(r, "JTB-QueueDrainer-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+         });
+         for (int i = 0; i < nbConsumers; i++) {
+            executor.execute(() -> consume(jtbDestination, jtbMessages));
+         }
+         executor.shutdown();
+         try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+         } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+         }
+      }
+
+      Exception e = error.get();
+      if (e != null) {
+         if (e instanceof JMSException) {
+            throw (JMSException) e;
+         }
+         throw (RuntimeException) e;
+      }
+
+      log.debug("{} messages removed from {}", nbRemoved.get(), jtbDestination);
+      return nbRemoved.get();
+   }
+
+   // -------
+   // Helpers
+   // -------
+
+   private void consume(JTBDestination jtbDestination, List<JTBMessage> jtbMessages) {
+      List<JTBMessage> batch = jtbMessages == null ? null : new ArrayList<>();
+      int nbInBatch = 0;
+
+      Session session = null;
+      try {
+         session = jtbConnection.createWorkerSession();
+         try (MessageConsumer consumer = session.createConsumer(jtbDestination.getJmsDestination());) {
+            while ((error.get() == null) && (!Thread.currentThread().isInterrupted())) {
+
+               // Reserve one message from the limit before receiving it
+               if (remaining.getAndDecrement() <= 0) {
+                  break;
+               }
+               Message message = consumer.receive(receiveWaitMs);
+               if (message == null) {
+                  remaining.incrementAndGet();
+                  break;
+               }
+
+               if (manualAcknowledge) {
+                  message.acknowledge();
+               }
+               if (batch != null) {
+                  batch.add(new JTBMessage(jtbDestination, message));
+               }
+               if (++nbInBatch >= batchSize) {
+                  commit(session, batch, nbInBatch, jtbMessages);
+                  nbInBatch = 0;
+               }
+            }
+         }
+         commit(session, batch, nbInBatch, jtbMessages);
+
+      } catch (JMSException | RuntimeException e) {
+         log.error("Exception occurred while removing messages from {}", jtbDestination, e);
+         error.compareAndSet(null, e);
+         if (session != null) {
+            try {
+               session.rollback();
+            } catch (JMSException e1) {
+               log.warn("Exception occurred when rolling back session. Ignoring: {}", e1.getMessage());
+            }
+         }
+      } finally {
+         if (session != null) {
+            try {
+               session.close();
+            } catch (JMSException e) {
+               log.warn("Exception occurred when closing session. Ignoring: {}", e.getMessage());
+            }
+         }
+      }
+   }
+
+   // The messages are only counted and returned to the caller once they are really removed from the destination
+   private void commit(Session session, List<JTBMessage> batch, int nbInBatch, List<JTBMessage> jtbMessages) throws JMSException {
+      session.commit();
+      nbRemoved.addAndGet(nbInBatch);
+      if (batch != null) {
+         synchronized (jtbMessages) {
+            jtbMessages.addAll(batch);
+         }
+         batch.clear();
+      }
+   }
+}
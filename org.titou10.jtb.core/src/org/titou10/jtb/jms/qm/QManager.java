@@ -10,6 +10,7 @@
  * <http://www.gnu.org/licenses/>. */
 package org.titou10.jtb.jms.qm;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -77,6 +78,36 @@ public abstract class QManager implements JTBObject, Comparable<QManager> {
       return null;
    }
 
+   // Tells if getQueueDepth() can be called concurrently from multiple threads for the same connection
+   // (ie the admin channel used to get the depth is thread safe, like JMX MBeanServerConnection)
+   // If not, getQueueDepths() is used to get the depth of multiple queues at once
+   public boolean supportsConcurrentQueueDepth() {
+      return false;
+   }
+
+   // Returns the depth of multiple queues at once. Keys are the queue names, values are null if the depth could not be determined
+   // Q Managers that can retrieve the depth of many queues with one admin call (PCF, JMX query etc) should override this method
+   // Default implementation calls getQueueDepth() for each queue
+   public Map<String, Integer> getQueueDepths(Connection jmsConnection, Collection<String> queueNames) {
+      Map<String, Integer> depths = new HashMap<>(queueNames.size());
+      for (String queueName : queueNames) {
+         depths.put(queueName, getQueueDepth(jmsConnection, queueName));
+      }
+      return depths;
+   }
+
+   // Removes messages from a queue with an admin call, by JMSMessageID. Returns the number of messages removed
+   // Returns null if the Q Manager does not support it: messages are then removed by consuming them with a selector
+   public Integer removeMessages(Connection jmsConnection, String queueName, List<String> jmsMessageIDs) {
+      return null;
+   }
+
+   // Removes all the messages from a queue with an admin call. Returns the number of messages removed
+   // Returns null if the Q Manager does not support it or if the call failed: the queue is then drained with a consumer
+   public Integer purgeQueue(Connection jmsConnection, String queueName) {
+      return null;
+   }
+
    public Map<String, Object> getQueueInformation(Connection jmsConnection, String queueName) {
       return Collections.emptyMap();
    }
@@ -0,0 +1,495 @@
+/*
+ * Copyright (C) 2015 Denis Forveille titou10.titou10@gmail.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.titou10.jtb.jms.util;
+
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.InputSource;
+
+/**
+ *
+ * Matcher of message payloads, compiled once from the "payload search text" and then applied to many messages
+ *
+ * The kind of matcher depends on the prefix of the search text:
+ * <ul>
+ * <li>no prefix: payload contains the text (Boyer-Moore-Horspool search)
+ * <li>"icase:": payload contains the text, ignoring case
+ * <li>"all:" or "any:": payload contains all or any of the terms separated by spaces
+ * <li>"regex:": part of the payload matches the regular expression
+ * <li>"json:path" or "json:path=value": the payload is a json document where "path" (eg "$.order.items[0].id") exists or has
+ * the given value
+ * <li>"xpath:": the payload is an xml document where the XPath expression evaluates to true (eg "//order[id='123']")
+ * </ul>
+ *
+ * Text messages are searched on their text, Map messages on each of their values, Bytes messages on their body. The body of
+ * Bytes messages is searched as bytes for plain texts, encoded with the given charset, and decoded with this charset for other
+ * kinds of matchers.
+ *
+ * Matchers are thread safe
+ *
+ * @author Denis Forveille
+ *
+ */
+public abstract class PayloadMatcher {
+
+   private static final Logger        log           = LoggerFactory.getLogger(PayloadMatcher.class);
+
+   public static final String         PREFIX_ICASE  = "icase:";
+   public static final String         PREFIX_ALL    = "all:";
+   public static final String         PREFIX_ANY    = "any:";
+   public static final String         PREFIX_REGEX  = "regex:";
+   public static final String         PREFIX_JSON   = "json:";
+   public static final String         PREFIX_XPATH  = "xpath:";
+
+   /** Matcher that accepts all the messages */
+   public static final PayloadMatcher ALL           = new AllMatcher();
+
+   private static final Pattern       JSON_PATH_SEP = Pattern.compile("\\.|(?=\\[)");
+
+   protected final Charset            charset;
+
+   // ------------------------
+   // Constructor
+   // ------------------------
+
+   private PayloadMatcher(Charset charset) {
+      this.charset = charset;
+   }
+
+   /**
+    * Compile the search text into a matcher
+    *
+    * @param searchText
+    *           the payload search text, with an optional prefix
+    * @param charset
+    *           charset used to search into the body of BytesMessages
+    * @throws IllegalArgumentException
+    *            if the regular expression, json path or XPath expression is not valid
+    */
+   public static PayloadMatcher compile(String searchText, Charset charset) {
+      if ((searchText == null) || (searchText.isEmpty())) {
+         return ALL;
+      }
+
+      log.debug("compile '{}' charset={}", searchText, charset);
+
+      if (searchText.startsWith(PREFIX_ICASE)) {
+         return new IgnoreCaseMatcher(searchText.substring(PREFIX_ICASE.length()), charset);
+      }
+      if (searchText.startsWith(PREFIX_ALL)) {
+         return new MultiTermMatcher(searchText.substring(PREFIX_ALL.length()), true, charset);
+      }
+      if (searchText.startsWith(PREFIX_ANY)) {
+         return new MultiTermMatcher(searchText.substring(PREFIX_ANY.length()), false, charset);
+      }
+      if (searchText.startsWith(PREFIX_REGEX)) {
+         return new RegexMatcher(searchText.substring(PREFIX_REGEX.length()), charset);
+      }
+      if (searchText.startsWith(PREFIX_JSON)) {
+         return new JsonPathMatcher(searchText.substring(PREFIX_JSON.length()), charset);
+      }
+      if (searchText.startsWith(PREFIX_XPATH)) {
+         return new XPathMatcher(searchText.substring(PREFIX_XPATH.length()), charset);
+      }
+      return new LiteralMatcher(searchText, charset);
+   }
+
+   // ------------------------
+   // Business Interface
+   // ------------------------
+
+   public boolean matches(Message message) throws JMSException {
+
+      // Search on text payload of Text Messages
+      if (message instanceof TextMessage) {
+         String text = ((TextMessage) message).getText();
+         return (text != null) && (matches(text));
+      }
+
+      // Search on "values" of Map Message content
+      if (message instanceof MapMessage) {
+         MapMessage mm = (MapMessage) message;
+         Enumeration<?> mapNames = mm.getMapNames();
+         while (mapNames.hasMoreElements()) {
+            Object value = mm.getObject((String) mapNames.nextElement());
+            if (value == null) {
+               continue;
+            }
+            if (value instanceof byte[] ? matches((byte[]) value, ((byte[]) value).length) : matches(value.toString())) {
+               return true;
+            }
+         }
+         return false;
+      }
+
+      // Search on body of Bytes Messages
+      if (message instanceof BytesMessage) {
+         BytesMessage bm = (BytesMessage) message;
+         bm.reset();
+         byte[] body = new byte[(int) bm.getBodyLength()];
+         int length = bm.readBytes(body);
+         bm.reset();
+         return (length > 0) && (matches(body, length));
+      }
+
+      return false;
+   }
+
+   protected abstract boolean matches(String text);
+
+   // By default, bytes are decoded into a String with the charset
+   protected boolean matches(byte[] bytes, int length) {
+      return matches(new String(bytes, 0, length, charset));
+   }
+
+   private static String getRootCauseMessage(Throwable t) {
+      Throwable c = t;
+      while (c.getCause() != null) {
+         c = c.getCause();
+      }
+      return c.getMessage() == null ? t.getMessage() : c.getMessage();
+   }
+
+   // --------------
+   // Helper Classes
+   // --------------
+
+   private static final class AllMatcher extends PayloadMatcher {
+
+      private AllMatcher() {
+         super(null);
+      }
+
+      @Override
+      public boolean matches(Message message) {
+         return true;
+      }
+
+      @Override
+      protected boolean matches(String text) {
+         return true;
+      }
+   }
+
+   // Boyer-Moore-Horspool search. The skip tables are computed once
+   private static final class LiteralMatcher extends PayloadMatcher {
+      private final String text;
+      private final char[] chars;
+      private final int[]  charSkip;
+      private final byte[] bytes;
+      private final int[]  byteSkip;
+
+      private LiteralMatcher(String text, Charset charset) {
+         super(charset);
+         this.text = text;
+
+         this.chars = text.toCharArray();
+         this.charSkip = new int[Character.MAX_VALUE + 1];
+         for (int i = 0; i < charSkip.length; i++) {
+            charSkip[i] = chars.length;
+         }
+         for (int i = 0; i < chars.length - 1; i++) {
+            charSkip[chars[i]] = chars.length - 1 - i;
+         }
+
+         this.bytes = text.getBytes(charset);
+         this.byteSkip = new int[256];
+         for (int i = 0; i < byteSkip.length; i++) {
+            byteSkip[i] = bytes.length;
+         }
+         for (int i = 0; i < bytes.length - 1; i++) {
+            byteSkip[bytes[i] & 0xFF] = bytes.length - 1 - i;
+         }
+      }
+
+      @Override
+      protected boolean matches(String s) {
+         int n = chars.length;
+         int last = s.length() - n;
+         int i = 0;
+         while (i <= last) {
+            int j = n - 1;
+            while ((j >= 0) && (s.charAt(i + j) == chars[j])) {
+               j--;
+            }
+            if (j < 0) {
+               return true;
+            }
+            i += charSkip[s.charAt(i + n - 1)];
+         }
+         return false;
+      }
+
+      @Override
+      protected boolean matches(byte[] b, int length) {
+         int n = bytes.length;
+         int last = length - n;
+         int i = 0;
+         while (i <= last) {
+            int j = n - 1;
+            while ((j >= 0) && (b[i + j] == bytes[j])) {
+               j--;
+            }
+            if (j < 0) {
+               return true;
+            }
+            i += byteSkip[b[i + n - 1] & 0xFF];
+         }
+         return false;
+      }
+
+      @Override
+      public String toString() {
+         return "LiteralMatcher [" + text + "]";
+      }
+   }
+
+   private static final class MultiTermMatcher extends PayloadMatcher {
+      private final LiteralMatcher[] terms;
+      private final boolean          all;
+
+      private MultiTermMatcher(String text, boolean all, Charset charset) {
+         super(charset);
+         this.all = all;
+
+         List<LiteralMatcher> l = new ArrayList<>();
+         for (String term : text.trim().split("\\s+")) {
+            if (!term.isEmpty()) {
+               l.add(new LiteralMatcher(term, charset));
+            }
+         }
+         if (l.isEmpty()) {
+            throw new IllegalArgumentException("No term to search for");
+         }
+         this.terms = l.toArray(new LiteralMatcher[l.size()]);
+      }
+
+      @Override
+      protected boolean matches(String s) {
+         for (LiteralMatcher term : terms) {
+            if (term.matches(s) != all) {
+               return !all;
+            }
+         }
+         return all;
+      }
+
+      @Override
+      protected boolean matches(byte[] b, int length) {
+         for (LiteralMatcher term : terms) {
+            if (term.matches(b, length) != all) {
+               return !all;
+            }
+         }
+         return all;
+      }
+   }
+
+   private static final class IgnoreCaseMatcher extends PayloadMatcher {
+      private final Pattern pattern;
+
+      private IgnoreCaseMatcher(String text, Charset charset) {
+         super(charset);
+         this.pattern = Pattern.compile(Pattern.quote(text), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+      }
+
+      @Override
+      protected boolean matches(String s) {
+         return pattern.matcher(s).find();
+      }
+   }
+
+   private static final class RegexMatcher extends PayloadMatcher {
+      private final Pattern pattern;
+
+      private RegexMatcher(String regex, Charset charset) {
+         super(charset);
+         try {
+            this.pattern = Pattern.compile(regex, Pattern.DOTALL);
+         } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException("Invalid regular expression: " + e.getMessage(), e);
+         }
+      }
+
+      @Override
+      protected boolean matches(String s) {
+         return pattern.matcher(s).find();
+      }
+   }
+
+   // json path of the form "$.a.b[0].c" or "a.b[0].c", optionally followed by "=value"
+   private static final class JsonPathMatcher extends PayloadMatcher {
+      private final Object[] path;                                            // String for a key, Integer for an index
+      private final String   value;
+
+      private JsonPathMatcher(String expression, Charset charset) {
+         super(charset);
+
+         String p = expression;
+         int eq = expression.indexOf('=');
+         if (eq >= 0) {
+            p = expression.substring(0, eq).trim();
+            this.value = expression.substring(eq + 1).trim();
+         } else {
+            this.value = null;
+         }
+
+         if (p.startsWith("$")) {
+            p = p.substring(1);
+         }
+         List<Object> elements = new ArrayList<>();
+         for (String s : JSON_PATH_SEP.split(p)) {
+            if (s.isEmpty()) {
+               continue;
+            }
+            if (s.startsWith("[")) {
+               if (!s.endsWith("]")) {
+                  throw new IllegalArgumentException("Invalid json path: '" + expression + "'");
+               }
+               try {
+                  elements.add(Integer.valueOf(s.substring(1, s.length() - 1).trim()));
+               } catch (NumberFormatException e) {
+                  throw new IllegalArgumentException("Invalid index in json path: '" + expression + "'");
+               }
+            } else {
+               elements.add(s);
+            }
+         }
+         this.path = elements.toArray();
+      }
+
+      @Override
+      protected boolean matches(String s) {
+         JsonValue current;
+         try (JsonReader reader = Json.createReader(new StringReader(s));) {
+            current = reader.read();
+         } catch (JsonException | IllegalStateException e) {
+            // Not a json document
+            return false;
+         }
+
+         for (Object element : path) {
+            if ((element instanceof String) && (current instanceof JsonObject)) {
+               current = ((JsonObject) current).get(element);
+            } else if ((element instanceof Integer) && (current instanceof JsonArray)) {
+               JsonArray array = (JsonArray) current;
+               int index = (Integer) element;
+               current = index < array.size() ? array.get(index) : null;
+            } else {
+               return false;
+            }
+            if (current == null) {
+               return false;
+            }
+         }
+
+         if (value == null) {
+            return true;
+         }
+         String v = current instanceof JsonString ? ((JsonString) current).getString() : current.toString();
+         return value.equals(v);
+      }
+   }
+
+   private static final class XPathMatcher extends PayloadMatcher {
+
+      private static final String                DISALLOW_DOCTYPE = "http://apache.org/xml/features/disallow-doctype-decl";
+
+      // XPath expressions, DocumentBuilderFactories and DocumentBuilders are not thread safe
+      private final ThreadLocal<XPathExpression> expression;
+      private final ThreadLocal<DocumentBuilder> documentBuilder;
+
+      private XPathMatcher(final String xpath, Charset charset) {
+         super(charset);
+         try {
+            // Validate the expression once
+            XPathFactory.newInstance().newXPath().compile(xpath);
+         } catch (XPathExpressionException e) {
+            throw new IllegalArgumentException("Invalid XPath expression: " + getRootCauseMessage(e), e);
+         }
+
+         this.expression = ThreadLocal.withInitial(() -> {
+            try {
+               return XPathFactory.newInstance().newXPath().compile(xpath);
+            } catch (XPathExpressionException e) {
+               throw new IllegalStateException(e);
+            }
+         });
+         this.documentBuilder = ThreadLocal.withInitial(XPathMatcher::newDocumentBuilder);
+      }
+
+      // The payloads browsed are not trusted: no DTD, no external entities
+      private static DocumentBuilder newDocumentBuilder() {
+         try {
+            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+            dbf.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            dbf.setFeature(DISALLOW_DOCTYPE, true);
+            dbf.setXIncludeAware(false);
+            dbf.setExpandEntityReferences(false);
+            return dbf.newDocumentBuilder();
+         } catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+         }
+      }
+
+      @Override
+      protected boolean matches(String s) {
+         if (!s.trim().startsWith("<")) {
+            return false;
+         }
+         try {
+            DocumentBuilder db = documentBuilder.get();
+            db.reset();
+            return (Boolean) expression.get()
+                     .evaluate(db.parse(new InputSource(new StringReader(s))), XPathConstants.BOOLEAN);
+         } catch (Exception e) {
+            // Not an xml document
+            log.trace("Payload not evaluated with XPath: {}", e.getMessage());
+            return false;
+         }
+      }
+   }
+}
@@ -61,14 +61,19 @@ final class PageGeneral extends PreferencePage {
    private ColumnsSetsManager  csManager;
 
    private Spinner             spinnerAutoRefreshDelay;
+   private Button              autoRefreshIncremental;
    private Spinner             spinnerMaxMessages;
    private Button              showSystemObject;
    private Button              autoResizeColumnsWidth;
    private Button              editMessageOnDragAndDrop;
    private Button              showNonBrowsableQueue;
+   private Spinner             spinnerQDepthParallelism;
    private Button              trustAllCertificates;
    private Button              clearScriptLogsOnExecution;
    private Spinner             spinnerMaxMessagesTopic;
+   private Spinner             spinnerDrainParallelism;
+   private Button              topicCaptureFile;
+   private Combo               comboPayloadSearchCharset;
    private Text                textConnectionClientId;
    private Spinner             spinnerXMLindent;
    private Button              synchronizeSessionBrowser;
@@ -139,6 +144,10 @@ final class PageGeneral extends PreferencePage {
       Label lbl4 = new Label(gBrowser, SWT.LEFT);
       lbl4.setText("seconds");
 
+      autoRefreshIncremental = new Button(gBrowser, SWT.CHECK);
+      autoRefreshIncremental.setText("'Auto refresh' only applies the messages added or removed since the last refresh");
+      autoRefreshIncremental.setLayoutData(new GridData(SWT.LEFT, SWT.CENTER, true, false, 3, 1));
+
       Label lbl9 = new Label(gBrowser, SWT.LEFT);
       lbl9.setText("Limit messages captured per topic subscription to");
       lbl9.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 1, 1));
@@ -152,6 +161,34 @@ final class PageGeneral extends PreferencePage {
       Label lbl10 = new Label(gBrowser, SWT.LEFT);
       lbl10.setText("messages (0 = no limit)");
 
+      Label lbl15 = new Label(gBrowser, SWT.LEFT);
+      lbl15.setText("Empty queues with");
+      lbl15.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 1, 1));
+      spinnerDrainParallelism = new Spinner(gBrowser, SWT.BORDER);
+      spinnerDrainParallelism.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, false, false, 1, 1));
+      spinnerDrainParallelism.setMinimum(1);
+      spinnerDrainParallelism.setMaximum(32);
+      spinnerDrainParallelism.setIncrement(1);
+      spinnerDrainParallelism.setPageIncrement(4);
+      spinnerDrainParallelism.setTextLimit(2);
+      Label lbl16 = new Label(gBrowser, SWT.LEFT);
+      lbl16.setText("parallel consumers");
+
+      topicCaptureFile = new Button(gBrowser, SWT.CHECK);
+      topicCaptureFile.setText("Capture topic messages in a temporary file instead of keeping them in memory");
+      topicCaptureFile.setLayoutData(new GridData(SWT.LEFT, SWT.CENTER, true, false, 3, 1));
+
+      Label lbl17 = new Label(gBrowser, SWT.LEFT);
+      lbl17.setText("Search payload of bytes messages as");
+      lbl17.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 1, 1));
+      comboPayloadSearchCharset = new Combo(gBrowser, SWT.DROP_DOWN);
+      comboPayloadSearchCharset.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, false, false, 1, 1));
+      comboPayloadSearchCharset.setToolTipText("Charset used to search the text entered in the payload filter into bytes messages");
+      comboPayloadSearchCharset
+               .setItems(new String[] { "UTF-8", "ISO-8859-1", "US-ASCII", "UTF-16", "windows-1252", "IBM500", "IBM037" });
+      Label lbl18 = new Label(gBrowser, SWT.LEFT);
+      lbl18.setText("text");
+
       Label lbl24 = new Label(gBrowser, SWT.LEFT);
       lbl24.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 1, 1));
       lbl24.setText("Default Columns Set:");
@@ -173,10 +210,23 @@ final class PageGeneral extends PreferencePage {
       Group qQDepth = new Group(composite, SWT.SHADOW_ETCHED_IN);
       qQDepth.setLayoutData(new GridData(SWT.LEFT, SWT.CENTER, true, false, 1, 1));
       qQDepth.setText("Queue depth browsers");
-      qQDepth.setLayout(new GridLayout(1, false));
+      qQDepth.setLayout(new GridLayout(3, false));
 
       showNonBrowsableQueue = new Button(qQDepth, SWT.CHECK);
       showNonBrowsableQueue.setText("Show 'non browsable' queues in the 'Queue depth' browser");
+      showNonBrowsableQueue.setLayoutData(new GridData(SWT.LEFT, SWT.CENTER, true, false, 3, 1));
+
+      Label lbl5 = new Label(qQDepth, SWT.LEFT);
+      lbl5.setText("Collect queue depths with");
+      spinnerQDepthParallelism = new Spinner(qQDepth, SWT.BORDER);
+      spinnerQDepthParallelism.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, false, false, 1, 1));
+      spinnerQDepthParallelism.setMinimum(1);
+      spinnerQDepthParallelism.setMaximum(32);
+      spinnerQDepthParallelism.setIncrement(1);
+      spinnerQDepthParallelism.setPageIncrement(4);
+      spinnerQDepthParallelism.setTextLimit(2);
+      Label lbl6 = new Label(qQDepth, SWT.LEFT);
+      lbl6.setText("parallel workers");
 
       // Message Viewer
 
@@ -249,13 +299,18 @@ final class PageGeneral extends PreferencePage {
       // Set Values
       spinnerMaxMessages.setSelection(ps.getInt(Constants.PREF_MAX_MESSAGES));
       spinnerAutoRefreshDelay.setSelection(ps.getInt(Constants.PREF_AUTO_REFRESH_DELAY));
+      autoRefreshIncremental.setSelection(ps.getBoolean(Constants.PREF_AUTO_REFRESH_INCREMENTAL));
       showSystemObject.setSelection(ps.getBoolean(Constants.PREF_SHOW_SYSTEM_OBJECTS));
       autoResizeColumnsWidth.setSelection(ps.getBoolean(Constants.PREF_AUTO_RESIZE_COLS_BROWSER));
       editMessageOnDragAndDrop.setSelection(ps.getBoolean(Constants.PREF_EDIT_MESSAGE_DND));
       showNonBrowsableQueue.setSelection(ps.getBoolean(Constants.PREF_SHOW_NON_BROWSABLE_Q));
+      spinnerQDepthParallelism.setSelection(ps.getInt(Constants.PREF_Q_DEPTH_PARALLELISM));
       trustAllCertificates.setSelection(ps.getBoolean(Constants.PREF_TRUST_ALL_CERTIFICATES));
       clearScriptLogsOnExecution.setSelection(ps.getBoolean(Constants.PREF_CLEAR_LOGS_EXECUTION));
       spinnerMaxMessagesTopic.setSelection(ps.getInt(Constants.PREF_MAX_MESSAGES_TOPIC));
+      spinnerDrainParallelism.setSelection(ps.getInt(Constants.PREF_DRAIN_PARALLELISM));
+      topicCaptureFile.setSelection(ps.getBoolean(Constants.PREF_TOPIC_CAPTURE_FILE));
+      comboPayloadSearchCharset.setText(ps.getString(Constants.PREF_PAYLOAD_SEARCH_CHARSET));
       textConnectionClientId.setText(ps.getString(Constants.PREF_CONN_CLIENT_ID_PREFIX));
       spinnerXMLindent.setSelection(ps.getInt(Constants.PREF_XML_INDENT));
       synchronizeSessionBrowser.setSelection(ps.getBoolean(Constants.PREF_SYNCHRONIZE_SESSIONS_MESSAGES));
@@ -303,13 +358,18 @@ final class PageGeneral extends PreferencePage {
    protected void performDefaults() {
       spinnerMaxMessages.setSelection(ps.getDefaultInt(Constants.PREF_MAX_MESSAGES));
       spinnerAutoRefreshDelay.setSelection(ps.getDefaultInt(Constants.PREF_AUTO_REFRESH_DELAY));
+      autoRefreshIncremental.setSelection(ps.getDefaultBoolean(Constants.PREF_AUTO_REFRESH_INCREMENTAL));
       showSystemObject.setSelection(ps.getDefaultBoolean(Constants.PREF_SHOW_SYSTEM_OBJECTS));
       autoResizeColumnsWidth.setSelection(ps.getDefaultBoolean(Constants.PREF_AUTO_RESIZE_COLS_BROWSER));
       editMessageOnDragAndDrop.setSelection(ps.getDefaultBoolean(Constants.PREF_EDIT_MESSAGE_DND));
       showNonBrowsableQueue.setSelection(ps.getDefaultBoolean(Constants.PREF_SHOW_NON_BROWSABLE_Q));
+      spinnerQDepthParallelism.setSelection(ps.getDefaultInt(Constants.PREF_Q_DEPTH_PARALLELISM));
       trustAllCertificates.setSelection(ps.getDefaultBoolean(Constants.PREF_TRUST_ALL_CERTIFICATES));
       clearScriptLogsOnExecution.setSelection(ps.getDefaultBoolean(Constants.PREF_CLEAR_LOGS_EXECUTION));
       spinnerMaxMessagesTopic.setSelection(ps.getDefaultInt(Constants.PREF_MAX_MESSAGES_TOPIC));
+      spinnerDrainParallelism.setSelection(ps.getDefaultInt(Constants.PREF_DRAIN_PARALLELISM));
+      topicCaptureFile.setSelection(ps.getDefaultBoolean(Constants.PREF_TOPIC_CAPTURE_FILE));
+      comboPayloadSearchCharset.setText(ps.getDefaultString(Constants.PREF_PAYLOAD_SEARCH_CHARSET));
       textConnectionClientId.setText(ps.getDefaultString(Constants.PREF_CONN_CLIENT_ID_PREFIX));
       spinnerXMLindent.setSelection(ps.getDefaultInt(Constants.PREF_XML_INDENT));
       synchronizeSessionBrowser.setSelection(ps.getDefaultBoolean(Constants.PREF_SYNCHRONIZE_SESSIONS_MESSAGES));
@@ -333,13 +393,18 @@ final class PageGeneral extends PreferencePage {
 
       ps.setValue(Constants.PREF_MAX_MESSAGES, spinnerMaxMessages.getSelection());
       ps.setValue(Constants.PREF_AUTO_REFRESH_DELAY, spinnerAutoRefreshDelay.getSelection());
+      ps.setValue(Constants.PREF_AUTO_REFRESH_INCREMENTAL, autoRefreshIncremental.getSelection());
       ps.setValue(Constants.PREF_SHOW_SYSTEM_OBJECTS, showSystemObject.getSelection());
       ps.setValue(Constants.PREF_AUTO_RESIZE_COLS_BROWSER, autoResizeColumnsWidth.getSelection());
       ps.setValue(Constants.PREF_EDIT_MESSAGE_DND, editMessageOnDragAndDrop.getSelection());
       ps.setValue(Constants.PREF_SHOW_NON_BROWSABLE_Q, showNonBrowsableQueue.getSelection());
+      ps.setValue(Constants.PREF_Q_DEPTH_PARALLELISM, spinnerQDepthParallelism.getSelection());
       ps.setValue(Constants.PREF_TRUST_ALL_CERTIFICATES, trustAllCertificates.getSelection());
       ps.setValue(Constants.PREF_CLEAR_LOGS_EXECUTION, clearScriptLogsOnExecution.getSelection());
       ps.setValue(Constants.PREF_MAX_MESSAGES_TOPIC, spinnerMaxMessagesTopic.getSelection());
+      ps.setValue(Constants.PREF_DRAIN_PARALLELISM, spinnerDrainParallelism.getSelection());
+      ps.setValue(Constants.PREF_TOPIC_CAPTURE_FILE, topicCaptureFile.getSelection());
+      ps.setValue(Constants.PREF_PAYLOAD_SEARCH_CHARSET, comboPayloadSearchCharset.getText().trim());
       ps.setValue(Constants.PREF_CONN_CLIENT_ID_PREFIX, textConnectionClientId.getText());
       ps.setValue(Constants.PREF_XML_INDENT, spinnerXMLindent.getSelection());
       ps.setValue(Constants.PREF_SYNCHRONIZE_SESSIONS_MESSAGES, synchronizeSessionBrowser.getSelection());
@@ -25,6 +25,7 @@ import org.titou10.jtb.jms.model.JTBMessageTemplate;
 import org.titou10.jtb.script.gen.DataFile;
 import org.titou10.jtb.script.gen.Step;
 import org.titou10.jtb.script.gen.StepKind;
+import org.titou10.jtb.variable.VariableTemplate;
 
 /**
  * "Runtime" view of a step
@@ -33,17 +34,20 @@ import org.titou10.jtb.script.gen.StepKind;
  *
  */
 public class RuntimeStep {
-   private Step               step;
+   private Step                      step;
 
-   private JTBMessageTemplate jtbMessageTemplate;
-   private JTBConnection      jtbConnection;
-   private JTBDestination     jtbDestination;
+   private JTBMessageTemplate        jtbMessageTemplate;
+   private JTBConnection             jtbConnection;
+   private JTBDestination            jtbDestination;
 
-   private DataFile           dataFile;
-   private List<File>         payloadFiles;
-   private String[]           varNames;
+   private DataFile                  dataFile;
+   private List<File>                payloadFiles;
+   private String[]                  varNames;
 
-   private String             templateName;
+   private String                    templateName;
+
+   // Payload of the messages, parsed once
+   private volatile VariableTemplate payloadTemplate;
 
    // -----------
    // Constructor
@@ -91,6 +95,17 @@ public class RuntimeStep {
       this.templateName = templateName;
    }
 
+   // Return the parsed payload. The payload is parsed again when it changes, ie for each payload file
+   public VariableTemplate getPayloadTemplate(String payloadText) {
+      VariableTemplate vt = payloadTemplate;
+      // Same instance: the messages of a step share the payload text of their template
+      if ((vt == null) || (vt.getText() != payloadText)) {
+         vt = VariableTemplate.compile(payloadText);
+         payloadTemplate = vt;
+      }
+      return vt;
+   }
+
    // ------------------------
    // Standard Getters/Setters
    // ------------------------
@@ -26,11 +26,15 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
@@ -60,6 +64,7 @@ import org.titou10.jtb.jms.model.JTBMessage;
 import org.titou10.jtb.jms.model.JTBMessageTemplate;
 import org.titou10.jtb.jms.model.JTBSession;
 import org.titou10.jtb.jms.model.JTBSessionClientType;
+import org.titou10.jtb.jms.model.MessageSendBatch;
 import org.titou10.jtb.script.ScriptStepResult.ExectionActionCode;
 import org.titou10.jtb.script.gen.DataFile;
 import org.titou10.jtb.script.gen.GlobalVariable;
@@ -70,6 +75,7 @@ import org.titou10.jtb.template.TemplatesManager;
 import org.titou10.jtb.template.TemplatesManager.TemplateNameStructure;
 import org.titou10.jtb.util.Constants;
 import org.titou10.jtb.util.Utils;
+import org.titou10.jtb.variable.VariableTemplate;
 import org.titou10.jtb.variable.VariablesManager;
 import org.titou10.jtb.variable.gen.Variable;
 
@@ -89,6 +95,7 @@ public class ScriptExecutionEngine {
    private static final String MAX_MESSAGES_REACHED    = "MAX_MESSAGES_REACHED";
    private static final int    NB_TICKS_VALIDATION     = 7;
    private static final int    NB_TICKS_PER_STEP       = 100000;
+   private static final long   PROGRESS_INTERVAL_MS    = 250L;
 
    @Inject
    private IEventBroker        eventBroker;
@@ -210,7 +217,29 @@ public class ScriptExecutionEngine {
          subMonitorExecution.setTaskName("Executing Script...");
       }
 
-      for (RuntimeStep runtimeStep : runtimeSteps) {
+      for (int i = 0; i < runtimeSteps.size(); i++) {
+         RuntimeStep runtimeStep = runtimeSteps.get(i);
+
+         // Consecutive independent steps are executed at the same time
+         List<RuntimeStep> independentSteps = new ArrayList<>();
+         for (int j = i; (j < runtimeSteps.size()) && (isIndependent(runtimeSteps.get(j))); j++) {
+            independentSteps.add(runtimeSteps.get(j));
+         }
+         if (independentSteps.size() > 1) {
+            subMonitorExecution.setWorkRemaining(nbTicksExecution);
+            nbTicksExecution -= NB_TICKS_PER_STEP * independentSteps.size();
+            subMonitorExecution.subTask(independentSteps.size() + " independent steps");
+
+            executeIndependentSteps(subMonitorExecution,
+                                    simulation,
+                                    doShowPostLogs,
+                                    nbMessagesMax,
+                                    nbMessagePost,
+                                    globalVariablesValues,
+                                    independentSteps);
+            i += independentSteps.size() - 1;
+            continue;
+         }
 
          subMonitorExecution.setWorkRemaining(nbTicksExecution);
          nbTicksExecution -= NB_TICKS_PER_STEP;
@@ -227,49 +256,169 @@ public class ScriptExecutionEngine {
                break;
 
             case REGULAR:
+               executeRegularStep(subMonitorExecution,
+                                  simulation,
+                                  doShowPostLogs,
+                                  nbMessagesMax,
+                                  nbMessagePost,
+                                  globalVariablesValues,
+                                  runtimeStep);
+               break;
 
-               updateLog(doShowPostLogs,
-                         ScriptStepResult.createStepStart(runtimeStep.getTemplateName(),
-                                                          runtimeStep.getJtbDestination().getName()));
-
-               // Parse the template to replace variables names by global variables values
-               JTBMessageTemplate t = runtimeStep.getJtbMessageTemplate();
-               String payload = t.getPayloadText();
-               if (payload != null) {
-                  for (Entry<String, String> v : globalVariablesValues.entrySet()) {
-                     payload = payload.replaceAll(variablesManager.buildVariableReplaceName(v.getKey()), v.getValue());
-                  }
-                  t.setPayloadText(payload);
-               }
+            default:
+               break;
+         }
+      }
+   }
 
-               try {
+   private boolean isIndependent(RuntimeStep runtimeStep) {
+      Step step = runtimeStep.getStep();
+      return (step.getKind() == StepKind.REGULAR) && (Boolean.TRUE.equals(step.isIndependent()));
+   }
 
-                  executeRegular(subMonitorExecution, simulation, doShowPostLogs, nbMessagesMax, nbMessagePost, runtimeStep);
+   // Execute steps at the same time, one thread per step
+   private void executeIndependentSteps(SubMonitor subMonitor,
+                                        boolean simulation,
+                                        boolean doShowPostLogs,
+                                        int nbMessagesMax,
+                                        AtomicInteger nbMessagePost,
+                                        Map<String, String> globalVariablesValues,
+                                        List<RuntimeStep> runtimeSteps) throws InterruptedException, InvocationTargetException {
+      log.debug("executeIndependentSteps. {} steps", runtimeSteps.size());
+
+      // The SubMonitor is not thread safe: the steps report to a shared monitor, forwarded by this thread
+      ConcurrentProgressMonitor stepsMonitor = new ConcurrentProgressMonitor();
+
+      AtomicInteger threadNumber = new AtomicInteger(0);
+      ExecutorService executor = Executors.newFixedThreadPool(runtimeSteps.size(), r -> {
+         Thread t = new Thread(r, "JTB-ScriptStep-" + threadNumber.incrementAndGet());
+         t.setDaemon(true);
+         return t;
+      });
+      List<Future<Void>> futures = new ArrayList<>(runtimeSteps.size());
+      try {
+         for (RuntimeStep runtimeStep : runtimeSteps) {
+            futures.add(executor.submit(() -> {
+               try {
+                  executeRegularStep(stepsMonitor,
+                                     simulation,
+                                     doShowPostLogs,
+                                     nbMessagesMax,
+                                     nbMessagePost,
+                                     globalVariablesValues,
+                                     runtimeStep);
+               } catch (Exception e) {
+                  // Stop the other steps
+                  stepsMonitor.setCanceled(true);
+                  throw e;
+               }
+               return null;
+            }));
+         }
+         executor.shutdown();
 
-                  updateLog(doShowPostLogs, ScriptStepResult.createStepSuccess());
+         while (!executor.awaitTermination(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+            stepsMonitor.forwardTo(subMonitor);
+         }
+         stepsMonitor.forwardTo(subMonitor);
+      } finally {
+         executor.shutdownNow();
+      }
 
-               } catch (JMSException | IOException e) {
-                  log.error("Exception occurred during step execution ", e);
-                  updateLog(doShowPostLogs, ScriptStepResult.createStepFail(runtimeStep.getJtbDestination().getName(), e));
-                  throw new InvocationTargetException(e);
+      // Report the first failure in the order of the steps. The other steps have been stopped because of it
+      InterruptedException interruptedException = null;
+      for (Future<Void> future : futures) {
+         try {
+            future.get();
+         } catch (ExecutionException e) {
+            Throwable t = e.getCause();
+            if (t instanceof InterruptedException) {
+               // Max messages reached or cancelled. Keep the first one, as a step may have failed
+               if (interruptedException == null) {
+                  interruptedException = new InterruptedException(t.getMessage());
                }
-               break;
+               continue;
+            }
+            if (t instanceof InvocationTargetException) {
+               throw (InvocationTargetException) t;
+            }
+            throw new InvocationTargetException(t);
+         }
+      }
+      if (interruptedException != null) {
+         throw interruptedException;
+      }
+   }
 
-            default:
-               break;
+   private void executeRegularStep(IProgressMonitor monitor,
+                                   boolean simulation,
+                                   boolean doShowPostLogs,
+                                   int nbMessagesMax,
+                                   AtomicInteger nbMessagePost,
+                                   Map<String, String> globalVariablesValues,
+                                   RuntimeStep runtimeStep) throws InterruptedException, InvocationTargetException {
+
+      updateLog(doShowPostLogs,
+                ScriptStepResult.createStepStart(runtimeStep.getTemplateName(), runtimeStep.getJtbDestination().getName()));
+
+      // Parse the template to replace variables names by global variables values
+      JTBMessageTemplate t = runtimeStep.getJtbMessageTemplate();
+      String payload = t.getPayloadText();
+      if (payload != null) {
+         t.setPayloadText(variablesManager.replaceVariables(globalVariablesValues, payload));
+      }
+
+      // Rate, ramp up and duration of the step, if any
+      StepLoadController loadController = StepLoadController.create(simulation, runtimeStep.getStep());
+
+      // Messages are sent in batches, one transaction per batch, by one or many workers
+      try (StepSender stepSender = openStepSender(simulation, runtimeStep)) {
+
+         if (loadController != null) {
+            loadController.start();
+         }
+
+         // With a duration, the messages of the step are sent again and again until the duration is elapsed
+         while (executeRegular(monitor,
+                               simulation,
+                               doShowPostLogs,
+                               nbMessagesMax,
+                               nbMessagePost,
+                               runtimeStep,
+                               stepSender,
+                               loadController)
+                && (loadController != null)
+                && (loadController.hasDuration())) {
+            log.debug("Duration of the step not elapsed. Sending the messages of the step again");
          }
+
+         // Wait for the workers before reporting the success of the step
+         stepSender.close();
+         if (loadController != null) {
+            loadController.stop();
+            updateLog(doShowPostLogs, ScriptStepResult.createStepLoadSuccess(loadController));
+         }
+         updateLog(doShowPostLogs, ScriptStepResult.createStepSuccess());
+
+      } catch (JMSException | IOException e) {
+         log.error("Exception occurred during step execution ", e);
+         updateLog(doShowPostLogs, ScriptStepResult.createStepFail(runtimeStep.getJtbDestination().getName(), e));
+         throw new InvocationTargetException(e);
       }
    }
 
-   private void executeRegular(SubMonitor subMonitor,
-                               boolean simulation,
-                               boolean doShowPostLogs,
-                               int nbMessagesMax,
-                               AtomicInteger nbMessagePost,
-                               RuntimeStep runtimeStep) throws JMSException, InterruptedException, IOException {
+   // Return false if the duration of the step is elapsed
+   private boolean executeRegular(IProgressMonitor subMonitor,
+                                  boolean simulation,
+                                  boolean doShowPostLogs,
+                                  int nbMessagesMax,
+                                  AtomicInteger nbMessagePost,
+                                  RuntimeStep runtimeStep,
+                                  StepSender stepSender,
+                                  StepLoadController loadController) throws JMSException, InterruptedException, IOException {
       log.debug("executeRegular. Simulation? {}", simulation);
 
-      Map<String, String> dataFileVariables = new HashMap<>();
+      Map<String, String> dataFileVariables = Collections.emptyMap();
 
       JTBMessageTemplate jtbMessageTemplate = runtimeStep.getJtbMessageTemplate();
 
@@ -279,47 +428,54 @@ public class ScriptExecutionEngine {
 
       if (dataFile == null) {
          if (payloadFiles == null) {
-            executeRegular2(subMonitor,
-                            NB_TICKS_PER_STEP,
-                            simulation,
-                            doShowPostLogs,
-                            nbMessagesMax,
-                            nbMessagePost,
-                            runtimeStep,
-                            jtbMessageTemplate,
-                            templateName,
-                            dataFileVariables);
-            return;
+            return executeRegular2(subMonitor,
+                                   NB_TICKS_PER_STEP,
+                                   simulation,
+                                   doShowPostLogs,
+                                   nbMessagesMax,
+                                   nbMessagePost,
+                                   runtimeStep,
+                                   stepSender,
+                                   loadController,
+                                   jtbMessageTemplate,
+                                   templateName,
+                                   dataFileVariables);
          }
 
          // Payload Directory present. Iterate on files, replace the payload by the content of the file
          int nbTicks = NB_TICKS_PER_STEP / payloadFiles.size();
          log.debug("nbFiles: {} nbTicksPerFile: {}", payloadFiles.size(), nbTicks);
          for (File file : payloadFiles) {
-            switch (jtbMessageTemplate.getJtbMessageType()) {
+            // One template per file: workers may still be sending the messages of the previous file
+            JTBMessageTemplate fileMessageTemplate = new JTBMessageTemplate(jtbMessageTemplate);
+            switch (fileMessageTemplate.getJtbMessageType()) {
                case TEXT:
-                  jtbMessageTemplate.setPayloadText(new String(Files.readAllBytes(file.toPath())));
+                  fileMessageTemplate.setPayloadText(new String(Files.readAllBytes(file.toPath())));
                   break;
 
                case BYTES:
-                  jtbMessageTemplate.setPayloadBytes(Files.readAllBytes(file.toPath()));
+                  fileMessageTemplate.setPayloadBytes(Files.readAllBytes(file.toPath()));
                   break;
 
                default:
                   break;
             }
-            executeRegular2(subMonitor,
-                            nbTicks,
-                            simulation,
-                            doShowPostLogs,
-                            nbMessagesMax,
-                            nbMessagePost,
-                            runtimeStep,
-                            jtbMessageTemplate,
-                            templateName,
-                            dataFileVariables);
+            if (!executeRegular2(subMonitor,
+                                 nbTicks,
+                                 simulation,
+                                 doShowPostLogs,
+                                 nbMessagesMax,
+                                 nbMessagePost,
+                                 runtimeStep,
+                                 stepSender,
+                                 loadController,
+                                 fileMessageTemplate,
+                                 templateName,
+                                 dataFileVariables)) {
+               return false;
+            }
          }
-         return;
+         return true;
       }
 
       // DataFile is present, load the lines..
@@ -346,7 +502,8 @@ public class ScriptExecutionEngine {
       try (BufferedReader reader = Files.newBufferedReader(Paths.get(dataFile.getFileName()), charset);) {
          String line = null;
          while ((line = reader.readLine()) != null) {
-            dataFileVariables.clear();
+            // One map per line: workers may still be sending the messages of the previous line
+            dataFileVariables = new HashMap<>(varNames.length);
 
             // Parse and setup line Variables
             String[] values = line.split(Pattern.quote(dataFile.getDelimiter()));
@@ -362,90 +519,149 @@ public class ScriptExecutionEngine {
             }
 
             // Execute Step
-            executeRegular2(subMonitor,
-                            nbTicks,
-                            simulation,
-                            doShowPostLogs,
-                            nbMessagesMax,
-                            nbMessagePost,
-                            runtimeStep,
-                            jtbMessageTemplate,
-                            templateName,
-                            dataFileVariables);
+            if (!executeRegular2(subMonitor,
+                                 nbTicks,
+                                 simulation,
+                                 doShowPostLogs,
+                                 nbMessagesMax,
+                                 nbMessagePost,
+                                 runtimeStep,
+                                 stepSender,
+                                 loadController,
+                                 jtbMessageTemplate,
+                                 templateName,
+                                 dataFileVariables)) {
+               return false;
+            }
          }
       }
+      return true;
    }
 
-   private void executeRegular2(SubMonitor subMonitor,
-                                int nbTicks,
-                                boolean simulation,
-                                boolean doShowPostLogs,
-                                int nbMessagesMax,
-                                AtomicInteger nbMessagePost,
-                                RuntimeStep runtimeStep,
-                                JTBMessageTemplate t,
-                                String templateName,
-                                Map<String, String> dataFileVariables) throws JMSException, InterruptedException {
+   private boolean executeRegular2(IProgressMonitor subMonitor,
+                                   int nbTicks,
+                                   boolean simulation,
+                                   boolean doShowPostLogs,
+                                   int nbMessagesMax,
+                                   AtomicInteger nbMessagePost,
+                                   RuntimeStep runtimeStep,
+                                   StepSender stepSender,
+                                   StepLoadController loadController,
+                                   JTBMessageTemplate t,
+                                   String templateName,
+                                   Map<String, String> dataFileVariables) throws JMSException, InterruptedException {
 
       Step step = runtimeStep.getStep();
-      JTBConnection jtbConnection = runtimeStep.getJtbConnection();
-      JTBDestination jtbDestination = runtimeStep.getJtbDestination();
 
       int nbTickWorkePerIteration = step.getIterations() > nbTicks ? 1 : nbTicks / step.getIterations();
 
       for (int i = 0; i < step.getIterations(); i++) {
 
-         JTBMessageTemplate jtbMessageTemplate = JTBMessageTemplate.deepClone(t);
+         // Wait for the rate of the step
+         if (loadController != null) {
+            if (!loadController.acquire(subMonitor)) {
+               return false;
+            }
+            if (loadController.isReportDue()) {
+               updateLog(doShowPostLogs, ScriptStepResult.createStepLoadRunning(loadController));
+            }
+         }
 
-         // If we use a data file, replace the dataFileVariables
-         if (!(dataFileVariables.isEmpty())) {
-            jtbMessageTemplate.setPayloadText(variablesManager.replaceDataFileVariables(dataFileVariables,
-                                                                                        jtbMessageTemplate.getPayloadText()));
+         stepSender.execute(sendBatch -> postMessage(simulation,
+                                                     doShowPostLogs,
+                                                     nbMessagesMax,
+                                                     nbMessagePost,
+                                                     runtimeStep,
+                                                     sendBatch,
+                                                     loadController,
+                                                     t,
+                                                     templateName,
+                                                     dataFileVariables));
+
+         subMonitor.worked(nbTickWorkePerIteration);
+         if (subMonitor.isCanceled()) {
+            subMonitor.done();
+            throw new InterruptedException();
          }
+      }
+      return true;
+   }
 
-         // Generate local variables for each iteration
-         jtbMessageTemplate.setPayloadText(variablesManager.replaceTemplateVariables(jtbMessageTemplate.getPayloadText()));
+   // Build and send one message. Called by the thread executing the script, or by the workers of the step
+   private void postMessage(boolean simulation,
+                            boolean doShowPostLogs,
+                            int nbMessagesMax,
+                            AtomicInteger nbMessagePost,
+                            RuntimeStep runtimeStep,
+                            MessageSendBatch sendBatch,
+                            StepLoadController loadController,
+                            JTBMessageTemplate t,
+                            String templateName,
+                            Map<String, String> dataFileVariables) throws JMSException, InterruptedException {
 
-         updateLog(doShowPostLogs, ScriptStepResult.createPostStart(jtbMessageTemplate, templateName));
+      Step step = runtimeStep.getStep();
+      JTBDestination jtbDestination = runtimeStep.getJtbDestination();
 
-         // Send Message
-         if (!simulation) {
-            Message m = jtbConnection.createJMSMessage(jtbMessageTemplate.getJtbMessageType());
-            JTBMessage jtbMessage = jtbMessageTemplate.toJTBMessage(jtbDestination, m);
-            jtbDestination.getJtbConnection().sendMessage(jtbMessage);
-         }
+      // Reserve the message in the max number of messages shared by all the workers
+      int nbPosted = nbMessagePost.incrementAndGet();
+      if (nbPosted > nbMessagesMax) {
+         nbMessagePost.decrementAndGet();
+         throw new InterruptedException(MAX_MESSAGES_REACHED);
+      }
 
-         updateLog(doShowPostLogs, ScriptStepResult.createPostSuccess());
+      JTBMessageTemplate jtbMessageTemplate = new JTBMessageTemplate(t);
 
-         // Increment nb messages posted
-         nbMessagePost.set(nbMessagePost.get() + 1);
-         if (nbMessagePost.get() >= nbMessagesMax) {
-            throw new InterruptedException(MAX_MESSAGES_REACHED);
-         }
+      // Replace the dataFileVariables and generate local variables for each iteration, in one pass on the payload parsed once
+      VariableTemplate payloadTemplate = runtimeStep.getPayloadTemplate(jtbMessageTemplate.getPayloadText());
+      jtbMessageTemplate.setPayloadText(variablesManager.replaceTemplateVariables(payloadTemplate, dataFileVariables));
 
-         // Eventually pause after...
-         Integer pause = step.getPauseSecsAfter();
-         if ((pause != null) && (pause > 0)) {
-            updateLog(doShowPostLogs, ScriptStepResult.createStepPauseStart(pause));
+      updateLog(doShowPostLogs, ScriptStepResult.createPostStart(jtbMessageTemplate, templateName));
 
-            if (!simulation) {
-               try {
-                  TimeUnit.SECONDS.sleep(step.getPauseSecsAfter());
-               } catch (InterruptedException e) {
-                  // NOP
-               }
-            }
-            updateLog(doShowPostLogs, ScriptStepResult.createStepPauseSuccess());
+      // Send Message
+      if (!simulation) {
+         Message m = sendBatch.createJMSMessage(jtbMessageTemplate.getJtbMessageType());
+         JTBMessage jtbMessage = jtbMessageTemplate.toJTBMessage(jtbDestination, m);
+         long start = System.nanoTime();
+         sendBatch.send(jtbMessage);
+         if (loadController != null) {
+            loadController.recordSend(System.nanoTime() - start);
          }
+      }
 
-         subMonitor.worked(nbTickWorkePerIteration);
-         if (subMonitor.isCanceled()) {
-            subMonitor.done();
-            throw new InterruptedException();
+      updateLog(doShowPostLogs, ScriptStepResult.createPostSuccess());
+
+      if (nbPosted >= nbMessagesMax) {
+         throw new InterruptedException(MAX_MESSAGES_REACHED);
+      }
+
+      // Eventually pause after...
+      Integer pause = step.getPauseSecsAfter();
+      if ((pause != null) && (pause > 0)) {
+         updateLog(doShowPostLogs, ScriptStepResult.createStepPauseStart(pause));
+
+         if (!simulation) {
+            // Make the messages sent so far visible before pausing
+            sendBatch.flush();
+            try {
+               TimeUnit.SECONDS.sleep(step.getPauseSecsAfter());
+            } catch (InterruptedException e) {
+               // NOP
+            }
          }
+         updateLog(doShowPostLogs, ScriptStepResult.createStepPauseSuccess());
       }
    }
 
+   private StepSender openStepSender(boolean simulation, RuntimeStep runtimeStep) throws JMSException {
+      Step step = runtimeStep.getStep();
+      Integer batchSize = step.getBatchSize();
+      Integer nbWorkers = step.getNbWorkers();
+      return StepSender.open(runtimeStep.getJtbConnection(),
+                             simulation,
+                             batchSize == null ? 1 : batchSize,
+                             nbWorkers == null ? 1 : nbWorkers);
+   }
+
    private void executePause(SubMonitor subMonitor, boolean simulation, RuntimeStep runtimeStep) throws InterruptedException {
 
       Step step = runtimeStep.getStep();
@@ -487,8 +703,6 @@ public class ScriptExecutionEngine {
                                                                                                      ScriptValidationException {
       log.debug("validateAndBuildRuntimeSteps '{}'. simulation? {}", script.getName(), simulation);
 
-      Random r = new Random(System.nanoTime());
-
       List<Step> steps = script.getStep();
       List<GlobalVariable> globalVariables = script.getGlobalVariable();
 
@@ -586,7 +800,7 @@ public class ScriptExecutionEngine {
                // Generate a value for the variable if no defaut is provides
                String val = globalVariable.getConstantValue();
                if (val == null) {
-                  globalVariablesValues.put(v.getName(), variablesManager.resolveVariable(r, v));
+                  globalVariablesValues.put(v.getName(), variablesManager.resolveVariable(v));
                } else {
                   globalVariablesValues.put(v.getName(), val);
                }
@@ -814,4 +1028,40 @@ public class ScriptExecutionEngine {
          return nbMessagePost.get();
       }
    }
+
+   // --------------
+   // Helper Classes
+   // --------------
+
+   // Progress monitor shared by steps executed at the same time. Only the thread executing the script reports to the real monitor
+   private static final class ConcurrentProgressMonitor extends NullProgressMonitor {
+
+      private final AtomicInteger ticks = new AtomicInteger(0);
+      private volatile boolean    canceled;
+
+      @Override
+      public void worked(int work) {
+         ticks.addAndGet(work);
+      }
+
+      @Override
+      public boolean isCanceled() {
+         return canceled;
+      }
+
+      @Override
+      public void setCanceled(boolean canceled) {
+         this.canceled = canceled;
+      }
+
+      private void forwardTo(IProgressMonitor monitor) {
+         int work = ticks.getAndSet(0);
+         if (work > 0) {
+            monitor.worked(work);
+         }
+         if (monitor.isCanceled()) {
+            canceled = true;
+         }
+      }
+   }
 }
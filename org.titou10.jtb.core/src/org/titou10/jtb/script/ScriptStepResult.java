@@ -42,6 +42,11 @@ public final class ScriptStepResult {
    private static final String STEP_FAILED                     = "Step to destination %s failed : %s";
    private static final String STEP_PAUSE_RUNNING              = "Pause for %d seconds after post ...";
    private static final String STEP_PAUSE_SUCCESS              = "Pause terminated.";
+   private static final String STEP_LOAD_RUNNING               = "%d messages in %.1fs: %.1f msg/s (target %s). %s";
+   private static final String STEP_LOAD_TERMINATED            = "Terminated. %d messages in %.1fs: %.1f msg/s (target %s). %s";
+   private static final String STEP_LOAD_LATENCY               = "Send latency (ms): p50=%.2f p90=%.2f p99=%.2f max=%.2f";
+   private static final String STEP_LOAD_NO_TARGET             = "none";
+   private static final String STEP_LOAD_TARGET                = "%.1f msg/s";
 
    private static final String PAUSE_RUNNING                   = "Pause for %d seconds ...";
    private static final String PAUSE_SUCCESS                   = "Pause terminated.";
@@ -73,6 +78,7 @@ public final class ScriptStepResult {
                                    STEP,
                                    POST,
                                    PAUSE,
+                                   LOAD,
                                    TEMPLATE,
                                    VARIABLE,
                                    DATAFILE,
@@ -244,6 +250,32 @@ public final class ScriptStepResult {
       return new ScriptStepResult(ExectionActionCode.STEP, ExectionReturnCode.SUCCESS, String.format(STEP_PAUSE_SUCCESS), true);
    }
 
+   // Load
+
+   static ScriptStepResult createStepLoadRunning(StepLoadController loadController) {
+      return new ScriptStepResult(ExectionActionCode.LOAD,
+                                  ExectionReturnCode.START,
+                                  String.format(STEP_LOAD_RUNNING,
+                                                loadController.getNbMessages(),
+                                                loadController.getElapsedSeconds(),
+                                                loadController.getAchievedRate(),
+                                                formatTargetRate(loadController.getCurrentRate()),
+                                                formatLatency(loadController)),
+                                  true);
+   }
+
+   static ScriptStepResult createStepLoadSuccess(StepLoadController loadController) {
+      return new ScriptStepResult(ExectionActionCode.LOAD,
+                                  ExectionReturnCode.SUCCESS,
+                                  String.format(STEP_LOAD_TERMINATED,
+                                                loadController.getNbMessages(),
+                                                loadController.getElapsedSeconds(),
+                                                loadController.getAchievedRate(),
+                                                formatTargetRate(loadController.getTargetRate()),
+                                                formatLatency(loadController)),
+                                  true);
+   }
+
    // Post
 
    public static ScriptStepResult createPostStart(JTBMessageTemplate jtbMessageTemplate, String templateName) {
@@ -338,6 +370,22 @@ public final class ScriptStepResult {
       return new ScriptStepResult(executionCode, ExectionReturnCode.FAILED, String.format(EXCEPTION_FAIL, message, ex), true);
    }
 
+   // -------
+   // Helpers
+   // -------
+
+   private static String formatTargetRate(double rate) {
+      return rate <= 0 ? STEP_LOAD_NO_TARGET : String.format(STEP_LOAD_TARGET, rate);
+   }
+
+   private static String formatLatency(StepLoadController loadController) {
+      return String.format(STEP_LOAD_LATENCY,
+                           loadController.getLatencyPercentile(50),
+                           loadController.getLatencyPercentile(90),
+                           loadController.getLatencyPercentile(99),
+                           loadController.getMaxLatency());
+   }
+
    // ------------------------
    // Standard Getters/Setters
    // ------------------------
@@ -323,6 +323,13 @@ public class ScriptsManager {
          newStep.setKind(step.getKind());
          newStep.setIterations(step.getIterations());
          newStep.setPauseSecsAfter(step.getPauseSecsAfter());
+         newStep.setBatchSize(step.getBatchSize());
+         newStep.setNbWorkers(step.getNbWorkers());
+         newStep.setIndependent(step.isIndependent());
+         newStep.setRate(step.getRate());
+         newStep.setRampUpSecs(step.getRampUpSecs());
+         newStep.setRampUpProfile(step.getRampUpProfile());
+         newStep.setDurationSecs(step.getDurationSecs());
          steps.add(newStep);
       }
       newScript.getStep().addAll(steps);
@@ -343,6 +350,13 @@ public class ScriptsManager {
       step.setPayloadDirectory(baseStep.getPayloadDirectory());
       step.setIterations(baseStep.getIterations());
       step.setPauseSecsAfter(baseStep.getPauseSecsAfter());
+      step.setBatchSize(baseStep.getBatchSize());
+      step.setNbWorkers(baseStep.getNbWorkers());
+      step.setIndependent(baseStep.isIndependent());
+      step.setRate(baseStep.getRate());
+      step.setRampUpSecs(baseStep.getRampUpSecs());
+      step.setRampUpProfile(baseStep.getRampUpProfile());
+      step.setDurationSecs(baseStep.getDurationSecs());
 
       String templateDirectory = baseStep.getTemplateDirectory();
       step.setTemplateDirectory(templateDirectory == null || templateDirectory.isEmpty() ? Constants.JTB_TEMPLATE_CONFIG_FOLDER_NAME
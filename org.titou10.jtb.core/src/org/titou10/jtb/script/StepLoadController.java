@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2015 Denis Forveille titou10.titou10@gmail.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.titou10.jtb.script;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.titou10.jtb.script.gen.RampUpProfile;
+import org.titou10.jtb.script.gen.Step;
+
+/**
+ *
+ * Control the rate of the messages sent by a regular step of a script, and measure the rate achieved and the send latency
+ *
+ * The rate is controlled by a token bucket: tokens are added at the current rate, and each message takes one token. The bucket
+ * holds at most a tenth of a second of messages, so a late step does not send a large burst to catch up. During the ramp up, the
+ * current rate grows up to the target rate, continuously (LINEAR) or by steps of a quarter of the target rate (STEPS). When a
+ * duration is set, the step is stopped when the duration is elapsed.
+ *
+ * acquire() is called by the thread executing the step. The send latencies are recorded by the workers, in a histogram with a
+ * precision of 1/16 of the value
+ *
+ * @author Denis Forveille
+ *
+ */
+final class StepLoadController {
+
+   private static final Logger   log                = LoggerFactory.getLogger(StepLoadController.class);
+
+   private static final long     NANOS_PER_SECOND   = TimeUnit.SECONDS.toNanos(1);
+   private static final long     MAX_SLEEP_NANOS    = TimeUnit.MILLISECONDS.toNanos(100);
+   private static final long     REPORT_INTERVAL_NS = TimeUnit.SECONDS.toNanos(10);
+   private static final double   BUCKET_SECONDS     = 0.1d;
+   private static final double   MIN_RATE           = 1.0d;
+   private static final int      NB_RAMP_UP_STEPS   = 4;
+
+   // Histogram of the latencies in microseconds: 16 buckets per power of 2
+   private static final int      SUB_BUCKET_BITS    = 4;
+   private static final int      NB_SUB_BUCKETS     = 1 << SUB_BUCKET_BITS;
+   private static final int      NB_BUCKETS         = (64 - SUB_BUCKET_BITS) << SUB_BUCKET_BITS;
+
+   private final double          targetRate;
+   private final long            rampUpNanos;
+   private final RampUpProfile   rampUpProfile;
+   private final long            durationNanos;
+
+   private final AtomicLong      nbMessages         = new AtomicLong();
+   private final AtomicLong      maxLatency         = new AtomicLong();
+   private final AtomicLongArray latencies          = new AtomicLongArray(NB_BUCKETS);
+
+   // Token bucket, used by the thread executing the step only
+   private double                tokens;
+   private long                  lastRefillNanos;
+   private long                  nextReportNanos;
+
+   private volatile long         startNanos;
+   private volatile long         stopNanos;
+
+   // ------------------------
+   // Constructor
+   // ------------------------
+
+   private StepLoadController(double targetRate, long rampUpNanos, RampUpProfile rampUpProfile, long durationNanos) {
+      this.targetRate = targetRate;
+      this.rampUpNanos = rampUpNanos;
+      this.rampUpProfile = rampUpProfile;
+      this.durationNanos = durationNanos;
+   }
+
+   // ------------------------
+   // Factory
+   // ------------------------
+
+   /**
+    * Return the controller of the step, or null if the step has no target rate and no duration. In simulation mode, the messages
+    * are not paced
+    */
+   static StepLoadController create(boolean simulation, Step step) {
+      if (simulation) {
+         return null;
+      }
+      int rate = step.getRate() == null ? 0 : step.getRate();
+      int rampUpSecs = step.getRampUpSecs() == null ? 0 : step.getRampUpSecs();
+      int durationSecs = step.getDurationSecs() == null ? 0 : step.getDurationSecs();
+      if ((rate <= 0) && (durationSecs <= 0)) {
+         return null;
+      }
+
+      RampUpProfile rampUpProfile = step.getRampUpProfile() == null ? RampUpProfile.LINEAR : step.getRampUpProfile();
+      log.debug("Step rate: {} msg/s. Ramp up: {}s {}. Duration: {}s", rate, rampUpSecs, rampUpProfile, durationSecs);
+
+      return new StepLoadController(Math.max(0, rate),
+                                    rate > 0 ? TimeUnit.SECONDS.toNanos(Math.max(0, rampUpSecs)) : 0L,
+                                    rampUpProfile,
+                                    TimeUnit.SECONDS.toNanos(Math.max(0, durationSecs)));
+   }
+
+   // ------------------------
+   // Business Interface
+   // ------------------------
+
+   void start() {
+      startNanos = System.nanoTime();
+      stopNanos = 0L;
+      lastRefillNanos = startNanos;
+      nextReportNanos = startNanos + REPORT_INTERVAL_NS;
+      tokens = 1.0d;
+   }
+
+   void stop() {
+      stopNanos = System.nanoTime();
+   }
+
+   /**
+    * Wait until the next message can be sent. Return false if the duration of the step is elapsed
+    */
+   boolean acquire(IProgressMonitor monitor) throws InterruptedException {
+      while (true) {
+         long now = System.nanoTime();
+         if (isElapsed(now)) {
+            return false;
+         }
+         if (targetRate <= 0) {
+            return true;
+         }
+
+         double rate = getCurrentRate(now);
+         double maxTokens = Math.max(1.0d, rate * BUCKET_SECONDS);
+         tokens = Math.min(maxTokens, tokens + (rate * (now - lastRefillNanos) / NANOS_PER_SECOND));
+         lastRefillNanos = now;
+         if (tokens >= 1.0d) {
+            tokens -= 1.0d;
+            return true;
+         }
+
+         // Sleep by small slices to react quickly to a cancellation
+         long waitNanos = (long) ((1.0d - tokens) * NANOS_PER_SECOND / rate);
+         TimeUnit.NANOSECONDS.sleep(Math.max(1L, Math.min(waitNanos, MAX_SLEEP_NANOS)));
+         if (monitor.isCanceled()) {
+            throw new InterruptedException();
+         }
+      }
+   }
+
+   // The step runs until its duration is elapsed
+   boolean hasDuration() {
+      return durationNanos > 0;
+   }
+
+   // Return true if the statistics of the step should be reported. Called by the thread executing the step
+   boolean isReportDue() {
+      long now = System.nanoTime();
+      if (now - nextReportNanos < 0) {
+         return false;
+      }
+      nextReportNanos = now + REPORT_INTERVAL_NS;
+      return true;
+   }
+
+   // Called by the workers when a message has been sent
+   void recordSend(long latencyNanos) {
+      nbMessages.incrementAndGet();
+
+      long micros = Math.max(0L, TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+      latencies.incrementAndGet(bucketIndex(micros));
+      long max;
+      while ((max = maxLatency.get()) < micros) {
+         if (maxLatency.compareAndSet(max, micros)) {
+            break;
+         }
+      }
+   }
+
+   // ---------------
+   // Statistics
+   // ---------------
+
+   long getNbMessages() {
+      return nbMessages.get();
+   }
+
+   double getElapsedSeconds() {
+      long end = stopNanos == 0L ? System.nanoTime() : stopNanos;
+      return (double) (end - startNanos) / NANOS_PER_SECOND;
+   }
+
+   double getAchievedRate() {
+      double elapsed = getElapsedSeconds();
+      return elapsed <= 0 ? 0.0d : nbMessages.get() / elapsed;
+   }
+
+   // 0 if the rate is not controlled
+   double getTargetRate() {
+      return targetRate;
+   }
+
+   double getCurrentRate() {
+      return targetRate <= 0 ? 0.0d : getCurrentRate(System.nanoTime());
+   }
+
+   // Latency under which "percentile" % of the messages have been sent, in milliseconds
+   double getLatencyPercentile(double percentile) {
+      long total = 0;
+      long[] counts = new long[NB_BUCKETS];
+      for (int i = 0; i < NB_BUCKETS; i++) {
+         counts[i] = latencies.get(i);
+         total += counts[i];
+      }
+      if (total == 0) {
+         return 0.0d;
+      }
+
+      long rank = (long) Math.ceil(total * percentile / 100.0d);
+      long seen = 0;
+      for (int i = 0; i < NB_BUCKETS; i++) {
+         seen += counts[i];
+         if (seen >= rank) {
+            return Math.min(bucketLowerBound(i), maxLatency.get()) / 1000.0d;
+         }
+      }
+      return maxLatency.get() / 1000.0d;
+   }
+
+   double getMaxLatency() {
+      return maxLatency.get() / 1000.0d;
+   }
+
+   // -------
+   // Helpers
+   // -------
+
+   private boolean isElapsed(long now) {
+      return (durationNanos > 0) && (now - startNanos >= durationNanos);
+   }
+
+   private double getCurrentRate(long now) {
+      long elapsed = now - startNanos;
+      if ((rampUpNanos <= 0) || (elapsed >= rampUpNanos)) {
+         return targetRate;
+      }
+
+      double fraction = (double) elapsed / rampUpNanos;
+      double rate;
+      switch (rampUpProfile) {
+         case STEPS:
+            rate = targetRate * (Math.floor(fraction * NB_RAMP_UP_STEPS) + 1) / NB_RAMP_UP_STEPS;
+            break;
+
+         case LINEAR:
+         default:
+            rate = targetRate * fraction;
+            break;
+      }
+      return Math.min(targetRate, Math.max(MIN_RATE, rate));
+   }
+
+   // Values under 16 have their own bucket, then 16 buckets for each power of 2
+   private static int bucketIndex(long value) {
+      if (value < NB_SUB_BUCKETS) {
+         return (int) value;
+      }
+      int exponent = 63 - Long.numberOfLeadingZeros(value);
+      int subBucket = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (NB_SUB_BUCKETS - 1));
+      return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+   }
+
+   private static long bucketLowerBound(int index) {
+      if (index < NB_SUB_BUCKETS) {
+         return index;
+      }
+      int exponent = (index >> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+      long subBucket = index & (NB_SUB_BUCKETS - 1);
+      return (NB_SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+   }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2015 Denis Forveille titou10.titou10@gmail.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.titou10.jtb.script;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.jms.JMSException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.titou10.jtb.jms.model.JTBConnection;
+import org.titou10.jtb.jms.model.MessageSendBatch;
+
+/**
+ *
+ * Send the messages of a regular step of a script
+ *
+ * With one worker, the messages are sent by the thread executing the script, with one MessageSendBatch. With more workers, the
+ * messages are sent by a pool of threads. Each thread has its own MessageSendBatch, so its own JMS Session and producers, and the
+ * number of messages waiting for a worker is bounded.
+ *
+ * The first exception raised by a worker is thrown by the next call to execute(), or by close()
+ *
+ * @author Denis Forveille
+ *
+ */
+abstract class StepSender implements AutoCloseable {
+
+   private static final Logger log                     = LoggerFactory.getLogger(StepSender.class);
+
+   private static final int    MAX_PENDING_PER_WORKER  = 4;
+   private static final long   WORKERS_SHUTDOWN_WAIT_S = 60L;
+
+   /**
+    * Build and send one message with the MessageSendBatch of the current thread. The MessageSendBatch is null in simulation mode
+    */
+   @FunctionalInterface
+   interface PostTask {
+      void post(MessageSendBatch sendBatch) throws JMSException, InterruptedException;
+   }
+
+   // ------------------------
+   // Factory
+   // ------------------------
+
+   static StepSender open(JTBConnection jtbConnection, boolean simulation, int batchSize, int nbWorkers) throws JMSException {
+      if (nbWorkers <= 1) {
+         return new SequentialStepSender(simulation ? null : jtbConnection.openSendBatch(batchSize));
+      }
+      return new ParallelStepSender(jtbConnection, simulation, batchSize, nbWorkers);
+   }
+
+   // ------------------------
+   // Business Interface
+   // ------------------------
+
+   abstract void execute(PostTask task) throws JMSException, InterruptedException;
+
+   /**
+    * Wait for the messages being sent, then commit the pending messages and close the sessions
+    */
+   @Override
+   public abstract void close() throws JMSException, InterruptedException;
+
+   // ------------------------
+   // Implementations
+   // ------------------------
+
+   private static final class SequentialStepSender extends StepSender {
+
+      private final MessageSendBatch sendBatch;
+
+      private SequentialStepSender(MessageSendBatch sendBatch) {
+         this.sendBatch = sendBatch;
+      }
+
+      @Override
+      void execute(PostTask task) throws JMSException, InterruptedException {
+         task.post(sendBatch);
+      }
+
+      @Override
+      public void close() throws JMSException {
+         if (sendBatch != null) {
+            sendBatch.close();
+         }
+      }
+   }
+
+   private static final class ParallelStepSender extends StepSender {
+
+      private final JTBConnection                 jtbConnection;
+      private final boolean                       simulation;
+      private final int                           batchSize;
+
+      private final ExecutorService               executor;
+      private final Semaphore                     pending;
+      private final ThreadLocal<MessageSendBatch> threadSendBatch;
+      private final List<MessageSendBatch>        sendBatches;
+      private final AtomicReference<Exception>    error;
+
+      private ParallelStepSender(JTBConnection jtbConnection, boolean simulation, int batchSize, int nbWorkers) {
+         this.jtbConnection = jtbConnection;
+         this.simulation = simulation;
+         this.batchSize = batchSize;
+
+         AtomicInteger threadNumber = new AtomicInteger(0);
+         this.executor = Executors.newFixedThreadPool(nbWorkers, r -> {
+            Thread t = new Thread(r, "JTB-ScriptSender-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+         });
+         this.pending = new Semaphore(nbWorkers * MAX_PENDING_PER_WORKER);
+         this.threadSendBatch = new ThreadLocal<>();
+         this.sendBatches = new ArrayList<>(nbWorkers);
+         this.error = new AtomicReference<>();
+
+         log.debug("Sending messages with {} workers", nbWorkers);
+      }
+
+      @Override
+      void execute(PostTask task) throws JMSException, InterruptedException {
+         throwError();
+
+         pending.acquire();
+         try {
+            executor.execute(() -> {
+               try {
+                  task.post(getSendBatch());
+               } catch (Exception e) {
+                  if (error.compareAndSet(null, e)) {
+                     log.debug("Worker failed: {}", e.getMessage());
+                  }
+               } finally {
+                  pending.release();
+               }
+            });
+         } catch (RuntimeException e) {
+            pending.release();
+            throw e;
+         }
+      }
+
+      @Override
+      public void close() throws JMSException, InterruptedException {
+         // Stop at once only if a worker has failed, otherwise let the workers send the messages submitted so far
+         // Reaching the max number of messages (InterruptedException) is not a failure: interrupting a worker in the middle of
+         // a send may break the transport of the connection shared by the workers
+         Exception failure = error.get();
+         if ((failure == null) || (failure instanceof InterruptedException)) {
+            executor.shutdown();
+         } else {
+            executor.shutdownNow();
+         }
+         try {
+            if (!executor.awaitTermination(WORKERS_SHUTDOWN_WAIT_S, TimeUnit.SECONDS)) {
+               log.warn("Workers still running after {}s. Ignoring", WORKERS_SHUTDOWN_WAIT_S);
+               executor.shutdownNow();
+            }
+         } finally {
+            synchronized (sendBatches) {
+               for (MessageSendBatch sendBatch : sendBatches) {
+                  try {
+                     sendBatch.close();
+                  } catch (JMSException e) {
+                     error.compareAndSet(null, e);
+                  }
+               }
+               sendBatches.clear();
+            }
+         }
+
+         throwError();
+      }
+
+      // -------
+      // Helpers
+      // -------
+
+      // MessageSendBatch of the worker, opened the first time the worker sends a message
+      private MessageSendBatch getSendBatch() throws JMSException {
+         if (simulation) {
+            return null;
+         }
+         MessageSendBatch sendBatch = threadSendBatch.get();
+         if (sendBatch == null) {
+            sendBatch = jtbConnection.openSendBatch(batchSize);
+            threadSendBatch.set(sendBatch);
+            synchronized (sendBatches) {
+               sendBatches.add(sendBatch);
+            }
+         }
+         return sendBatch;
+      }
+
+      private void throwError() throws JMSException, InterruptedException {
+         Exception e = error.get();
+         if (e == null) {
+            return;
+         }
+         if (e instanceof JMSException) {
+            throw (JMSException) e;
+         }
+         if (e instanceof InterruptedException) {
+            // Keep the message: it tells if the max number of messages has been reached
+            throw new InterruptedException(e.getMessage());
+         }
+         throw (RuntimeException) e;
+      }
+   }
+}
@@ -36,6 +36,7 @@ import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Combo;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.DirectoryDialog;
@@ -54,6 +55,7 @@ import org.titou10.jtb.jms.model.JTBSession;
 import org.titou10.jtb.jms.model.JTBSessionClientType;
 import org.titou10.jtb.script.ScriptsManager;
 import org.titou10.jtb.script.gen.DataFile;
+import org.titou10.jtb.script.gen.RampUpProfile;
 import org.titou10.jtb.script.gen.Script;
 import org.titou10.jtb.script.gen.Step;
 import org.titou10.jtb.sessiontype.SessionTypeManager;
@@ -92,6 +94,13 @@ public class ScriptNewStepDialog extends Dialog {
    private String                payloadDirectory;
    private Integer               delay;
    private Integer               iterations;
+   private Integer               batchSize;
+   private Integer               nbWorkers;
+   private Boolean               independent;
+   private Integer               rate;
+   private Integer               rampUpSecs;
+   private RampUpProfile         rampUpProfile;
+   private Integer               durationSecs;
 
    private Label                 lblTemplateName;
    private Label                 lblSessionName;
@@ -100,6 +109,13 @@ public class ScriptNewStepDialog extends Dialog {
    private Label                 lblPayloadDirectory;
    private Spinner               delaySpinner;
    private Spinner               iterationsSpinner;
+   private Spinner               batchSizeSpinner;
+   private Spinner               nbWorkersSpinner;
+   private Button                btnIndependent;
+   private Spinner               rateSpinner;
+   private Spinner               rampUpSpinner;
+   private Combo                 comboRampUpProfile;
+   private Spinner               durationSpinner;
 
    private Button                btnChooseDestination;
 
@@ -405,6 +421,120 @@ public class ScriptNewStepDialog extends Dialog {
       Label lbl8 = new Label(pauseComposite, SWT.NONE);
       lbl8.setText(" second(s) after this step");
 
+      // Batch
+
+      Label lbl9 = new Label(container, SWT.NONE);
+      lbl9.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 2, 1));
+      lbl9.setText("Commit every");
+
+      Composite batchComposite = new Composite(container, SWT.NONE);
+      batchComposite.setLayoutData(new GridData(SWT.LEFT, SWT.CENTER, false, false, 2, 1));
+      GridLayout glBatchComposite = new GridLayout(2, false);
+      glBatchComposite.marginWidth = 0;
+      batchComposite.setLayout(glBatchComposite);
+
+      batchSizeSpinner = new Spinner(batchComposite, SWT.BORDER);
+      batchSizeSpinner.setMinimum(1);
+      batchSizeSpinner.setMaximum(9999);
+      batchSizeSpinner.setPageIncrement(10);
+      batchSizeSpinner.setTextLimit(4);
+      batchSizeSpinner.setSelection(1);
+      batchSizeSpinner.setToolTipText("Number of messages sent in one transaction");
+
+      Label lbl10 = new Label(batchComposite, SWT.NONE);
+      lbl10.setText(" message(s)");
+
+      // Workers
+
+      Label lbl11 = new Label(container, SWT.NONE);
+      lbl11.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 2, 1));
+      lbl11.setText("Send with");
+
+      Composite workersComposite = new Composite(container, SWT.NONE);
+      workersComposite.setLayoutData(new GridData(SWT.LEFT, SWT.CENTER, false, false, 2, 1));
+      GridLayout glWorkersComposite = new GridLayout(3, false);
+      glWorkersComposite.marginWidth = 0;
+      workersComposite.setLayout(glWorkersComposite);
+
+      nbWorkersSpinner = new Spinner(workersComposite, SWT.BORDER);
+      nbWorkersSpinner.setMinimum(1);
+      nbWorkersSpinner.setMaximum(99);
+      nbWorkersSpinner.setPageIncrement(5);
+      nbWorkersSpinner.setTextLimit(2);
+      nbWorkersSpinner.setSelection(1);
+      nbWorkersSpinner.setToolTipText("Number of workers sending the messages of this step in parallel, each with its own session");
+
+      Label lbl12 = new Label(workersComposite, SWT.NONE);
+      lbl12.setText(" worker(s)");
+
+      btnIndependent = new Button(workersComposite, SWT.CHECK);
+      btnIndependent.setText("Independent step");
+      btnIndependent.setToolTipText("Consecutive independent steps are executed at the same time");
+
+      // Rate
+
+      Label lbl13 = new Label(container, SWT.NONE);
+      lbl13.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 2, 1));
+      lbl13.setText("Send at");
+
+      Composite rateComposite = new Composite(container, SWT.NONE);
+      rateComposite.setLayoutData(new GridData(SWT.LEFT, SWT.CENTER, false, false, 2, 1));
+      GridLayout glRateComposite = new GridLayout(5, false);
+      glRateComposite.marginWidth = 0;
+      rateComposite.setLayout(glRateComposite);
+
+      rateSpinner = new Spinner(rateComposite, SWT.BORDER);
+      rateSpinner.setMinimum(0);
+      rateSpinner.setMaximum(99999);
+      rateSpinner.setPageIncrement(10);
+      rateSpinner.setTextLimit(5);
+      rateSpinner.setSelection(0);
+      rateSpinner.setToolTipText("Target number of messages sent per second by this step. 0: as fast as possible");
+
+      Label lbl14 = new Label(rateComposite, SWT.NONE);
+      lbl14.setText(" msg/s, reached in");
+
+      rampUpSpinner = new Spinner(rateComposite, SWT.BORDER);
+      rampUpSpinner.setMinimum(0);
+      rampUpSpinner.setMaximum(9999);
+      rampUpSpinner.setPageIncrement(10);
+      rampUpSpinner.setTextLimit(4);
+      rampUpSpinner.setSelection(0);
+      rampUpSpinner.setToolTipText("Ramp up: duration to reach the target rate");
+
+      Label lbl15 = new Label(rateComposite, SWT.NONE);
+      lbl15.setText(" second(s)");
+
+      comboRampUpProfile = new Combo(rateComposite, SWT.READ_ONLY);
+      for (RampUpProfile p : RampUpProfile.values()) {
+         comboRampUpProfile.add(p.name());
+      }
+      comboRampUpProfile.select(0);
+      comboRampUpProfile.setToolTipText("LINEAR: the rate grows continuously. STEPS: the rate grows by 1/4 of the target rate");
+
+      // Duration
+
+      Label lbl16 = new Label(container, SWT.NONE);
+      lbl16.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 2, 1));
+      lbl16.setText("Send during");
+
+      Composite durationComposite = new Composite(container, SWT.NONE);
+      durationComposite.setLayoutData(new GridData(SWT.LEFT, SWT.CENTER, false, false, 2, 1));
+      GridLayout glDurationComposite = new GridLayout(2, false);
+      glDurationComposite.marginWidth = 0;
+      durationComposite.setLayout(glDurationComposite);
+
+      durationSpinner = new Spinner(durationComposite, SWT.BORDER);
+      durationSpinner.setMinimum(0);
+      durationSpinner.setMaximum(99999);
+      durationSpinner.setPageIncrement(60);
+      durationSpinner.setTextLimit(5);
+      durationSpinner.setSelection(0);
+      durationSpinner.setToolTipText("The messages of this step are sent again and again until the duration is elapsed");
+
+      Label lbl17 = new Label(durationComposite, SWT.NONE);
+      lbl17.setText(" second(s) (0: send the messages once)");
+
       // Populate Fields
       tns = templatesManager.buildTemplateNameStructure(step.getTemplateDirectory(), step.getTemplateName());
       sessionName = step.getSessionName();
@@ -413,6 +543,13 @@ public class ScriptNewStepDialog extends Dialog {
       payloadDirectory = step.getPayloadDirectory();
       delay = step.getPauseSecsAfter();
       iterations = step.getIterations();
+      batchSize = step.getBatchSize();
+      nbWorkers = step.getNbWorkers();
+      independent = step.isIndependent();
+      rate = step.getRate();
+      rampUpSecs = step.getRampUpSecs();
+      rampUpProfile = step.getRampUpProfile();
+      durationSecs = step.getDurationSecs();
 
       lblTemplateName.setText(tns == null ? "" : tns.getSyntheticName());
       lblSessionName.setText(sessionName == null ? "" : sessionName);
@@ -426,6 +563,13 @@ public class ScriptNewStepDialog extends Dialog {
       }
       delaySpinner.setSelection(delay);
       iterationsSpinner.setSelection(iterations);
+      batchSizeSpinner.setSelection(batchSize == null ? 1 : batchSize);
+      nbWorkersSpinner.setSelection(nbWorkers == null ? 1 : nbWorkers);
+      btnIndependent.setSelection(independent == null ? false : independent);
+      rateSpinner.setSelection(rate == null ? 0 : rate);
+      rampUpSpinner.setSelection(rampUpSecs == null ? 0 : rampUpSecs);
+      comboRampUpProfile.select(rampUpProfile == null ? 0 : rampUpProfile.ordinal());
+      durationSpinner.setSelection(durationSecs == null ? 0 : durationSecs);
 
       if (Utils.isNotEmpty(sessionName)) {
          btnChooseDestination.setEnabled(true);
@@ -486,6 +630,17 @@ public class ScriptNewStepDialog extends Dialog {
       step.setPayloadDirectory(payloadDirectory);
       step.setPauseSecsAfter(delaySpinner.getSelection());
       step.setIterations(iterationsSpinner.getSelection());
+      step.setBatchSize(batchSizeSpinner.getSelection() > 1 ? batchSizeSpinner.getSelection() : null);
+      step.setNbWorkers(nbWorkersSpinner.getSelection() > 1 ? nbWorkersSpinner.getSelection() : null);
+      step.setIndependent(btnIndependent.getSelection() ? Boolean.TRUE : null);
+      step.setRate(rateSpinner.getSelection() > 0 ? rateSpinner.getSelection() : null);
+      step.setRampUpSecs(rampUpSpinner.getSelection() > 0 ? rampUpSpinner.getSelection() : null);
+      if (rampUpSpinner.getSelection() > 0) {
+         step.setRampUpProfile(RampUpProfile.values()[comboRampUpProfile.getSelectionIndex()]);
+      } else {
+         step.setRampUpProfile(null);
+      }
+      step.setDurationSecs(durationSpinner.getSelection() > 0 ? durationSpinner.getSelection() : null);
 
       super.okPressed();
    }
@@ -0,0 +1,45 @@
+//
+// Ce fichier a été généré par l'implémentation de référence JavaTM Architecture for XML Binding (JAXB), v2.2.8-b130911.1802 
+// Voir <a href="http://java.sun.com/xml/jaxb">http://java.sun.com/xml/jaxb</a> 
+// Toute modification apportée à ce fichier sera perdue lors de la recompilation du schéma source. 
+// Généré le : 2017.05.09 à 03:37:23 PM EDT 
+//
+
+
+package org.titou10.jtb.script.gen;
+
+import javax.xml.bind.annotation.XmlEnum;
+import javax.xml.bind.annotation.XmlType;
+
+
+/**
+ * <p>Classe Java pour rampUpProfile.
+ * 
+ * <p>Le fragment de schéma suivant indique le contenu attendu figurant dans cette classe.
+ * <p>
+ * <pre>
+ * &lt;simpleType name="rampUpProfile">
+ *   &lt;restriction base="{http://www.w3.org/2001/XMLSchema}string">
+ *     &lt;enumeration value="LINEAR"/>
+ *     &lt;enumeration value="STEPS"/>
+ *   &lt;/restriction>
+ * &lt;/simpleType>
+ * </pre>
+ * 
+ */
+@XmlType(name = "rampUpProfile")
+@XmlEnum
+public enum RampUpProfile {
+
+    LINEAR,
+    STEPS;
+
+    public String value() {
+        return name();
+    }
+
+    public static RampUpProfile fromValue(String v) {
+        return valueOf(v);
+    }
+
+}
@@ -47,24 +47,33 @@ import org.titou10.jtb.util.Constants;
 @XmlAccessorType(XmlAccessType.FIELD)
 @XmlType(name = "step",
          propOrder = { "kind", "templateName", "templateDirectory", "sessionName", "destinationName", "variablePrefix",
-                       "payloadDirectory", "pauseSecsAfter", "iterations" })
+                       "payloadDirectory", "pauseSecsAfter", "iterations", "batchSize",
+                       "nbWorkers", "independent", "rate", "rampUpSecs", "rampUpProfile", "durationSecs" })
 public class Step {
 
    @XmlElement(required = true)
    @XmlSchemaType(name = "string")
-   protected StepKind kind;
+   protected StepKind      kind;
    @XmlElement(required = true)
-   protected String   templateName;
+   protected String        templateName;
    @XmlElement(required = true)
-   protected String   templateDirectory;
+   protected String        templateDirectory;
    @XmlElement(required = true)
-   protected String   sessionName;
+   protected String        sessionName;
    @XmlElement(required = true)
-   protected String   destinationName;
-   protected String   variablePrefix;
-   protected String   payloadDirectory;
-   protected Integer  pauseSecsAfter;
-   protected int      iterations;
+   protected String        destinationName;
+   protected String        variablePrefix;
+   protected String        payloadDirectory;
+   protected Integer       pauseSecsAfter;
+   protected int           iterations;
+   protected Integer       batchSize;
+   protected Integer       nbWorkers;
+   protected Boolean       independent;
+   protected Integer       rate;
+   protected Integer       rampUpSecs;
+   @XmlSchemaType(name = "string")
+   protected RampUpProfile rampUpProfile;
+   protected Integer       durationSecs;
 
    // Set templateDirectory for script < v4.1.0
    public String getTemplateDirectory() {
@@ -248,4 +257,151 @@ public class Step {
       this.iterations = value;
    }
 
+   /**
+    * Obtient la valeur de la propriété batchSize.
+    * 
+    * @return possible object is {@link Integer }
+    * 
+    */
+   public Integer getBatchSize() {
+      return batchSize;
+   }
+
+   /**
+    * Définit la valeur de la propriété batchSize.
+    * 
+    * @param value
+    *           allowed object is {@link Integer }
+    * 
+    */
+   public void setBatchSize(Integer value) {
+      this.batchSize = value;
+   }
+
+   /**
+    * Obtient la valeur de la propriété nbWorkers.
+    * 
+    * @return possible object is {@link Integer }
+    * 
+    */
+   public Integer getNbWorkers() {
+      return nbWorkers;
+   }
+
+   /**
+    * Définit la valeur de la propriété nbWorkers.
+    * 
+    * @param value
+    *           allowed object is {@link Integer }
+    * 
+    */
+   public void setNbWorkers(Integer value) {
+      this.nbWorkers = value;
+   }
+
+   /**
+    * Obtient la valeur de la propriété independent.
+    * 
+    * @return possible object is {@link Boolean }
+    * 
+    */
+   public Boolean isIndependent() {
+      return independent;
+   }
+
+   /**
+    * Définit la valeur de la propriété independent.
+    * 
+    * @param value
+    *           allowed object is {@link Boolean }
+    * 
+    */
+   public void setIndependent(Boolean value) {
+      this.independent = value;
+   }
+
+   /**
+    * Obtient la valeur de la propriété rate.
+    * 
+    * @return possible object is {@link Integer }
+    * 
+    */
+   public Integer getRate() {
+      return rate;
+   }
+
+   /**
+    * Définit la valeur de la propriété rate.
+    * 
+    * @param value
+    *           allowed object is {@link Integer }
+    * 
+    */
+   public void setRate(Integer value) {
+      this.rate = value;
+   }
+
+   /**
+    * Obtient la valeur de la propriété rampUpSecs.
+    * 
+    * @return possible object is {@link Integer }
+    * 
+    */
+   public Integer getRampUpSecs() {
+      return rampUpSecs;
+   }
+
+   /**
+    * Définit la valeur de la propriété rampUpSecs.
+    * 
+    * @param value
+    *           allowed object is {@link Integer }
+    * 
+    */
+   public void setRampUpSecs(Integer value) {
+      this.rampUpSecs = value;
+   }
+
+   /**
+    * Obtient la valeur de la propriété rampUpProfile.
+    * 
+    * @return possible object is {@link RampUpProfile }
+    * 
+    */
+   public RampUpProfile getRampUpProfile() {
+      return rampUpProfile;
+   }
+
+   /**
+    * Définit la valeur de la propriété rampUpProfile.
+    * 
+    * @param value
+    *           allowed object is {@link RampUpProfile }
+    * 
+    */
+   public void setRampUpProfile(RampUpProfile value) {
+      this.rampUpProfile = value;
+   }
+
+   /**
+    * Obtient la valeur de la propriété durationSecs.
+    * 
+    * @return possible object is {@link Integer }
+    * 
+    */
+   public Integer getDurationSecs() {
+      return durationSecs;
+   }
+
+   /**
+    * Définit la valeur de la propriété durationSecs.
+    * 
+    * @param value
+    *           allowed object is {@link Integer }
+    * 
+    */
+   public void setDurationSecs(Integer value) {
+      this.durationSecs = value;
+   }
+
 }
@@ -99,7 +99,7 @@ final class AutoRefreshJob extends Job {
             public void run() {
                // Send event to refresh list of messages or queue List
                if (jtbQueue != null) {
-                  eventBroker.send(Constants.EVENT_REFRESH_QUEUE_MESSAGES, jtbQueue);
+                  eventBroker.send(Constants.EVENT_AUTO_REFRESH_QUEUE_MESSAGES, jtbQueue);
                } else {
                   eventBroker.send(Constants.EVENT_REFRESH_SESSION_SYNTHETIC_VIEW, jtbSession);
                }
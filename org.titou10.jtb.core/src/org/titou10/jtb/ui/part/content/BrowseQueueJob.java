@@ -0,0 +1,372 @@
+/*
+ * Copyright (C) 2015 Denis Forveille titou10.titou10@gmail.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.titou10.jtb.ui.part.content;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.jms.JMSException;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.e4.ui.di.UISynchronize;
+import org.eclipse.swt.widgets.Table;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.titou10.jtb.jms.model.JTBConnection;
+import org.titou10.jtb.jms.model.JTBMessage;
+import org.titou10.jtb.jms.model.JTBQueue;
+import org.titou10.jtb.jms.model.QueueBrowserCursor;
+import org.titou10.jtb.ui.JTBStatusReporter;
+import org.titou10.jtb.util.Constants;
+import org.titou10.jtb.util.Utils;
+
+/**
+ * Job that asynchronously browse the first page of messages of a Queue
+ *
+ * The messages are read and filtered by a QueueBrowserCursor in small chunks, so the job can be canceled between two chunks.
+ * The depth of the Queue is read at the same time by another thread. The results are then applied to the TabData from the UI
+ * thread, only if the job is still the last one started for the tab: results of a previous refresh are discarded
+ *
+ * In "incremental" mode, the queue is only browsed up to the number of messages already shown. The messages are compared to the
+ * ones shown by their JMSMessageID, the rows of the messages still in the queue are kept, and only the changes are applied to the
+ * table, keeping the selection and the scroll position
+ *
+ * @author Denis Forveille
+ *
+ */
+final class BrowseQueueJob extends Job {
+
+   private static final Logger           log              = LoggerFactory.getLogger(BrowseQueueJob.class);
+
+   static final int                      FETCH_CHUNK_SIZE = 20;
+   private static final long             DEPTH_WAIT_MS    = 250L;
+
+   private static final AtomicInteger    DEPTH_THREAD_NB  = new AtomicInteger(0);
+   private static final ExecutorService  DEPTH_EXECUTOR   = Executors.newCachedThreadPool(r -> {
+                                                             Thread t = new Thread(r,
+                                                                                   "JTB-BrowseQueueDepth-"
+                                                                                      + DEPTH_THREAD_NB.incrementAndGet());
+                                                             t.setDaemon(true);
+                                                             return t;
+                                                          });
+
+   private final UISynchronize           sync;
+   private final JTBStatusReporter       jtbStatusReporter;
+
+   private final TabData                 td;
+   private final int                     generation;
+   private final JTBQueue                jtbQueue;
+   private final int                     maxMessages;
+   private final String                  payloadSearchText;
+   private final String                  selectorsSearchText;
+   private final int                     pageSize;
+   private final boolean                 autoResizeColumns;
+
+   // Incremental mode: messages shown when the job was started, indexed by JMSMessageID
+   private final List<JTBMessage>        shownMessages;
+   private final Map<String, JTBMessage> shownMessagesById;
+
+   // Called from the UI thread each time the TabData has been updated
+   private final Consumer<TabData>       tabUpdater;
+
+   // ------------
+   // Constructors
+   // ------------
+
+   BrowseQueueJob(UISynchronize sync,
+                  JTBStatusReporter jtbStatusReporter,
+                  String name,
+                  TabData td,
+                  String payloadSearchText,
+                  String selectorsSearchText,
+                  int pageSize,
+                  boolean autoResizeColumns,
+                  boolean incremental,
+                  Consumer<TabData> tabUpdater) {
+      super(name);
+      this.setSystem(true);
+      this.sync = sync;
+      this.jtbStatusReporter = jtbStatusReporter;
+
+      this.td = td;
+      this.generation = td.queueBrowseGeneration;
+      this.jtbQueue = td.jtbDestination.getAsJTBQueue();
+      this.maxMessages = td.maxMessages;
+      this.payloadSearchText = payloadSearchText;
+      this.selectorsSearchText = selectorsSearchText;
+      this.pageSize = pageSize;
+      this.autoResizeColumns = autoResizeColumns;
+      this.tabUpdater = tabUpdater;
+
+      if (incremental) {
+         this.shownMessages = new ArrayList<>(td.queueMessages);
+         this.shownMessagesById = new HashMap<>(shownMessages.size() * 2);
+         for (JTBMessage jtbMessage : shownMessages) {
+            String id = getJMSMessageID(jtbMessage);
+            if (id != null) {
+               shownMessagesById.put(id, jtbMessage);
+            }
+         }
+      } else {
+         this.shownMessages = null;
+         this.shownMessagesById = null;
+      }
+   }
+
+   // ------------------
+   // Business Interface
+   // ------------------
+
+   @Override
+   protected IStatus run(IProgressMonitor monitor) {
+      log.debug("Browsing {}. generation={}", jtbQueue, generation);
+
+      // In incremental mode, browse the queue up to the messages already shown
+      int nbToRead = shownMessages == null ? pageSize : Math.max(pageSize, shownMessages.size());
+
+      monitor.beginTask(getName(), nbToRead);
+
+      // Read the depth of the queue while the messages are browsed
+      final JTBConnection jtbConnection = jtbQueue.getJtbConnection();
+      Future<Integer> depthFuture = DEPTH_EXECUTOR
+               .submit(() -> jtbConnection.getQm().getQueueDepth(jtbConnection.getJmsConnection(), jtbQueue.getName()));
+
+      QueueBrowserCursor cursor = null;
+      try {
+
+         // Fetch and filter the messages
+         cursor = jtbConnection.openQueueBrowserCursor(jtbQueue, maxMessages, payloadSearchText, selectorsSearchText);
+
+         // Build the model of the table
+         final List<JTBMessage> messages = new ArrayList<>(nbToRead);
+         while ((messages.size() < nbToRead) && (cursor.hasMore())) {
+            if (monitor.isCanceled()) {
+               log.debug("Browsing {} canceled after {} messages", jtbQueue, messages.size());
+               cursor.close();
+               depthFuture.cancel(false);
+               return Status.CANCEL_STATUS;
+            }
+            List<JTBMessage> chunk = cursor.nextPage(Math.min(FETCH_CHUNK_SIZE, nbToRead - messages.size()));
+            messages.addAll(chunk);
+            monitor.worked(chunk.size());
+         }
+
+         // Apply the model to the table
+         final QueueBrowserCursor c = cursor;
+         final boolean unchanged = shownMessages != null && reuseShownMessages(messages);
+         sync.asyncExec(() -> {
+            if (!isCurrent()) {
+               log.debug("Discarding stale browse result for {}. generation={}", jtbQueue, generation);
+               c.close();
+               return;
+            }
+
+            if (shownMessages != null) {
+               applyChanges(c, messages, unchanged);
+               return;
+            }
+
+            log.debug("Q Depth : {} Max : {} Nb msg in first page : {}", td.queueDepth, maxMessages, messages.size());
+
+            td.queueMessages = messages;
+            td.queueLimitReached = c.isLimitReached();
+            if (c.hasMore()) {
+               td.queueBrowserCursor = c;
+            } else {
+               c.close();
+            }
+
+            td.tableViewer.setInput(messages);
+            if (autoResizeColumns) {
+               Utils.resizeTableViewer(td.tableViewer);
+            }
+
+            tabUpdater.accept(td);
+         });
+
+         // Apply the depth of the queue when available
+         final Integer depth = waitForDepth(monitor, depthFuture);
+         sync.asyncExec(() -> {
+            if (isCurrent()) {
+               td.queueDepth = depth;
+               tabUpdater.accept(td);
+            }
+         });
+
+      } catch (Throwable e) {
+         log.error("Exception occurred when browsing {}", jtbQueue, e);
+         if (cursor != null) {
+            cursor.close();
+         }
+         depthFuture.cancel(false);
+         sync.asyncExec(() -> {
+            if (isCurrent()) {
+               jtbStatusReporter.showError("Problem while browsing queue", Utils.getCause(e), "");
+            }
+         });
+
+      } finally {
+         sync.asyncExec(() -> {
+            if (td.queueBrowseJob == this) {
+               td.queueBrowseJob = null;
+               tabUpdater.accept(td);
+            }
+         });
+         monitor.done();
+      }
+
+      return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+   }
+
+   @Override
+   protected void canceling() {
+      log.debug("Canceling '{}'", getName());
+      super.canceling();
+   }
+
+   @Override
+   public boolean belongsTo(Object family) {
+      if (family instanceof String) {
+         return Constants.JTB_JOBS_FAMILY.equals(family);
+      }
+      return false;
+   }
+
+   // -------
+   // Helpers
+   // -------
+
+   // Replace the messages browsed by the ones already shown with the same JMSMessageID. Returns true if nothing changed
+   private boolean reuseShownMessages(List<JTBMessage> messages) {
+      boolean unchanged = messages.size() == shownMessages.size();
+      for (int i = 0; i < messages.size(); i++) {
+         JTBMessage shown = shownMessagesById.get(getJMSMessageID(messages.get(i)));
+         if (shown != null) {
+            messages.set(i, shown);
+         }
+         unchanged = unchanged && (messages.get(i) == shownMessages.get(i));
+      }
+      return unchanged;
+   }
+
+   // Called from the UI thread: apply the messages browsed in incremental mode to the table
+   private void applyChanges(QueueBrowserCursor c, List<JTBMessage> messages, boolean unchanged) {
+
+      // More pages have been loaded meanwhile, the messages browsed are not enough
+      if (td.queueMessages.size() != shownMessages.size()) {
+         log.debug("Discarding incremental browse result for {}: messages shown have changed", jtbQueue);
+         c.close();
+         return;
+      }
+
+      // The cursor that was used to load the next pages is replaced by the new one
+      if (td.queueBrowserCursor != null) {
+         td.queueBrowserCursor.close();
+         td.queueBrowserCursor = null;
+      }
+      td.queueLimitReached = c.isLimitReached();
+      if (c.hasMore()) {
+         td.queueBrowserCursor = c;
+      } else {
+         c.close();
+      }
+
+      if (unchanged) {
+         log.debug("No change in the first {} messages of {}", messages.size(), jtbQueue);
+         tabUpdater.accept(td);
+         return;
+      }
+
+      // Keep the selection and the first message visible
+      Table table = td.tableViewer.getTable();
+      int topIndex = table.getTopIndex();
+      JTBMessage topMessage = topIndex < td.queueMessages.size() ? td.queueMessages.get(topIndex) : null;
+      List<JTBMessage> selectedMessages = new ArrayList<>();
+      for (int index : table.getSelectionIndices()) {
+         if (index < td.queueMessages.size()) {
+            selectedMessages.add(td.queueMessages.get(index));
+         }
+      }
+
+      // The list of messages is the input of the table viewer: update it in place
+      td.queueMessages.clear();
+      td.queueMessages.addAll(messages);
+      ((MessageLazyContentProvider) td.tableViewer.getContentProvider()).inputRefreshed();
+
+      Map<JTBMessage, Integer> newIndexes = new IdentityHashMap<>(messages.size() * 2);
+      for (int i = 0; i < messages.size(); i++) {
+         newIndexes.put(messages.get(i), i);
+      }
+      List<Integer> selectedIndexes = new ArrayList<>(selectedMessages.size());
+      for (JTBMessage jtbMessage : selectedMessages) {
+         Integer index = newIndexes.get(jtbMessage);
+         if (index != null) {
+            selectedIndexes.add(index);
+         }
+      }
+      table.setSelection(selectedIndexes.stream().mapToInt(Integer::intValue).toArray());
+
+      Integer newTopIndex = topMessage == null ? null : newIndexes.get(topMessage);
+      table.setTopIndex(newTopIndex == null ? Math.min(topIndex, Math.max(0, messages.size() - 1)) : newTopIndex);
+
+      log.debug("{} messages shown for {} ({} before)", messages.size(), jtbQueue, shownMessages.size());
+      tabUpdater.accept(td);
+   }
+
+   private String getJMSMessageID(JTBMessage jtbMessage) {
+      try {
+         return jtbMessage.getJmsMessage().getJMSMessageID();
+      } catch (JMSException e) {
+         log.warn("Exception occurred when reading JMSMessageID. Ignoring: {}", e.getMessage());
+         return null;
+      }
+   }
+
+   // Called from the UI thread: is this job the last one started for the tab?
+   private boolean isCurrent() {
+      return (td.queueBrowseGeneration == generation) && (td.tabItem != null) && (!td.tabItem.isDisposed());
+   }
+
+   private Integer waitForDepth(IProgressMonitor monitor, Future<Integer> depthFuture) throws InterruptedException {
+      while (!monitor.isCanceled()) {
+         try {
+            return depthFuture.get(DEPTH_WAIT_MS, TimeUnit.MILLISECONDS);
+         } catch (TimeoutException e) {
+            // Not yet available
+         } catch (ExecutionException e) {
+            log.warn("Exception occurred when reading depth of {}. Ignoring: {}", jtbQueue, e.getMessage());
+            return null;
+         }
+      }
+      depthFuture.cancel(false);
+      return null;
+   }
+}
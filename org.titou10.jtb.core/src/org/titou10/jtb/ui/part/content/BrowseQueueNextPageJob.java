@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2015 Denis Forveille titou10.titou10@gmail.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.titou10.jtb.ui.part.content;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.e4.ui.di.UISynchronize;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.titou10.jtb.jms.model.JTBMessage;
+import org.titou10.jtb.jms.model.QueueBrowserCursor;
+import org.titou10.jtb.ui.JTBStatusReporter;
+import org.titou10.jtb.util.Constants;
+import org.titou10.jtb.util.Utils;
+
+/**
+ * Job that asynchronously browse the next page of messages of a Queue, with the cursor opened by a BrowseQueueJob
+ *
+ * The job owns the cursor while it runs. The messages are read in small chunks, so the job can be canceled between two chunks.
+ * The messages read are then appended to the table from the UI thread and the cursor is given back to the TabData, only if no
+ * refresh has been started for the tab meanwhile. Otherwise the messages are discarded and the cursor is closed
+ *
+ * @author Denis Forveille
+ *
+ */
+final class BrowseQueueNextPageJob extends Job {
+
+   private static final Logger      log = LoggerFactory.getLogger(BrowseQueueNextPageJob.class);
+
+   private final UISynchronize      sync;
+   private final JTBStatusReporter  jtbStatusReporter;
+
+   private final TabData            td;
+   private final int                generation;
+   private final QueueBrowserCursor cursor;
+   private final int                pageSize;
+
+   // Called from the UI thread each time the TabData has been updated
+   private final Consumer<TabData>  tabUpdater;
+
+   // ------------
+   // Constructors
+   // ------------
+
+   BrowseQueueNextPageJob(UISynchronize sync,
+                          JTBStatusReporter jtbStatusReporter,
+                          String name,
+                          TabData td,
+                          QueueBrowserCursor cursor,
+                          int pageSize,
+                          Consumer<TabData> tabUpdater) {
+      super(name);
+      this.setSystem(true);
+      this.sync = sync;
+      this.jtbStatusReporter = jtbStatusReporter;
+
+      this.td = td;
+      this.generation = td.queueBrowseGeneration;
+      this.cursor = cursor;
+      this.pageSize = pageSize;
+      this.tabUpdater = tabUpdater;
+   }
+
+   // ------------------
+   // Business Interface
+   // ------------------
+
+   @Override
+   protected IStatus run(IProgressMonitor monitor) {
+      log.debug("Browsing next page of {}. generation={}", td.jtbDestination, generation);
+
+      monitor.beginTask(getName(), pageSize);
+
+      try {
+
+         // Fetch and filter the messages. Stop between two chunks when canceled
+         final List<JTBMessage> page = new ArrayList<>(pageSize);
+         while ((page.size() < pageSize) && (cursor.hasMore()) && (!monitor.isCanceled())) {
+            List<JTBMessage> chunk = cursor.nextPage(Math.min(BrowseQueueJob.FETCH_CHUNK_SIZE, pageSize - page.size()));
+            page.addAll(chunk);
+            monitor.worked(chunk.size());
+         }
+
+         // Append the messages to the table and give the cursor back to the tab
+         sync.asyncExec(() -> {
+            if (!isCurrent()) {
+               log.debug("Discarding stale next page for {}. generation={}", td.jtbDestination, generation);
+               cursor.close();
+               return;
+            }
+
+            log.debug("{} messages added to {}", page.size(), td.jtbDestination);
+            if (!page.isEmpty()) {
+               td.queueMessages.addAll(page);
+               ((MessageLazyContentProvider) td.tableViewer.getContentProvider()).inputAppended();
+            }
+
+            td.queueLimitReached = cursor.isLimitReached();
+            if (cursor.hasMore()) {
+               td.queueBrowserCursor = cursor;
+            } else {
+               cursor.close();
+            }
+
+            tabUpdater.accept(td);
+         });
+
+      } catch (Throwable e) {
+         log.error("Exception occurred when browsing next page of {}", td.jtbDestination, e);
+         cursor.close();
+         sync.asyncExec(() -> {
+            if (isCurrent()) {
+               jtbStatusReporter.showError("Problem while browsing queue", Utils.getCause(e), "");
+            }
+         });
+
+      } finally {
+         sync.asyncExec(() -> {
+            if (td.queueBrowseJob == this) {
+               td.queueBrowseJob = null;
+               tabUpdater.accept(td);
+            }
+         });
+         monitor.done();
+      }
+
+      return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+   }
+
+   @Override
+   public boolean belongsTo(Object family) {
+      if (family instanceof String) {
+         return Constants.JTB_JOBS_FAMILY.equals(family);
+      }
+      return false;
+   }
+
+   // -------
+   // Helpers
+   // -------
+
+   // Called from the UI thread: has a refresh been started for the tab since this job was started?
+   private boolean isCurrent() {
+      return (td.queueBrowseGeneration == generation) && (td.tabItem != null) && (!td.tabItem.isDisposed());
+   }
+}
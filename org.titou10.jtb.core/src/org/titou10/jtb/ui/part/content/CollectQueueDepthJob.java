@@ -18,10 +18,21 @@ package org.titou10.jtb.ui.part.content;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.jms.JMSException;
+import javax.jms.Session;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -41,23 +52,33 @@ import org.titou10.jtb.util.Utils;
 /**
  * Job that asynchronously collect Queue Depth data
  * 
+ * The depth of all the queues is first read with one bulk call to the Q Manager, unless the Q Manager supports concurrent calls
+ * to getQueueDepth(). Then the queues are processed by a bounded number of workers. Each worker uses its own JMS session to
+ * browse the queues. Results are published to the table as they arrive
+ * 
  * @author Denis Forveille
  *
  */
 public class CollectQueueDepthJob extends Job {
 
-   private static final Logger log = LoggerFactory.getLogger(CollectQueueDepthJob.class);
+   private static final Logger               log                 = LoggerFactory.getLogger(CollectQueueDepthJob.class);
+
+   private static final long                 PUBLISH_INTERVAL_MS = 250L;
+
+   private final UISynchronize               sync;
 
-   private final UISynchronize sync;
+   private final JTBConnection               jtbConnection;
+   private final QManager                    qm;
 
-   private final JTBConnection jtbConnection;
-   private final QManager      qm;
+   private final TableViewer                 tableViewer;
+   private final CTabItem                    tabItem;
+   private final String                      title;
 
-   private final TableViewer   tableViewer;
-   private final CTabItem      tabItem;
-   private final String        title;
+   private SortedSet<JTBQueue>               jtbQueuesFiltered;
+   private int                               parallelism         = 1;
 
-   private SortedSet<JTBQueue> jtbQueuesFiltered;
+   // Rows currently displayed, indexed by queue name. Only accessed from the UI thread
+   private final Map<String, QueueWithDepth> rows                = new HashMap<>();
 
    // ------------
    // Constructors
@@ -89,6 +110,10 @@ public class CollectQueueDepthJob extends Job {
       this.jtbQueuesFiltered = jtbQueuesFiltered;
    }
 
+   public void setParallelism(int parallelism) {
+      this.parallelism = Math.max(1, parallelism);
+   }
+
    // ------------------
    // Business Interface
    // ------------------
@@ -96,39 +121,60 @@ public class CollectQueueDepthJob extends Job {
    @Override
    protected IStatus run(IProgressMonitor monitor) {
 
-      List<QueueWithDepth> list = new ArrayList<QueueWithDepth>(jtbConnection.getJtbQueues().size());
+      final int nbQueues = jtbQueuesFiltered.size();
+      final int nbWorkers = Math.max(1, Math.min(parallelism, nbQueues));
+      log.debug("Collecting depth of {} queues with {} workers", nbQueues, nbWorkers);
 
-      Date firstMessageTimestamp;
-      for (JTBQueue jtbQueue : jtbQueuesFiltered) {
+      monitor.beginTask(getName(), nbQueues);
 
-         try {
-            firstMessageTimestamp = jtbConnection.getFirstMessageTimestamp(jtbQueue);
-         } catch (JMSException e) {
-            firstMessageTimestamp = null;
-            log.error("JMSException occurred when calling jtbConnection.getFirstMessageTimestamp", e);
+      // Read the depth of all the queues at once, except if the Q Manager supports concurrent calls to getQueueDepth()
+      final Map<String, Integer> depths;
+      if (qm.supportsConcurrentQueueDepth()) {
+         depths = null;
+      } else {
+         List<String> queueNames = new ArrayList<>(nbQueues);
+         for (JTBQueue jtbQueue : jtbQueuesFiltered) {
+            queueNames.add(jtbQueue.getName());
          }
+         depths = qm.getQueueDepths(jtbConnection.getJmsConnection(), queueNames);
+      }
+
+      final Queue<JTBQueue> toProcess = new ConcurrentLinkedQueue<>(jtbQueuesFiltered);
+      final Queue<QueueWithDepth> results = new ConcurrentLinkedQueue<>();
+      final AtomicInteger nbProcessed = new AtomicInteger(0);
+
+      AtomicInteger threadNumber = new AtomicInteger(0);
+      ExecutorService executor = Executors.newFixedThreadPool(nbWorkers, r -> {
+         Thread t = new Thread(r, "JTB-QueueDepth-" + threadNumber.incrementAndGet());
+         t.setDaemon(true);
+         return t;
+      });
 
-         list.add(new QueueWithDepth(jtbQueue,
-                                     qm.getQueueDepth(jtbConnection.getJmsConnection(), jtbQueue.getName()),
-                                     firstMessageTimestamp));
+      for (int i = 0; i < nbWorkers; i++) {
+         executor.execute(() -> collect(monitor, depths, toProcess, results, nbProcessed));
       }
+      executor.shutdown();
 
-      // Update UI
-      sync.asyncExec(new Runnable() {
-         @Override
-         public void run() {
-            if (tableViewer.getControl().isDisposed()) {
-               cancel();
-               return;
+      // Publish partial results to the table while the workers are running
+      boolean first = true;
+      try {
+         while (!executor.awaitTermination(PUBLISH_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+            if (monitor.isCanceled()) {
+               executor.shutdownNow();
+               break;
             }
-
-            tableViewer.setInput(list);
-            Utils.resizeTableViewerAll(tableViewer);
-            tabItem.setText(title);
+            publish(drain(results), first, false, nbProcessed.get(), nbQueues);
+            first = false;
          }
-      });
+      } catch (InterruptedException e) {
+         executor.shutdownNow();
+         Thread.currentThread().interrupt();
+      }
+
+      publish(drain(results), first, true, nbProcessed.get(), nbQueues);
 
-      return Status.OK_STATUS;
+      monitor.done();
+      return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
    }
 
    @Override
@@ -145,4 +191,149 @@ public class CollectQueueDepthJob extends Job {
       return false;
    }
 
+   // -------
+   // Helpers
+   // -------
+
+   // Worker: process queues until there is no more to process. Each worker has its own JMS Session
+   private void collect(IProgressMonitor monitor,
+                        Map<String, Integer> depths,
+                        Queue<JTBQueue> toProcess,
+                        Queue<QueueWithDepth> results,
+                        AtomicInteger nbProcessed) {
+
+      Session session = null;
+      try {
+         session = jtbConnection.createWorkerSession();
+      } catch (JMSException e) {
+         log.error("JMSException occurred when creating a session for collecting queue depth", e);
+      }
+
+      try {
+         JTBQueue jtbQueue;
+         while ((!monitor.isCanceled()) && ((jtbQueue = toProcess.poll()) != null)) {
+
+            Date firstMessageTimestamp = null;
+            if (session != null) {
+               try {
+                  firstMessageTimestamp = jtbConnection.getFirstMessageTimestamp(jtbQueue, session);
+               } catch (JMSException e) {
+                  log.error("JMSException occurred when calling jtbConnection.getFirstMessageTimestamp", e);
+               }
+            }
+
+            Integer depth;
+            if (depths == null) {
+               depth = qm.getQueueDepth(jtbConnection.getJmsConnection(), jtbQueue.getName());
+            } else {
+               depth = depths.get(jtbQueue.getName());
+            }
+
+            results.add(new QueueWithDepth(jtbQueue, depth, firstMessageTimestamp));
+            nbProcessed.incrementAndGet();
+            monitor.worked(1);
+         }
+      } finally {
+         if (session != null) {
+            try {
+               session.close();
+            } catch (JMSException e) {
+               log.warn("Exception occurred when closing session. Ignoring: {}", e.getMessage());
+            }
+         }
+      }
+   }
+
+   private List<QueueWithDepth> drain(Queue<QueueWithDepth> results) {
+      List<QueueWithDepth> batch = new ArrayList<>(results.size());
+      QueueWithDepth qwd;
+      while ((qwd = results.poll()) != null) {
+         batch.add(qwd);
+      }
+      return batch;
+   }
+
+   // Update UI with a batch of results: update existing rows in place, add the new ones
+   private void publish(final List<QueueWithDepth> batch,
+                        final boolean first,
+                        final boolean last,
+                        final int nbProcessed,
+                        final int nbQueues) {
+      sync.asyncExec(new Runnable() {
+         @SuppressWarnings("unchecked")
+         @Override
+         public void run() {
+            if (tableViewer.getControl().isDisposed()) {
+               cancel();
+               return;
+            }
+
+            List<QueueWithDepth> input = (List<QueueWithDepth>) tableViewer.getInput();
+            if (input == null) {
+               input = new ArrayList<>(nbQueues);
+               tableViewer.setInput(input);
+            }
+
+            // Start of a new collection: index the rows currently displayed
+            if (first) {
+               rows.clear();
+               for (QueueWithDepth qwd : input) {
+                  rows.put(qwd.jtbQueue.getName(), qwd);
+               }
+            }
+
+            List<QueueWithDepth> added = new ArrayList<>();
+            for (QueueWithDepth qwd : batch) {
+               QueueWithDepth row = rows.get(qwd.jtbQueue.getName());
+               if (row == null) {
+                  rows.put(qwd.jtbQueue.getName(), qwd);
+                  input.add(qwd);
+                  added.add(qwd);
+               } else {
+                  row.depth = qwd.depth;
+                  row.firstMessageTimestamp = qwd.firstMessageTimestamp;
+                  tableViewer.update(row, null);
+               }
+            }
+            if (!added.isEmpty()) {
+               tableViewer.add(added.toArray());
+            }
+
+            if (!last) {
+               tabItem.setText("(Refreshing.. " + nbProcessed + "/" + nbQueues + ")");
+               return;
+            }
+
+            // Collection has been cancelled: keep the rows as they are
+            if (nbProcessed < nbQueues) {
+               tabItem.setText(title);
+               return;
+            }
+
+            // Collection is completed: remove the rows of the queues that are not part of the collection anymore
+            Set<String> names = new HashSet<>(jtbQueuesFiltered.size());
+            for (JTBQueue jtbQueue : jtbQueuesFiltered) {
+               names.add(jtbQueue.getName());
+            }
+            List<QueueWithDepth> removed = new ArrayList<>();
+            for (QueueWithDepth qwd : input) {
+               if (!names.contains(qwd.jtbQueue.getName())) {
+                  removed.add(qwd);
+               }
+            }
+            if (!removed.isEmpty()) {
+               input.removeAll(removed);
+               for (QueueWithDepth qwd : removed) {
+                  rows.remove(qwd.jtbQueue.getName());
+               }
+               tableViewer.remove(removed.toArray());
+            }
+
+            // Sort the rows that have been updated in place
+            tableViewer.refresh();
+            Utils.resizeTableViewerAll(tableViewer);
+            tabItem.setText(title);
+         }
+      });
+   }
 }
@@ -64,9 +64,9 @@ import org.eclipse.jface.viewers.SelectionChangedEvent;
 import org.eclipse.jface.viewers.StructuredSelection;
 import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.jface.viewers.TableViewerColumn;
+import org.eclipse.jface.viewers.ViewerCell;
 import org.eclipse.jface.window.Window;
 import org.eclipse.swt.SWT;
-import org.eclipse.swt.custom.BusyIndicator;
 import org.eclipse.swt.custom.CTabFolder;
 import org.eclipse.swt.custom.CTabItem;
 import org.eclipse.swt.dnd.DND;
@@ -100,10 +100,12 @@ import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.Menu;
 import org.eclipse.swt.widgets.MenuItem;
+import org.eclipse.swt.widgets.ScrollBar;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.Spinner;
 import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.TableItem;
 import org.eclipse.swt.widgets.Text;
 import org.eclipse.wb.swt.SWTResourceManager;
 import org.slf4j.Logger;
@@ -123,6 +125,8 @@ import org.titou10.jtb.jms.model.JTBQueue;
 import org.titou10.jtb.jms.model.JTBSession;
 import org.titou10.jtb.jms.model.JTBSessionClientType;
 import org.titou10.jtb.jms.model.JTBTopic;
+import org.titou10.jtb.jms.model.MessageCaptureFile;
+import org.titou10.jtb.jms.model.QueueBrowserCursor;
 import org.titou10.jtb.sessiontype.SessionTypeManager;
 import org.titou10.jtb.template.TemplatesManager;
 import org.titou10.jtb.ui.JTBStatusReporter;
@@ -147,8 +151,15 @@ public class JTBSessionContentViewPart {
    private static final int     DECORATOR_WIDTH          = 6;
    private static final int     DECORATOR_HEIGHT         = 16;
    private static final int     CLEAR_BUTTON_SIZE        = 28;
-   private static final String  PAYLOAD_SEARCH_TOOLTIP   = "Filter messages with payload containing this text";
+   private static final String  PAYLOAD_SEARCH_TOOLTIP   = "Filter messages with payload containing this text.\n"
+                                                          + "Prefix with 'icase:' to ignore case, 'all:' or 'any:' to search for "
+                                                          + "all or any of the terms separated by spaces, 'regex:' for a regular "
+                                                          + "expression,\n'json:$.path.to[0].field=value' for a json path or "
+                                                          + "'xpath:' for an XPath expression";
    private static final String  SELECTORS_SEARCH_TOOLTIP = "Filter messages with JMS selectors";
+   private static final String  SEARCH_QUEUES_TOOLTIP    = "Search messages in all the queues shown (Enter)";
+   private static final int     QUEUE_BROWSE_PAGE_SIZE   = 100;
+   private static final long    TOPIC_CAPTURE_MAX_SIZE   = 1024 * 1024 * 1024L; // 1 GB
 
    @Inject
    private UISynchronize        sync;
@@ -191,8 +202,6 @@ public class JTBSessionContentViewPart {
 
    private CTabFolder           tabFolder;
 
-   private Integer              nbMessage                = 0;
-
    private IEclipseContext      windowContext;
 
    // Create the TabFolder
@@ -254,6 +263,15 @@ public class JTBSessionContentViewPart {
                // Refresh Message View Part with current selection
                eventBroker.post(Constants.EVENT_JTBMESSAGE_PART_REFRESH, td.selectedJTBMessage);
 
+            } else if (td.type == TabDataType.SEARCH) {
+               currentCTabItemName = computeSearchCTabItemName(td.jtbSession);
+               windowContext.remove(Constants.CURRENT_TAB_JTBDESTINATION);
+               windowContext.remove(Constants.CURRENT_TAB_JTBSESSION);
+               windowContext.remove(Constants.CURRENT_COLUMNSSET);
+
+               // Refresh Message View Part with current selection
+               eventBroker.post(Constants.EVENT_JTBMESSAGE_PART_REFRESH, td.selectedJTBMessage);
+
             } else {
                currentCTabItemName = computeCTabItemName(td.jtbSession);
                windowContext.remove(Constants.CURRENT_TAB_JTBDESTINATION);
@@ -349,6 +367,15 @@ public class JTBSessionContentViewPart {
          // Refresh Message View Part with current selection
          eventBroker.post(Constants.EVENT_JTBMESSAGE_PART_REFRESH, td.selectedJTBMessage);
 
+      } else if (td.type == TabDataType.SEARCH) {
+         currentCTabItemName = computeSearchCTabItemName(td.jtbSession);
+         windowContext.remove(Constants.CURRENT_TAB_JTBDESTINATION);
+         windowContext.remove(Constants.CURRENT_TAB_JTBSESSION);
+         windowContext.remove(Constants.CURRENT_COLUMNSSET);
+
+         // Refresh Message View Part with current selection
+         eventBroker.post(Constants.EVENT_JTBMESSAGE_PART_REFRESH, td.selectedJTBMessage);
+
       } else {
          currentCTabItemName = computeCTabItemName(td.jtbSession);
          windowContext.remove(Constants.CURRENT_TAB_JTBDESTINATION);
@@ -596,8 +623,16 @@ public class JTBSessionContentViewPart {
          btnRefresh.addSelectionListener(SelectionListener.widgetSelectedAdapter(e -> {
             CTabItem selectedTab = tabFolder.getSelection();
             if (selectedTab != null) {
-               // Send event to refresh list of messages
                TabData td2 = (TabData) selectedTab.getData();
+
+               // Cancel the browse in progress if any
+               if (td2.queueBrowseJob != null) {
+                  cancelQueueBrowse(td2);
+                  updateQueueTab(td2);
+                  return;
+               }
+
+               // Send event to refresh list of messages
                eventBroker.send(Constants.EVENT_REFRESH_QUEUE_MESSAGES, td2.jtbDestination.getAsJTBQueue());
             }
          }));
@@ -701,7 +736,7 @@ public class JTBSessionContentViewPart {
          // -------------------
          // Table with Messages
          // -------------------
-         final TableViewer tableViewer = new TableViewer(composite, SWT.BORDER | SWT.FULL_SELECTION | SWT.MULTI);
+         final TableViewer tableViewer = new TableViewer(composite, SWT.BORDER | SWT.FULL_SELECTION | SWT.MULTI | SWT.VIRTUAL);
 
          // Create Columns
          List<TableViewerColumn> cols = createColumns(tableViewer, true, cs);
@@ -712,6 +747,17 @@ public class JTBSessionContentViewPart {
          table.setLinesVisible(true);
          tabItemQueue.setControl(composite);
 
+         // Load the next page of messages when the user scrolls near the end of the table
+         table.getVerticalBar().addListener(SWT.Selection, new Listener() {
+            @Override
+            public void handleEvent(Event event) {
+               ScrollBar vBar = table.getVerticalBar();
+               if (vBar.getSelection() + vBar.getThumb() >= vBar.getMaximum() - vBar.getPageIncrement()) {
+                  loadNextQueuePage(td);
+               }
+            }
+         });
+
          // Drag and Drop
          int operations = DND.DROP_MOVE | DND.DROP_COPY;
          Transfer[] transferTypesDrag = new Transfer[] { TransferJTBMessage.getInstance(), FileTransfer.getInstance() };
@@ -801,12 +847,15 @@ public class JTBSessionContentViewPart {
                AutoRefreshJob job = td.autoRefreshJob;
                job.cancel();
 
+               cancelQueueBrowse(td);
+               closeQueueBrowserCursor(td);
+
                mapTabData.remove(computeCTabItemName(jtbQueue));
             }
          });
 
-         // Kind of content
-         tableViewer.setContentProvider(ArrayContentProvider.getInstance());
+         // Kind of content: only the visible rows are materialized
+         tableViewer.setContentProvider(new MessageLazyContentProvider(tableViewer));
 
          Integer maxMessages = ps.getInt(Constants.PREF_MAX_MESSAGES);
          spinnerMaxMessages.setSelection(maxMessages);
@@ -822,6 +871,7 @@ public class JTBSessionContentViewPart {
 
          td.tabItem = tabItemQueue;
          td.tableViewer = tableViewer;
+         td.refreshButton = btnRefresh;
          td.autoRefreshJob = job;
          td.autoRefreshActive = false; // Auto refresh = false on creation
          td.payloadSearchText = payloadSearchTextCombo;
@@ -840,19 +890,13 @@ public class JTBSessionContentViewPart {
 
       // Load Content
       loadQueueContent(jtbQueue,
-                       td.tableViewer,
                        td.payloadSearchText,
                        td.payloadSearchItemsHistory,
                        td.selectorsSearchText,
                        td.selectorsSearchItemsHistory);
-
-      if (ps.getBoolean(Constants.PREF_AUTO_RESIZE_COLS_BROWSER)) {
-         Utils.resizeTableViewer(td.tableViewer);
-      }
    }
 
    private void loadQueueContent(final JTBQueue jtbQueue,
-                                 final TableViewer tableViewer,
                                  final Combo payloadSearchTextCombo,
                                  final List<String> payloadSearchItemsHistory,
                                  final Combo selectorsSearchTextCombo,
@@ -878,62 +922,173 @@ public class JTBSessionContentViewPart {
          selectorsSearchTextCombo.select(0);
       }
 
-      // G
-      BusyIndicator.showWhile(Display.getCurrent(), new Runnable() {
-         @Override
-         public void run() {
-            TabData td = mapTabData.get(computeCTabItemName(jtbQueue));
+      TabData td = mapTabData.get(computeCTabItemName(jtbQueue));
 
-            int maxMessages = td.maxMessages == 0 ? Integer.MAX_VALUE : td.maxMessages;
+      // Cancel the browse started by a previous refresh and close its cursor, if any
+      cancelQueueBrowse(td);
+      closeQueueBrowserCursor(td);
+
+      td.queueDepth = null;
+      td.queueFiltered = !(payloadSearchText.isEmpty() && selectorsSearchText.isEmpty());
+      td.queueLimitReached = false;
+      td.queuePayloadFilter = payloadSearchText;
+      td.queueSelectorsFilter = selectorsSearchText;
+
+      // Open a new cursor on the Queue and show the first page of messages, in background
+      BrowseQueueJob job = new BrowseQueueJob(sync,
+                                              jtbStatusReporter,
+                                              "Browse messages of " + jtbQueue.getName(),
+                                              td,
+                                              payloadSearchText,
+                                              selectorsSearchText,
+                                              QUEUE_BROWSE_PAGE_SIZE,
+                                              ps.getBoolean(Constants.PREF_AUTO_RESIZE_COLS_BROWSER),
+                                              false,
+                                              this::updateQueueTab);
+      td.queueBrowseJob = job;
+      updateQueueTab(td);
+      job.schedule();
+   }
 
-            JTBConnection jtbConnection = jtbQueue.getJtbConnection();
-            Integer depth = jtbConnection.getQm().getQueueDepth(jtbConnection.getJmsConnection(), jtbQueue.getName());
+   // Called by the auto refresh job: only apply the messages added or removed since the last refresh, if possible
+   @Inject
+   @Optional
+   private void autoRefreshQueueMessageBrowser(Shell shell,
+                                               final @UIEventTopic(Constants.EVENT_AUTO_REFRESH_QUEUE_MESSAGES) JTBQueue jtbQueue) {
+      if (!isThisEventForThisPart(jtbQueue)) {
+         return;
+      }
 
-            nbMessage = 0;
+      TabData td = mapTabData.get(computeCTabItemName(jtbQueue));
+      if ((td == null) || (td.tabItem == null) || (td.tabItem.isDisposed())) {
+         return;
+      }
 
-            try {
-               List<JTBMessage> messages = new ArrayList<>(256);
-               messages = jtbQueue.getJtbConnection().browseQueue(jtbQueue, maxMessages, payloadSearchText, selectorsSearchText);
-
-               // Display # messages in tab title
-
-               Integer totalMessages = messages.size();
-               log.debug("Q Depth : {} Max : {} Nb msg to display : {}", depth, maxMessages, totalMessages);
-
-               StringBuilder sb = new StringBuilder(64);
-               sb.append(jtbQueue.getName());
-               sb.append(" (");
-               sb.append(totalMessages);
-               if (totalMessages >= maxMessages) {
-                  if (depth != null) {
-                     sb.append(" / ");
-                     sb.append(depth);
-                  } else {
-                     sb.append("+");
-                  }
-               }
-               sb.append(")");
-               CTabItem tabItem = td.tabItem;
-               tabItem.setText(sb.toString());
+      // Full refresh if no messages have been browsed yet, or if the filters have changed
+      String payloadSearchText = td.payloadSearchText.getText().trim();
+      String selectorsSearchText = td.selectorsSearchText.getText().trim();
+      if ((!ps.getBoolean(Constants.PREF_AUTO_REFRESH_INCREMENTAL)) || (td.queueMessages == null)
+          || (!payloadSearchText.equals(td.queuePayloadFilter)) || (!selectorsSearchText.equals(td.queueSelectorsFilter))) {
+         refreshQueueMessageBrowser(shell, jtbQueue);
+         return;
+      }
 
-               if (totalMessages >= maxMessages) {
-                  tabItem.setImage(SWTResourceManager.getImage(this.getClass(), "icons/error.png"));
-               } else {
-                  if (payloadSearchText.isEmpty() && selectorsSearchText.isEmpty()) {
-                     tabItem.setImage(null);
-                  } else {
-                     tabItem.setImage(SWTResourceManager.getImage(this.getClass(), "icons/filter.png"));
-                  }
-               }
+      // Previous refresh still running: wait for the next one
+      if (td.queueBrowseJob != null) {
+         log.debug("autoRefreshQueueMessageBrowser: browse in progress for {}. Skipping", jtbQueue);
+         return;
+      }
 
-               tableViewer.setInput(messages);
+      log.debug("autoRefreshQueueMessageBrowser: {}", jtbQueue);
+
+      // The job keeps the generation of the tab when it is created: it must be the new one
+      td.queueBrowseGeneration++;
+      BrowseQueueJob job = new BrowseQueueJob(sync,
+                                              jtbStatusReporter,
+                                              "Refresh messages of " + jtbQueue.getName(),
+                                              td,
+                                              payloadSearchText,
+                                              selectorsSearchText,
+                                              QUEUE_BROWSE_PAGE_SIZE,
+                                              false,
+                                              true,
+                                              this::updateQueueTab);
+      td.queueBrowseJob = job;
+      updateQueueTab(td);
+      job.schedule();
+   }
 
-            } catch (Throwable e) {
-               jtbStatusReporter.showError("Problem while browsing queue", Utils.getCause(e), "");
-               return;
-            }
+   // Results of the browse in progress, if any, will be discarded
+   private void cancelQueueBrowse(TabData td) {
+      if (td.queueBrowseJob != null) {
+         td.queueBrowseJob.cancel();
+         td.queueBrowseJob = null;
+      }
+      td.queueBrowseGeneration++;
+   }
+
+   private void updateQueueTab(TabData td) {
+      updateQueueTabTitle(td);
+
+      Button btnRefresh = td.refreshButton;
+      if ((btnRefresh == null) || (btnRefresh.isDisposed())) {
+         return;
+      }
+      if (td.queueBrowseJob == null) {
+         btnRefresh.setImage(SWTResourceManager.getImage(this.getClass(), "icons/arrow_refresh.png"));
+         btnRefresh.setToolTipText("Refresh Messages (F5)");
+      } else {
+         btnRefresh.setImage(SWTResourceManager.getImage(this.getClass(), "icons/cancel.png"));
+         btnRefresh.setToolTipText("Cancel browsing messages");
+      }
+   }
+
+   private void loadNextQueuePage(final TabData td) {
+      // A browse or the load of a page is in progress: the next page will be loaded on the next scroll
+      if (td.queueBrowseJob != null) {
+         return;
+      }
+      final QueueBrowserCursor cursor = td.queueBrowserCursor;
+      if ((cursor == null) || (!cursor.hasMore())) {
+         return;
+      }
+
+      // Read the next page in background. The job owns the cursor until it gives it back to the tab
+      td.queueBrowserCursor = null;
+      BrowseQueueNextPageJob job = new BrowseQueueNextPageJob(sync,
+                                                              jtbStatusReporter,
+                                                              "Browse next messages of " + td.jtbDestination.getName(),
+                                                              td,
+                                                              cursor,
+                                                              QUEUE_BROWSE_PAGE_SIZE,
+                                                              this::updateQueueTab);
+      td.queueBrowseJob = job;
+      updateQueueTab(td);
+      job.schedule();
+   }
+
+   private void updateQueueTabTitle(TabData td) {
+      CTabItem tabItem = td.tabItem;
+      if ((tabItem == null) || (tabItem.isDisposed())) {
+         return;
+      }
+
+      int totalMessages = td.queueMessages == null ? 0 : td.queueMessages.size();
+      boolean limitReached = td.queueLimitReached;
+      boolean morePages = ((td.queueBrowserCursor != null) && (td.queueBrowserCursor.hasMore()))
+                          || (td.queueBrowseJob instanceof BrowseQueueNextPageJob);
+
+      StringBuilder sb = new StringBuilder(64);
+      sb.append(td.jtbDestination.getName());
+      sb.append(" (");
+      sb.append(totalMessages);
+      if (limitReached || morePages) {
+         if (td.queueDepth != null) {
+            sb.append(" / ");
+            sb.append(td.queueDepth);
+         } else {
+            sb.append("+");
          }
-      });
+      }
+      sb.append(")");
+      tabItem.setText(sb.toString());
+
+      if (limitReached) {
+         tabItem.setImage(SWTResourceManager.getImage(this.getClass(), "icons/error.png"));
+      } else {
+         if (td.queueFiltered) {
+            tabItem.setImage(SWTResourceManager.getImage(this.getClass(), "icons/filter.png"));
+         } else {
+            tabItem.setImage(null);
+         }
+      }
+   }
+
+   private void closeQueueBrowserCursor(TabData td) {
+      if (td.queueBrowserCursor != null) {
+         td.queueBrowserCursor.close();
+         td.queueBrowserCursor = null;
+      }
    }
 
    @SuppressWarnings("unchecked")
@@ -956,7 +1111,7 @@ public class JTBSessionContentViewPart {
 
       TabData td = mapTabData.get(computeCTabItemName(jtbTopic));
       td.topicMessages.clear();
-      td.tableViewer.refresh();
+      ((MessageLazyContentProvider) td.tableViewer.getContentProvider()).inputRefreshed();
    }
 
    // Called whenever a Topic is browsed
@@ -1075,7 +1230,7 @@ public class JTBSessionContentViewPart {
          // -------------------
          // Table with Messages
          // -------------------
-         final TableViewer tableViewer = new TableViewer(composite, SWT.BORDER | SWT.FULL_SELECTION | SWT.MULTI);
+         final TableViewer tableViewer = new TableViewer(composite, SWT.BORDER | SWT.FULL_SELECTION | SWT.MULTI | SWT.VIRTUAL);
 
          // Create Columns
          td.tableViewerColumns = createColumns(tableViewer, false, cs);
@@ -1086,9 +1241,9 @@ public class JTBSessionContentViewPart {
          table.setLinesVisible(true);
          tabItemTopic.setControl(composite);
 
-         // Manage Content
+         // Manage Content: only the visible rows are materialized
          final Deque<JTBMessage> messages = new ArrayDeque<>();
-         tableViewer.setContentProvider(ArrayContentProvider.getInstance());
+         tableViewer.setContentProvider(new MessageLazyContentProvider(tableViewer));
          tableViewer.setInput(messages);
 
          // Drag and Drop
@@ -1152,6 +1307,7 @@ public class JTBSessionContentViewPart {
                for (JTBMessage m : (List<JTBMessage>) selection.toList()) {
                   td.topicMessages.remove(m);
                }
+               ((MessageLazyContentProvider) tableViewer.getContentProvider()).inputRefreshed();
                return;
             }
          }));
@@ -1173,6 +1329,10 @@ public class JTBSessionContentViewPart {
                } catch (JMSException e) {
                   log.error("Exception when closing subscription", e);
                }
+               if (td.topicCaptureFile != null) {
+                  td.topicCaptureFile.close();
+                  td.topicCaptureFile = null;
+               }
                mapTabData.remove(computeCTabItemName(jtbTopic));
             }
          });
@@ -1192,7 +1352,8 @@ public class JTBSessionContentViewPart {
                                                                  tabItemTopic,
                                                                  selector,
                                                                  messages,
-                                                                 spinnerMaxMessages.getSelection());
+                                                                 spinnerMaxMessages.getSelection(),
+                                                                 td2.topicCaptureFile);
                   btnStopStartSub.setImage(SWTResourceManager.getImage(this.getClass(), "icons/topics/pause-16.png"));
                   btnStopStartSub.setToolTipText("Stop Subscription");
                   if (!selector.isEmpty()) {
@@ -1240,6 +1401,15 @@ public class JTBSessionContentViewPart {
          td.topicMessages = messages;
          td.columnsSet = cs;
 
+         // Store the messages captured in a file, the table only keeps an index on them
+         if (ps.getBoolean(Constants.PREF_TOPIC_CAPTURE_FILE)) {
+            try {
+               td.topicCaptureFile = MessageCaptureFile.create(jtbTopicName, TOPIC_CAPTURE_MAX_SIZE);
+            } catch (IOException e) {
+               log.error("Exception occurred when creating capture file. Messages will be kept in memory", e);
+            }
+         }
+
          tabItemTopic.setData(td);
          mapTabData.put(currentCTabItemName, td);
 
@@ -1250,7 +1420,8 @@ public class JTBSessionContentViewPart {
                                                           tabItemTopic,
                                                           selectorsSearchText.getText().trim(),
                                                           messages,
-                                                          spinnerMaxMessages.getSelection());
+                                                          spinnerMaxMessages.getSelection(),
+                                                          td.topicCaptureFile);
 
          } catch (JMSException e1) {
             String msg = "An Exception occured when initially starting the subscription";
@@ -1273,9 +1444,10 @@ public class JTBSessionContentViewPart {
                                                CTabItem tabItemTopic,
                                                String selector,
                                                Deque<JTBMessage> messages,
-                                               int maxSize) throws JMSException {
+                                               int maxSize,
+                                               MessageCaptureFile captureFile) throws JMSException {
 
-      MessageListener ml = new TopicListener(sync, jtbTopic, messages, tableViewer, tabItemTopic, maxSize);
+      MessageListener ml = new TopicListener(sync, jtbTopic, messages, tableViewer, tabItemTopic, maxSize, captureFile);
       JTBConnection jtbConnection = jtbTopic.getJtbConnection();
       return jtbConnection.createTopicSubscriber(jtbTopic, ml, selector);
    }
@@ -1411,6 +1583,53 @@ public class JTBSessionContentViewPart {
             }
          }));
 
+         // ---------------------------
+         // Search Messages in Queues Line
+         // ---------------------------
+         GridLayout glSearchMessages = new GridLayout(5, false);
+         glSearchMessages.marginWidth = 0;
+         glSearchMessages.marginHeight = 0;
+
+         Composite searchComposite = new Composite(composite, SWT.NONE);
+         searchComposite.setLayout(glSearchMessages);
+         searchComposite.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 1, 1));
+
+         final Label labelSearch1 = new Label(searchComposite, SWT.NONE);
+         labelSearch1.setText("Search messages with payload: ");
+         labelSearch1.setToolTipText(PAYLOAD_SEARCH_TOOLTIP);
+
+         final Text searchPayloadText = new Text(searchComposite, SWT.BORDER);
+         searchPayloadText.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 1, 1));
+         searchPayloadText.setToolTipText(PAYLOAD_SEARCH_TOOLTIP);
+
+         final Label labelSearch2 = new Label(searchComposite, SWT.NONE);
+         labelSearch2.setText("and selectors: ");
+         labelSearch2.setToolTipText(SELECTORS_SEARCH_TOOLTIP);
+
+         final Text searchSelectorsText = new Text(searchComposite, SWT.BORDER);
+         searchSelectorsText.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 1, 1));
+         searchSelectorsText.setToolTipText(SELECTORS_SEARCH_TOOLTIP);
+
+         final Button btnSearch = new Button(searchComposite, SWT.NONE);
+         btnSearch.setImage(SWTResourceManager.getImage(this.getClass(), "icons/magnifier.png"));
+         btnSearch.setToolTipText(SEARCH_QUEUES_TOOLTIP);
+         btnSearch.setLayoutData(new GridData(SWT.CENTER, SWT.CENTER, false, false, 1, 1));
+         btnSearch.addSelectionListener(SelectionListener.widgetSelectedAdapter(e -> {
+            searchQueues(td, btnSearch, searchPayloadText.getText().trim(), searchSelectorsText.getText().trim());
+         }));
+
+         Listener searchListener = new Listener() {
+            @Override
+            public void handleEvent(Event event) {
+               if (event.detail == SWT.TRAVERSE_RETURN) {
+                  // User pressed Enter
+                  searchQueues(td, btnSearch, searchPayloadText.getText().trim(), searchSelectorsText.getText().trim());
+               }
+            }
+         };
+         searchPayloadText.addListener(SWT.Traverse, searchListener);
+         searchSelectorsText.addListener(SWT.Traverse, searchListener);
+
          // ---------------------------------------
          // Table with Queue Depths + JMS Timestamp
          // ---------------------------------------
@@ -1574,22 +1793,9 @@ public class JTBSessionContentViewPart {
       // Set Content
       JTBConnection jtbConnection = jtbSession.getJTBConnection(JTBSessionClientType.GUI);
 
-      // Get Queues based on Tree Browser filter
-      SortedSet<JTBQueue> baseQueues;
-      if (jtbConnection.isFilterApplied()) {
-         baseQueues = jtbConnection.getJtbQueuesFiltered();
-      } else {
-         baseQueues = jtbConnection.getJtbQueues();
-      }
-
-      // Filter Queue names based on local filter
-      SortedSet<JTBQueue> jtbQueuesFiltered = new TreeSet<>(baseQueues);
+      // Get Queues based on Tree Browser filter and local filter
       String filter = td.filterText.getText().trim();
-      if (!(filter.isEmpty())) {
-         String filterRegexPattern = filter.replaceAll("\\.", "\\\\.").replaceAll("\\?", ".").replaceAll("\\*", ".*");
-         jtbQueuesFiltered = jtbQueuesFiltered.stream().filter(q -> q.getName().matches(filterRegexPattern))
-                  .collect(Collectors.toCollection(() -> new TreeSet<>()));
-      }
+      SortedSet<JTBQueue> jtbQueuesFiltered = getSyntheticViewQueues(jtbConnection, filter);
 
       // Save filter in preferences
       String prefKey = ps.buildPreferenceKeyForQDepthFilter(jtbSessionName);
@@ -1617,6 +1823,7 @@ public class JTBSessionContentViewPart {
       if (collectQueueDepthJob.getState() != Job.RUNNING) {
          td.tabItem.setText("(Refreshing..)");
          collectQueueDepthJob.setJtbQueuesFiltered(jtbQueuesFiltered);
+         collectQueueDepthJob.setParallelism(ps.getInt(Constants.PREF_Q_DEPTH_PARALLELISM));
 
          // Start the Job
          log.debug("Starting the Queue Depth data collection job.");
@@ -1630,10 +1837,223 @@ public class JTBSessionContentViewPart {
       }
    }
 
+   // Queues of the session based on the Tree Browser filter and on the filter of the synthetic view
+   private SortedSet<JTBQueue> getSyntheticViewQueues(JTBConnection jtbConnection, String filter) {
+      SortedSet<JTBQueue> baseQueues;
+      if (jtbConnection.isFilterApplied()) {
+         baseQueues = jtbConnection.getJtbQueuesFiltered();
+      } else {
+         baseQueues = jtbConnection.getJtbQueues();
+      }
+
+      SortedSet<JTBQueue> jtbQueuesFiltered = new TreeSet<>(baseQueues);
+      if (!(filter.isEmpty())) {
+         String filterRegexPattern = filter.replaceAll("\\.", "\\\\.").replaceAll("\\?", ".").replaceAll("\\*", ".*");
+         jtbQueuesFiltered = jtbQueuesFiltered.stream().filter(q -> q.getName().matches(filterRegexPattern))
+                  .collect(Collectors.toCollection(() -> new TreeSet<>()));
+      }
+      return jtbQueuesFiltered;
+   }
+
+   // ----------------------
+   // Search Results Handling
+   // ----------------------
+
+   // Search messages in all the queues shown in the synthetic view. A running search is canceled
+   private void searchQueues(TabData tdSynthetic, Button btnSearch, String payloadSearchText, String selectorsSearchText) {
+      JTBSession jtbSession = tdSynthetic.jtbSession;
+
+      TabData td = mapTabData.get(computeSearchCTabItemName(jtbSession));
+      if ((td != null) && (td.searchQueuesJob != null)) {
+         log.debug("searchQueues: cancel search in {}", jtbSession);
+         td.searchQueuesJob.cancel();
+         td.searchQueuesJob = null;
+         updateSearchTab(td);
+         return;
+      }
+
+      if (payloadSearchText.isEmpty() && selectorsSearchText.isEmpty()) {
+         return;
+      }
+
+      JTBConnection jtbConnection = jtbSession.getJTBConnection(JTBSessionClientType.GUI);
+      SortedSet<JTBQueue> jtbQueues = getSyntheticViewQueues(jtbConnection, tdSynthetic.filterText.getText().trim());
+      jtbQueues.removeIf(q -> !q.isBrowsable());
+
+      log.debug("searchQueues: {} queues in {}", jtbQueues.size(), jtbSession);
+
+      if (td == null) {
+         td = createSearchTab(jtbSession);
+      }
+      tabFolder.setSelection(td.tabItem);
+      currentCTabItemName = computeSearchCTabItemName(jtbSession);
+
+      td.refreshButton = btnSearch;
+      td.selectedJTBMessage = null;
+      td.queueMessages.clear();
+      ((MessageLazyContentProvider) td.tableViewer.getContentProvider()).inputRefreshed();
+
+      SearchQueuesJob job = new SearchQueuesJob(sync,
+                                                "Search messages in queues of " + jtbSession.getName(),
+                                                td,
+                                                jtbConnection,
+                                                jtbQueues,
+                                                payloadSearchText,
+                                                selectorsSearchText,
+                                                ps.getInt(Constants.PREF_Q_DEPTH_PARALLELISM),
+                                                ps.getInt(Constants.PREF_MAX_MESSAGES),
+                                                this::updateSearchTab);
+      td.searchQueuesJob = job;
+      updateSearchTab(td);
+      job.schedule();
+   }
+
+   private TabData createSearchTab(JTBSession jtbSession) {
+      final String tabItemName = computeSearchCTabItemName(jtbSession);
+
+      final TabData td = new TabData(jtbSession);
+      td.type = TabDataType.SEARCH;
+
+      CTabItem tabItemSearch = new CTabItem(tabFolder, SWT.NONE);
+      tabItemSearch.setShowClose(true);
+      tabItemSearch.setText("Search");
+
+      Composite composite = new Composite(tabFolder, SWT.NONE);
+      composite.setLayout(new GridLayout(1, false));
+      composite.setBackground(getBackGroundColor());
+
+      final TableViewer tableViewer = new TableViewer(composite, SWT.BORDER | SWT.FULL_SELECTION | SWT.MULTI | SWT.VIRTUAL);
+      Table table = tableViewer.getTable();
+      table.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true, 1, 1));
+      table.setHeaderVisible(true);
+      table.setLinesVisible(true);
+      tabItemSearch.setControl(composite);
+
+      // Create Columns: the source queue of each message, then the system columns set
+      List<TableViewerColumn> cols = new ArrayList<>();
+      TableViewerColumn col = createTableViewerColumn(tableViewer, "Queue", 200, SWT.NONE);
+      col.setLabelProvider(new ColumnLabelProvider() {
+         @Override
+         public String getText(Object element) {
+            JTBMessage jtbMessage = (JTBMessage) element;
+            return jtbMessage.getJtbDestination().getName();
+         }
+
+         @Override
+         public Image getImage(Object element) {
+            return SWTResourceManager.getImage(this.getClass(), "icons/queue/page_white_stack.png");
+         }
+      });
+      cols.add(col);
+      ColumnsSet cs = csManager.getSystemColumnsSet();
+      cols.addAll(createColumns(tableViewer, false, cs));
+
+      // Manage selections
+      tableViewer.addSelectionChangedListener(new ISelectionChangedListener() {
+         public void selectionChanged(SelectionChangedEvent event) {
+
+            // Store selected Message
+            List<JTBMessage> jtbMessagesSelected = buildListJTBMessagesSelected((IStructuredSelection) event.getSelection());
+            selectionService.setSelection(jtbMessagesSelected);
+
+            // Remember selection
+            td.selectedJTBMessage = null;
+            if ((jtbMessagesSelected != null) && (jtbMessagesSelected.size() > 0)) {
+               td.selectedJTBMessage = jtbMessagesSelected.get(0);
+            }
+
+            // Refresh Message Viewer
+            eventBroker.post(Constants.EVENT_JTBMESSAGE_PART_REFRESH, td.selectedJTBMessage);
+         }
+      });
+
+      // Double click listener to activate selection on enter
+      tableViewer.addDoubleClickListener(new IDoubleClickListener() {
+         @Override
+         public void doubleClick(DoubleClickEvent event) {
+            // Call the View Message Command
+            ParameterizedCommand myCommand = commandService.createCommand(Constants.COMMAND_MESSAGE_VIEW, null);
+            handlerService.executeHandler(myCommand);
+         }
+      });
+
+      // Intercept closing/hiding CTabItem : cancel the search when closed
+      tabItemSearch.addDisposeListener(new DisposeListener() {
+
+         @Override
+         public void widgetDisposed(DisposeEvent event) {
+            log.debug("dispose CTabItem for Search Results for Session '{}'", jtbSession.getName());
+            if (td.searchQueuesJob != null) {
+               td.searchQueuesJob.cancel();
+               td.searchQueuesJob = null;
+               updateSearchTab(td);
+            }
+
+            mapTabData.remove(tabItemName);
+         }
+      });
+
+      // Kind of content: only the visible rows are materialized
+      tableViewer.setContentProvider(new MessageLazyContentProvider(tableViewer));
+
+      td.queueMessages = new ArrayList<>();
+      tableViewer.setInput(td.queueMessages);
+
+      windowContext.remove(Constants.CURRENT_TAB_JTBDESTINATION);
+      windowContext.remove(Constants.CURRENT_TAB_JTBSESSION);
+      windowContext.remove(Constants.CURRENT_COLUMNSSET);
+
+      td.tabItem = tabItemSearch;
+      td.tableViewer = tableViewer;
+      td.tableViewerColumns = cols;
+      td.columnsSet = cs;
+
+      tabItemSearch.setData(td);
+      mapTabData.put(tabItemName, td);
+
+      return td;
+   }
+
+   private void updateSearchTab(TabData td) {
+      SearchQueuesJob job = td.searchQueuesJob;
+
+      CTabItem tabItem = td.tabItem;
+      if ((tabItem != null) && (!tabItem.isDisposed())) {
+         int nbHits = td.queueMessages.size();
+         if (job == null) {
+            tabItem.setText("Search (" + nbHits + ")");
+         } else {
+            StringBuilder sb = new StringBuilder(64);
+            sb.append("Search (").append(nbHits).append(") ");
+            sb.append(job.getNbQueuesSearched()).append("/").append(job.getNbQueues()).append(" queues..");
+            tabItem.setText(sb.toString());
+         }
+         if ((job != null) && (job.getNbQueuesInError() > 0)) {
+            tabItem.setToolTipText(job.getNbQueuesInError() + " queue(s) could not be searched. See logs for details");
+         }
+      }
+
+      Button btnSearch = td.refreshButton;
+      if ((btnSearch == null) || (btnSearch.isDisposed())) {
+         return;
+      }
+      if (job == null) {
+         btnSearch.setImage(SWTResourceManager.getImage(this.getClass(), "icons/magnifier.png"));
+         btnSearch.setToolTipText(SEARCH_QUEUES_TOOLTIP);
+      } else {
+         btnSearch.setImage(SWTResourceManager.getImage(this.getClass(), "icons/cancel.png"));
+         btnSearch.setToolTipText("Cancel search");
+      }
+   }
+
    // --------
    // Helpers
    // --------
 
+   private String computeSearchCTabItemName(JTBSession jtbSession) {
+      return "R:" + jtbSession.getName();
+   }
+
    private String computeCTabItemName(JTBDestination jtbDestination) {
       if (jtbDestination.isJTBQueue()) {
          return "Q:" + jtbDestination.getName();
@@ -1657,10 +2077,11 @@ public class JTBSessionContentViewPart {
          tvcList.add(col);
          col.setLabelProvider(new ColumnLabelProvider() {
 
+            // Rows are materialized on demand in virtual tables: compute the number from the position of the row
             @Override
-            public String getText(Object element) {
-               nbMessage++;
-               return nbMessage.toString();
+            public void update(ViewerCell cell) {
+               TableItem item = (TableItem) cell.getItem();
+               cell.setText(String.valueOf(item.getParent().indexOf(item) + 1));
             }
          });
       }
@@ -1675,7 +2096,7 @@ public class JTBSessionContentViewPart {
                @Override
                public String getText(Object element) {
                   JTBMessage jtbMessage = (JTBMessage) element;
-                  Object o = h.getColumnSystemValue(jtbMessage.getJmsMessage(), false);
+                  Object o = h.getColumnSystemValue(jtbMessage, false);
                   return o == null ? "" : o.toString();
                }
             });
@@ -1689,7 +2110,7 @@ public class JTBSessionContentViewPart {
                @Override
                public String getText(Object element) {
                   JTBMessage jtbMessage = (JTBMessage) element;
-                  return csManager.getColumnUserPropertyValue(jtbMessage.getJmsMessage(), c);
+                  return csManager.getColumnUserPropertyValue(jtbMessage, c);
                }
             });
 
@@ -1732,7 +2153,6 @@ public class JTBSessionContentViewPart {
       for (TableViewerColumn c : td.tableViewerColumns) {
          c.getColumn().dispose();
       }
-      nbMessage = 0;
       td.columnsSet = cs;
       td.tableViewerColumns = createColumns(td.tableViewer, true, td.columnsSet);
       td.tableViewer.refresh();
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2015 Denis Forveille titou10.titou10@gmail.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.titou10.jtb.ui.part.content;
+
+import java.util.Collection;
+
+import org.eclipse.jface.viewers.ILazyContentProvider;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.Viewer;
+
+/**
+ * Lazy content provider for the messages browsers (SWT.VIRTUAL tables)
+ *
+ * Only the rows that are visible are materialized by SWT, and the column values are only computed for those rows
+ *
+ * The input is a Collection of JTBMessage (a List for queues, a Deque for topics). A snapshot of the input is taken each time
+ * the viewer is notified that the input has changed
+ *
+ * @author Denis Forveille
+ *
+ */
+final class MessageLazyContentProvider implements ILazyContentProvider {
+
+   private static final Object[] EMPTY = new Object[0];
+
+   private final TableViewer     tableViewer;
+
+   private Collection<?>         input;
+   private Object[]              elements = EMPTY;
+
+   MessageLazyContentProvider(TableViewer tableViewer) {
+      this.tableViewer = tableViewer;
+   }
+
+   // -----------------
+   // Content Provider
+   // -----------------
+
+   @Override
+   public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
+      this.input = (Collection<?>) newInput;
+      this.elements = input == null ? EMPTY : input.toArray();
+      tableViewer.setItemCount(elements.length);
+   }
+
+   @Override
+   public void updateElement(int index) {
+      if (index < elements.length) {
+         tableViewer.replace(elements[index], index);
+      }
+   }
+
+   @Override
+   public void dispose() {
+      input = null;
+      elements = EMPTY;
+   }
+
+   // -----------------
+   // Helpers
+   // -----------------
+
+   // New elements have been added at the end of the input: the existing rows are kept as is
+   void inputAppended() {
+      elements = input == null ? EMPTY : input.toArray();
+      tableViewer.setItemCount(elements.length);
+   }
+
+   // The content of the input has changed: all rows are cleared and the visible ones will be requested again
+   void inputRefreshed() {
+      elements = input == null ? EMPTY : input.toArray();
+      tableViewer.setItemCount(elements.length);
+      tableViewer.refresh();
+   }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2015 Denis Forveille titou10.titou10@gmail.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.titou10.jtb.ui.part.content;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.e4.ui.di.UISynchronize;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.titou10.jtb.jms.model.JTBConnection;
+import org.titou10.jtb.jms.model.JTBMessage;
+import org.titou10.jtb.jms.model.JTBQueue;
+import org.titou10.jtb.jms.model.QueueBrowserCursor;
+import org.titou10.jtb.util.Constants;
+
+/**
+ * Job that searches messages in many queues of a session
+ *
+ * The queues are browsed by a bounded number of workers, with the same payload and selectors filters as the message browser.
+ * Each worker browses one queue at a time with its own cursor. The search stops as soon as the max number of hits is reached or
+ * the job is canceled. Hits are published to the result table as they arrive
+ *
+ * @author Denis Forveille
+ *
+ */
+final class SearchQueuesJob extends Job {
+
+   private static final Logger       log                 = LoggerFactory.getLogger(SearchQueuesJob.class);
+
+   private static final int          PAGE_SIZE           = 50;
+   private static final long         PUBLISH_INTERVAL_MS = 250L;
+
+   private final UISynchronize       sync;
+
+   private final TabData             td;
+   private final JTBConnection       jtbConnection;
+   private final List<JTBQueue>      jtbQueues;
+   private final String              payloadSearchText;
+   private final String              selectorsSearchText;
+   private final int                 parallelism;
+   private final int                 maxHits;
+
+   // Called from the UI thread each time the TabData has been updated
+   private final Consumer<TabData>   tabUpdater;
+
+   private final Queue<JTBMessage>   hits                = new ConcurrentLinkedQueue<>();
+   private final AtomicInteger       remainingHits       = new AtomicInteger();
+   private final AtomicInteger       nbQueuesSearched    = new AtomicInteger();
+   private final AtomicInteger       nbQueuesInError     = new AtomicInteger();
+
+   // ------------
+   // Constructors
+   // ------------
+
+   SearchQueuesJob(UISynchronize sync,
+                   String name,
+                   TabData td,
+                   JTBConnection jtbConnection,
+                   Collection<JTBQueue> jtbQueues,
+                   String payloadSearchText,
+                   String selectorsSearchText,
+                   int parallelism,
+                   int maxHits,
+                   Consumer<TabData> tabUpdater) {
+      super(name);
+      this.setSystem(true);
+      this.sync = sync;
+
+      this.td = td;
+      this.jtbConnection = jtbConnection;
+      this.jtbQueues = new ArrayList<>(jtbQueues);
+      this.payloadSearchText = payloadSearchText;
+      this.selectorsSearchText = selectorsSearchText;
+      this.parallelism = Math.max(1, parallelism);
+      this.maxHits = maxHits == 0 ? Integer.MAX_VALUE : maxHits;
+      this.tabUpdater = tabUpdater;
+   }
+
+   // ------------------
+   // Business Interface
+   // ------------------
+
+   @Override
+   protected IStatus run(IProgressMonitor monitor) {
+
+      final int nbQueues = jtbQueues.size();
+      final int nbWorkers = Math.max(1, Math.min(parallelism, nbQueues));
+      log.debug("Searching {} queues with {} workers. payloadSearchText='{}' selectorsSearchText='{}'",
+                nbQueues,
+                nbWorkers,
+                payloadSearchText,
+                selectorsSearchText);
+
+      monitor.beginTask(getName(), nbQueues);
+
+      remainingHits.set(maxHits);
+      final Queue<JTBQueue> toProcess = new ConcurrentLinkedQueue<>(jtbQueues);
+
+      AtomicInteger threadNumber = new AtomicInteger(0);
+      ExecutorService executor = Executors.newFixedThreadPool(nbWorkers, r -> {
+         Thread t = new Thread(r, "JTB-SearchQueues-" + threadNumber.incrementAndGet());
+         t.setDaemon(true);
+         return t;
+      });
+      for (int i = 0; i < nbWorkers; i++) {
+         executor.execute(() -> search(monitor, toProcess));
+      }
+      executor.shutdown();
+
+      // Publish the hits to the table while the workers are running
+      try {
+         while (!executor.awaitTermination(PUBLISH_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+            publish();
+         }
+      } catch (InterruptedException e) {
+         executor.shutdownNow();
+         Thread.currentThread().interrupt();
+      }
+      publish();
+
+      log.debug("Search completed. {} hits in {}/{} queues. {} in error",
+                maxHits - Math.max(0, remainingHits.get()),
+                nbQueuesSearched.get(),
+                nbQueues,
+                nbQueuesInError.get());
+
+      // Last update of the tab
+      sync.asyncExec(() -> {
+         if (td.searchQueuesJob == this) {
+            td.searchQueuesJob = null;
+            tabUpdater.accept(td);
+         }
+      });
+
+      monitor.done();
+      return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+   }
+
+   @Override
+   protected void canceling() {
+      log.debug("Canceling '{}'", getName());
+      super.canceling();
+   }
+
+   @Override
+   public boolean belongsTo(Object family) {
+      if (family instanceof String) {
+         return Constants.JTB_JOBS_FAMILY.equals(family);
+      }
+      return false;
+   }
+
+   // ---------------
+   // Getters/Setters
+   // ---------------
+
+   int getNbQueues() {
+      return jtbQueues.size();
+   }
+
+   int getNbQueuesSearched() {
+      return nbQueuesSearched.get();
+   }
+
+   int getNbQueuesInError() {
+      return nbQueuesInError.get();
+   }
+
+   // -------
+   // Helpers
+   // -------
+
+   // Worker: browse queues until there is no more to browse, or enough hits have been found
+   private void search(IProgressMonitor monitor, Queue<JTBQueue> toProcess) {
+      JTBQueue jtbQueue;
+      while ((!isDone(monitor)) && ((jtbQueue = toProcess.poll()) != null)) {
+
+         try (QueueBrowserCursor cursor = jtbConnection.openQueueBrowserCursor(jtbQueue,
+                                                                                0,
+                                                                                payloadSearchText,
+                                                                                selectorsSearchText);) {
+            while ((!isDone(monitor)) && (cursor.hasMore())) {
+               for (JTBMessage jtbMessage : cursor.nextPage(PAGE_SIZE)) {
+                  // Reserve one hit before keeping the message
+                  if (remainingHits.getAndDecrement() <= 0) {
+                     break;
+                  }
+                  hits.add(jtbMessage);
+               }
+            }
+         } catch (Exception e) {
+            log.warn("Exception occurred when searching messages in {}. Ignoring: {}", jtbQueue, e.getMessage());
+            nbQueuesInError.incrementAndGet();
+         }
+
+         nbQueuesSearched.incrementAndGet();
+         monitor.worked(1);
+      }
+   }
+
+   private boolean isDone(IProgressMonitor monitor) {
+      return monitor.isCanceled() || (remainingHits.get() <= 0);
+   }
+
+   // Append the hits found since the last call to the table
+   private void publish() {
+      final List<JTBMessage> batch = new ArrayList<>(hits.size());
+      JTBMessage jtbMessage;
+      while ((jtbMessage = hits.poll()) != null) {
+         batch.add(jtbMessage);
+      }
+
+      sync.asyncExec(() -> {
+         if ((td.searchQueuesJob != this) || (td.tableViewer.getControl().isDisposed())) {
+            return;
+         }
+         if (!batch.isEmpty()) {
+            td.queueMessages.addAll(batch);
+            ((MessageLazyContentProvider) td.tableViewer.getContentProvider()).inputAppended();
+         }
+         tabUpdater.accept(td);
+      });
+   }
+}
@@ -21,15 +21,19 @@ import java.util.List;
 
 import javax.jms.MessageConsumer;
 
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.jface.viewers.TableViewerColumn;
 import org.eclipse.swt.custom.CTabItem;
+import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Combo;
 import org.eclipse.swt.widgets.Text;
 import org.titou10.jtb.cs.gen.ColumnsSet;
 import org.titou10.jtb.jms.model.JTBDestination;
 import org.titou10.jtb.jms.model.JTBMessage;
 import org.titou10.jtb.jms.model.JTBSession;
+import org.titou10.jtb.jms.model.MessageCaptureFile;
+import org.titou10.jtb.jms.model.QueueBrowserCursor;
 
 /**
  * Hold all information to the destination shown in a tab in the JTBSEssionContentViewPart
@@ -41,7 +45,8 @@ final class TabData {
 
    enum TabDataType {
                      JTBDESTINATION,
-                     JTBSESSION
+                     JTBSESSION,
+                     SEARCH
    }
 
    TabDataType             type;
@@ -63,14 +68,30 @@ final class TabData {
 
    CollectQueueDepthJob    collectQueueDepthJob;
 
+   Button                  refreshButton;
+   Job                     queueBrowseJob;
+   int                     queueBrowseGeneration;
+   String                  queuePayloadFilter;
+   String                  queueSelectorsFilter;
+
+   QueueBrowserCursor      queueBrowserCursor;
+   List<JTBMessage>        queueMessages;
+   Integer                 queueDepth;
+   boolean                 queueFiltered;
+   boolean                 queueLimitReached;
+
    // Topic specifics
    Deque<JTBMessage>       topicMessages;
    int                     maxMessages;
    MessageConsumer         topicMessageConsumer;
+   MessageCaptureFile      topicCaptureFile;
 
    // Synthetic View Specific
    Text                    filterText;
 
+   // Search Results Specific
+   SearchQueuesJob         searchQueuesJob;
+
    // Message selected
    JTBMessage              selectedJTBMessage;
 
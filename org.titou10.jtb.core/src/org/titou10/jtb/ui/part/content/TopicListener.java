@@ -17,6 +17,9 @@
 package org.titou10.jtb.ui.part.content;
 
 import java.util.Deque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import javax.jms.JMSException;
 import javax.jms.Message;
@@ -25,36 +28,56 @@ import javax.jms.MessageListener;
 import org.eclipse.e4.ui.di.UISynchronize;
 import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.swt.custom.CTabItem;
+import org.eclipse.swt.widgets.Table;
 import org.eclipse.wb.swt.SWTResourceManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.titou10.jtb.jms.model.JTBMessage;
 import org.titou10.jtb.jms.model.JTBTopic;
+import org.titou10.jtb.jms.model.MessageCaptureFile;
 
 /**
  * MessageListener to capture messages published to a topic
  * 
+ * Messages received are put in a ring buffer by the JMS thread. The UI thread drains the buffer at most once every
+ * FLUSH_INTERVAL_MS ms, adds the messages to the list of captured messages, trims it to "maxSize" and refreshes the table once.
+ * Messages received when the buffer is full are dropped and counted
+ * 
+ * If a MessageCaptureFile is provided, the messages are stored in it as soon as they are received
+ * 
  * @author Denis Forveille
  *
  */
 final class TopicListener implements MessageListener {
 
-   private static final Logger     log = LoggerFactory.getLogger(TopicListener.class);
+   private static final Logger      log               = LoggerFactory.getLogger(TopicListener.class);
+
+   private static final int         BUFFER_CAPACITY   = 8192;
+   private static final int         FLUSH_INTERVAL_MS = 100;
+
+   private UISynchronize            sync;
 
-   private UISynchronize           sync;
+   private final JTBTopic           jtbTopic;
+   private final Deque<JTBMessage>  messages;
+   private final TableViewer        tableViewer;
+   private final CTabItem           tabItemTopic;
+   private final int                maxSize;
+   private final MessageCaptureFile captureFile;
 
-   private final JTBTopic          jtbTopic;
-   private final Deque<JTBMessage> messages;
-   private final TableViewer       tableViewer;
-   private final CTabItem          tabItemTopic;
-   private final int               maxSize;
+   private final RingBuffer         buffer            = new RingBuffer(BUFFER_CAPACITY);
+   private final AtomicBoolean      flushScheduled    = new AtomicBoolean(false);
+   private final AtomicLong         nbDropped         = new AtomicLong(0);
+
+   // Only accessed from the UI thread
+   private long                     nbDroppedShown    = 0;
 
    public TopicListener(UISynchronize sync,
                         JTBTopic jtbTopic,
                         Deque<JTBMessage> messages,
                         TableViewer tableViewer,
                         CTabItem tabItemTopic,
-                        int maxSize) {
+                        int maxSize,
+                        MessageCaptureFile captureFile) {
       this.sync = sync;
 
       this.messages = messages;
@@ -62,30 +85,133 @@ final class TopicListener implements MessageListener {
       this.tableViewer = tableViewer;
       this.tabItemTopic = tabItemTopic;
       this.maxSize = maxSize;
+      this.captureFile = captureFile;
    };
 
    @Override
    public void onMessage(final Message jmsMessage) {
-      sync.asyncExec(new Runnable() {
-         @Override
-         public void run() {
-            try {
-               log.debug("{} : Received message with id '{}'", jtbTopic, jmsMessage.getJMSMessageID());
-               messages.addFirst(new JTBMessage(jtbTopic, jmsMessage));
-               if (messages.size() > maxSize) {
-                  messages.pollLast();
-                  tabItemTopic.setImage(SWTResourceManager.getImage(this.getClass(), "icons/topics/warning-16.png"));
-               }
-            } catch (JMSException e) {
-               // TODO : Notify end user?
-               log.error("Exception occurred when receiving a message", e);
+      try {
+         log.debug("{} : Received message with id '{}'", jtbTopic, jmsMessage.getJMSMessageID());
+         JTBMessage jtbMessage = new JTBMessage(jtbTopic, jmsMessage);
+         if (captureFile != null) {
+            // Only keep an index entry in memory, the message is read from the file when displayed
+            jtbMessage = captureFile.capture(jtbMessage);
+         }
+         if (!buffer.offer(jtbMessage)) {
+            nbDropped.incrementAndGet();
+         }
+      } catch (JMSException e) {
+         // TODO : Notify end user?
+         log.error("Exception occurred when receiving a message", e);
+      }
+
+      scheduleFlush();
+   }
+
+   // -------
+   // Helpers
+   // -------
+
+   // Ask the UI thread to flush the buffer in FLUSH_INTERVAL_MS ms, if not already asked
+   private void scheduleFlush() {
+      if (flushScheduled.compareAndSet(false, true)) {
+         sync.asyncExec(() -> {
+            Table table = tableViewer.getTable();
+            if (table.isDisposed()) {
+               return;
             }
+            table.getDisplay().timerExec(FLUSH_INTERVAL_MS, this::flush);
+         });
+      }
+   }
+
+   // Called from the UI thread
+   private void flush() {
+      flushScheduled.set(false);
+
+      if ((tableViewer.getTable().isDisposed()) || (tabItemTopic.isDisposed())) {
+         return;
+      }
+
+      int nb = 0;
+      JTBMessage jtbMessage;
+      while ((jtbMessage = buffer.poll()) != null) {
+         messages.addFirst(jtbMessage);
+         nb++;
+      }
 
-            // Send event to refresh list of messages
-            if (!(tableViewer.getTable().isDisposed())) {
-               tableViewer.refresh();
+      if (nb > 0) {
+         if ((maxSize > 0) && (messages.size() > maxSize)) {
+            while (messages.size() > maxSize) {
+               messages.pollLast();
             }
+            tabItemTopic.setImage(SWTResourceManager.getImage(this.getClass(), "icons/topics/warning-16.png"));
          }
-      });
+
+         // Send event to refresh list of messages
+         ((MessageLazyContentProvider) tableViewer.getContentProvider()).inputRefreshed();
+      }
+
+      long dropped = nbDropped.get();
+      if (dropped != nbDroppedShown) {
+         nbDroppedShown = dropped;
+         log.warn("{} : {} messages dropped so far. The UI can not keep up with the topic", jtbTopic, dropped);
+         tabItemTopic.setText(jtbTopic.getName() + " (" + dropped + " dropped)");
+         tabItemTopic.setToolTipText(dropped + " messages received have been dropped as the display could not keep up with them");
+         tabItemTopic.setImage(SWTResourceManager.getImage(this.getClass(), "icons/topics/warning-16.png"));
+      }
+
+      // Messages received during the flush
+      if (!buffer.isEmpty()) {
+         scheduleFlush();
+      }
+   }
+
+   // --------------
+   // Helper Classes
+   // --------------
+
+   // Bounded lock-free ring buffer. Many threads may offer, only one thread (the UI thread) polls
+   private static final class RingBuffer {
+      private final AtomicReferenceArray<JTBMessage> slots;
+      private final int                              mask;
+      private final AtomicLong                       head = new AtomicLong(0);
+      private final AtomicLong                       tail = new AtomicLong(0);
+
+      private RingBuffer(int capacity) {
+         // Capacity must be a power of 2
+         this.slots = new AtomicReferenceArray<>(capacity);
+         this.mask = capacity - 1;
+      }
+
+      private boolean offer(JTBMessage jtbMessage) {
+         while (true) {
+            long t = tail.get();
+            if (t - head.get() >= slots.length()) {
+               return false;
+            }
+            if (tail.compareAndSet(t, t + 1)) {
+               slots.lazySet((int) (t & mask), jtbMessage);
+               return true;
+            }
+         }
+      }
+
+      // Returns null if the buffer is empty, or if the next message has been reserved but not yet published
+      private JTBMessage poll() {
+         long h = head.get();
+         int index = (int) (h & mask);
+         JTBMessage jtbMessage = slots.get(index);
+         if (jtbMessage == null) {
+            return null;
+         }
+         slots.lazySet(index, null);
+         head.lazySet(h + 1);
+         return jtbMessage;
+      }
+
+      private boolean isEmpty() {
+         return head.get() == tail.get();
+      }
    }
 };
@@ -76,6 +76,8 @@ public final class Constants {
    public static final String   PREFERENCE_FILE_NAME                       = "jmstoolbox.properties";
    public static final String   PREF_AUTO_REFRESH_DELAY                    = "auto.refresh.delay";
    public static final int      PREF_AUTO_REFRESH_DELAY_DEFAULT            = 30;
+   public static final String   PREF_AUTO_REFRESH_INCREMENTAL              = "auto.refresh.incremental";
+   public static final boolean  PREF_AUTO_REFRESH_INCREMENTAL_DEFAULT      = true;
    public static final String   PREF_MAX_MESSAGES                          = "max.messages";
    public static final int      PREF_MAX_MESSAGES_DEFAULT                  = 200;
    public static final String   PREF_SHOW_SYSTEM_OBJECTS                   = "show.system.objects";
@@ -101,6 +103,14 @@ public final class Constants {
    public static final String   PREF_EDIT_MESSAGE_DND                      = "message.browser.edit.message.dnd";
    public static final boolean  PREF_EDIT_MESSAGE_DND_DEFAULT              = false;
    public static final String   PREF_COLUMNSSET_DEFAULT_NAME               = "columnsset.default.name";
+   public static final String   PREF_Q_DEPTH_PARALLELISM                   = "queue.depth.parallelism";
+   public static final int      PREF_Q_DEPTH_PARALLELISM_DEFAULT           = 4;
+   public static final String   PREF_DRAIN_PARALLELISM                     = "queue.drain.parallelism";
+   public static final int      PREF_DRAIN_PARALLELISM_DEFAULT             = 4;
+   public static final String   PREF_TOPIC_CAPTURE_FILE                    = "topic.capture.file";
+   public static final boolean  PREF_TOPIC_CAPTURE_FILE_DEFAULT            = false;
+   public static final String   PREF_PAYLOAD_SEARCH_CHARSET                = "message.browser.payload.search.charset";
+   public static final String   PREF_PAYLOAD_SEARCH_CHARSET_DEFAULT        = "UTF-8";
 
    public static final String   PREF_COLUMNSSET_DEFAULT_DEST_PREFIX        = "columnsset.default.dest.prefix.";
    public static final String   PREF_Q_DEPTH_FILTER_KEY_PREFIX             = "jtb.queue.depth.filter.";
@@ -140,6 +150,7 @@ public final class Constants {
    public static final String   EVENT_JTBMESSAGE_PART_REFRESH              = EVENT_BASE + "jtbmessage_refresh";
    public static final String   EVENT_REFRESH_SESSION_SYNTHETIC_VIEW       = EVENT_BASE + "refresh_session_synthetic_view";
    public static final String   EVENT_REFRESH_QUEUE_MESSAGES               = EVENT_BASE + "refresh_queue_messages";
+   public static final String   EVENT_AUTO_REFRESH_QUEUE_MESSAGES          = EVENT_BASE + "auto_refresh_queue_messages";
    public static final String   EVENT_REFRESH_TOPIC_SHOW_MESSAGES          = EVENT_BASE + "refresh_topic_show_messages";
    public static final String   EVENT_TOPIC_CLEAR_MESSAGES                 = EVENT_BASE + "topic_clear_messages";
    public static final String   EVENT_REFRESH_EXECUTION_LOG                = EVENT_BASE + "refresh_execution_log";
@@ -251,6 +262,7 @@ public final class Constants {
 
    public static final String   VISUALIZER_PARAM_NAME                      = "visualizer.param.name";
    public static final String   VISUALIZER_PARAM_JTBMESSAGE                = "visualizer.param.jtbmessage";
+   public static final String   VISUALIZER_PARAM_JTBMESSAGES               = "visualizer.param.jtbmessages";
    public static final String   VISUALIZER_MENU_ICON                       = BASE_CORE_PLUGIN + "/icons/visualizers/camera.png";
    public static final String   VISUALIZER_MENU_URI                        = BASE_CORE_BUNDLE + "/"
                                                                              + VisualizerShowPayloadAsHandler.class
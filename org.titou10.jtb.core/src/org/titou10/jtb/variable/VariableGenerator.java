@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2015 Denis Forveille titou10.titou10@gmail.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.titou10.jtb.variable;
+
+import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.titou10.jtb.variable.gen.Variable;
+import org.titou10.jtb.variable.gen.VariableDateTimeKind;
+import org.titou10.jtb.variable.gen.VariableDateTimeOffsetTU;
+
+/**
+ *
+ * Generate the values of a variable
+ *
+ * Everything that does not change from one value to the next is computed once, when the generator is built: date formatter,
+ * bounds, list of values, table of characters. A generator is immutable and can be called by many threads at the same time. The
+ * random values come from ThreadLocalRandom.
+ *
+ * Dates are formatted with a DateTimeFormatter when the pattern gives the same result as with a SimpleDateFormat on sample dates,
+ * and with a SimpleDateFormat per thread otherwise
+ *
+ * @author Denis Forveille
+ *
+ */
+final class VariableGenerator {
+
+   private static final Logger                 log                  = LoggerFactory.getLogger(VariableGenerator.class);
+
+   private static final String                 CHARS_1              = "abcdefghijklmnopqrstuvwxyz";
+   private static final String                 CHARS_2              = CHARS_1.toUpperCase();
+   private static final String                 CHARS_3              = "0123456789";
+
+   private static final char[]                 CHARS_ALPHABETIC     = (CHARS_1 + CHARS_2).toCharArray();
+   private static final char[]                 CHARS_ALPHANUMERIC   = (CHARS_1 + CHARS_2 + CHARS_3).toCharArray();
+   private static final char[]                 CHARS_NUMERIC        = CHARS_3.toCharArray();
+
+   // Pattern letters that may be formatted the same way by SimpleDateFormat and DateTimeFormatter, up to 4 letters. "S" as "SSS"
+   private static final String                 SAME_PATTERN_LETTERS = "GyMdHhKkmsaE";
+   private static final int                    MAX_PATTERN_LETTERS  = 4;
+   // 2009-02-03T04:05:06.007Z and 2021-11-28T16:45:59.123Z: AM/PM, one and two digit fields, two days of the week
+   private static final long[]                 SAMPLE_DATES         = { 1233633906007L, 1638117959123L };
+
+   private final Variable                      variable;
+
+   // DATE
+   private final DateTimeFormatter             formatter;
+   private final ThreadLocal<SimpleDateFormat> sdf;
+   private final long                          minDate;
+   private final long                          rangeDate;
+   private final ChronoUnit                    offsetUnit;
+
+   // INT
+   private final int                           rangeInt;
+
+   // LIST
+   private final String[]                      values;
+
+   // STRING
+   private final char[]                        chars;
+
+   // ------------------------
+   // Constructor
+   // ------------------------
+
+   VariableGenerator(Variable variable) {
+      this.variable = variable;
+
+      DateTimeFormatter dtf = null;
+      ThreadLocal<SimpleDateFormat> tlSdf = null;
+      long min = 0;
+      long range = 0;
+      ChronoUnit unit = null;
+      int rInt = 0;
+      String[] v = null;
+      char[] c = null;
+
+      switch (variable.getKind()) {
+         case DATE:
+            String pattern = variable.getDateTimePattern();
+            if (isSamePattern(pattern)) {
+               dtf = DateTimeFormatter.ofPattern(pattern).withZone(ZoneId.systemDefault());
+            } else {
+               log.debug("Pattern '{}' of variable '{}' is formatted with SimpleDateFormat", pattern, variable.getName());
+               tlSdf = ThreadLocal.withInitial(() -> new SimpleDateFormat(pattern));
+            }
+            if (variable.getDateTimeKind() == VariableDateTimeKind.RANGE) {
+               min = variable.getDateTimeMin().toGregorianCalendar().getTime().getTime();
+               range = variable.getDateTimeMax().toGregorianCalendar().getTime().getTime() - min;
+            }
+            if (variable.getDateTimeKind() == VariableDateTimeKind.OFFSET) {
+               unit = toChronoUnit(variable.getDateTimeOffsetTU());
+            }
+            break;
+
+         case INT:
+            rInt = variable.getMax() - variable.getMin();
+            break;
+
+         case LIST:
+            v = variable.getListValue().toArray(new String[variable.getListValue().size()]);
+            break;
+
+         case STRING:
+            switch (variable.getStringKind()) {
+               case ALPHABETIC:
+                  c = CHARS_ALPHABETIC;
+                  break;
+               case ALPHANUMERIC:
+                  c = CHARS_ALPHANUMERIC;
+                  break;
+               case NUMERIC:
+                  c = CHARS_NUMERIC;
+                  break;
+               case CUSTOM:
+                  c = variable.getStringChars().toCharArray();
+                  break;
+            }
+            break;
+      }
+
+      this.formatter = dtf;
+      this.sdf = tlSdf;
+      this.minDate = min;
+      this.rangeDate = range;
+      this.offsetUnit = unit;
+      this.rangeInt = rInt;
+      this.values = v;
+      this.chars = c;
+   }
+
+   // ------------------------
+   // Business Interface
+   // ------------------------
+
+   String generate() {
+      ThreadLocalRandom r = ThreadLocalRandom.current();
+
+      switch (variable.getKind()) {
+         case DATE:
+            switch (variable.getDateTimeKind()) {
+               case STANDARD:
+                  return formatDate(System.currentTimeMillis());
+
+               case RANGE:
+                  return formatDate(r.nextLong(rangeDate) + minDate);
+
+               case OFFSET:
+                  ZonedDateTime zdt = ZonedDateTime.now().plus(variable.getDateTimeOffset(), offsetUnit);
+                  return formatDate(zdt.toInstant().toEpochMilli());
+            }
+            break;
+
+         case INT:
+            return String.valueOf(r.nextInt(rangeInt) + variable.getMin());
+
+         case LIST:
+            return values[r.nextInt(values.length)];
+
+         case STRING:
+            char[] text = new char[variable.getStringLength()];
+            for (int i = 0; i < text.length; i++) {
+               text[i] = chars[r.nextInt(chars.length)];
+            }
+            return new String(text);
+      }
+
+      // Impossible
+      return null;
+   }
+
+   Variable getVariable() {
+      return variable;
+   }
+
+   // -------
+   // Helpers
+   // -------
+
+   private static ChronoUnit toChronoUnit(VariableDateTimeOffsetTU offsetTU) {
+      switch (offsetTU) {
+         case DAYS:
+            return ChronoUnit.DAYS;
+         case HOURS:
+            return ChronoUnit.HOURS;
+         case MILLISECONDS:
+            return ChronoUnit.MILLIS;
+         case MINUTES:
+            return ChronoUnit.MINUTES;
+         case MONTHS:
+            return ChronoUnit.MONTHS;
+         case SECONDS:
+            return ChronoUnit.SECONDS;
+         case YEARS:
+         default:
+            return ChronoUnit.YEARS;
+      }
+   }
+
+   private String formatDate(long millis) {
+      if (formatter != null) {
+         return formatter.format(Instant.ofEpochMilli(millis));
+      }
+      return sdf.get().format(new Date(millis));
+   }
+
+   // Return true if the pattern only uses letters formatted the same way by SimpleDateFormat and DateTimeFormatter, and if both
+   // formatters give the same result on the sample dates
+   private static boolean isSamePattern(String pattern) {
+      boolean quoted = false;
+      for (int i = 0; i < pattern.length(); i++) {
+         char ch = pattern.charAt(i);
+         if (ch == '\'') {
+            quoted = !quoted;
+            continue;
+         }
+         if (quoted) {
+            continue;
+         }
+
+         // Optional sections and reserved characters of DateTimeFormatter
+         if ((ch == '[') || (ch == ']') || (ch == '{') || (ch == '}') || (ch == '#')) {
+            return false;
+         }
+         if (!(Character.isLetter(ch))) {
+            continue;
+         }
+
+         int n = 1;
+         while ((i + 1 < pattern.length()) && (pattern.charAt(i + 1) == ch)) {
+            n++;
+            i++;
+         }
+         if (ch == 'S') {
+            if (n != 3) {
+               return false;
+            }
+            continue;
+         }
+         if ((SAME_PATTERN_LETTERS.indexOf(ch) < 0) || ((ch != 'y') && (n > MAX_PATTERN_LETTERS))) {
+            return false;
+         }
+      }
+
+      try {
+         DateTimeFormatter dtf = DateTimeFormatter.ofPattern(pattern).withZone(ZoneId.systemDefault());
+         SimpleDateFormat sdf = new SimpleDateFormat(pattern);
+         for (long sample : SAMPLE_DATES) {
+            if (!dtf.format(Instant.ofEpochMilli(sample)).equals(sdf.format(new Date(sample)))) {
+               return false;
+            }
+         }
+         return true;
+      } catch (IllegalArgumentException | DateTimeException e) {
+         return false;
+      }
+   }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2015 Denis Forveille titou10.titou10@gmail.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.titou10.jtb.variable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * A text containing variables, parsed once to be rendered many times
+ *
+ * The text is split into literal segments and variable slots, written "${name}". A slot is rendered with the value of its
+ * variable, or as it is written when the variable has no value. All the slots of the same variable are rendered with the same
+ * value. The values are inserted as they are, without any interpretation of "$" or "\"
+ *
+ * @author Denis Forveille
+ *
+ */
+public final class VariableTemplate {
+
+   private static final String                     VARIABLE_START      = "${";
+   private static final String                     VARIABLE_END        = "}";
+
+   // Buffers of more than 1M chars are not kept by the threads
+   private static final int                        MAX_REUSED_CAPACITY = 1024 * 1024;
+
+   private static final ThreadLocal<StringBuilder> BUFFER              = ThreadLocal.withInitial(() -> new StringBuilder(1024));
+
+   private final String                            text;
+
+   // literals[i] is the text before slot i. The last literal is the text after the last slot
+   private final String[]                          literals;
+   // Index in "names" of the variable of each slot
+   private final int[]                             slots;
+   // Names of the variables of the slots, each name once
+   private final String[]                          names;
+   private final int                               literalsLength;
+
+   // ------------------------
+   // Constructor
+   // ------------------------
+
+   private VariableTemplate(String text, List<String> literals, List<Integer> slots, List<String> names) {
+      this.text = text;
+      this.literals = literals.toArray(new String[literals.size()]);
+      this.names = names.toArray(new String[names.size()]);
+      this.slots = new int[slots.size()];
+      for (int i = 0; i < this.slots.length; i++) {
+         this.slots[i] = slots.get(i);
+      }
+
+      int length = 0;
+      for (String literal : this.literals) {
+         length += literal.length();
+      }
+      this.literalsLength = length;
+   }
+
+   // ------------------------
+   // Factory
+   // ------------------------
+
+   public static VariableTemplate compile(String text) {
+      List<String> literals = new ArrayList<>();
+      List<Integer> slots = new ArrayList<>();
+      List<String> names = new ArrayList<>();
+
+      if (text == null) {
+         return new VariableTemplate(null, literals, slots, names);
+      }
+
+      int literalStart = 0;
+      int start = text.indexOf(VARIABLE_START);
+      while (start >= 0) {
+         int end = text.indexOf(VARIABLE_END, start + VARIABLE_START.length());
+         if (end < 0) {
+            break;
+         }
+
+         // "${a${b}": only "${b}" is a variable
+         int innerStart = text.lastIndexOf(VARIABLE_START, end);
+         if (innerStart > start) {
+            start = innerStart;
+         }
+
+         String name = text.substring(start + VARIABLE_START.length(), end);
+         int index = names.indexOf(name);
+         if (index < 0) {
+            index = names.size();
+            names.add(name);
+         }
+
+         literals.add(text.substring(literalStart, start));
+         slots.add(index);
+
+         literalStart = end + VARIABLE_END.length();
+         start = text.indexOf(VARIABLE_START, literalStart);
+      }
+      literals.add(text.substring(literalStart));
+
+      return new VariableTemplate(text, literals, slots, names);
+   }
+
+   // ------------------------
+   // Business Interface
+   // ------------------------
+
+   public boolean hasVariables() {
+      return names.length > 0;
+   }
+
+   public int getNbVariables() {
+      return names.length;
+   }
+
+   public String getVariableName(int index) {
+      return names[index];
+   }
+
+   /**
+    * Render the text with the values of the variables. values[i] is the value of the variable getVariableName(i), or null if the
+    * variable has no value
+    */
+   public String render(String[] values) {
+      if (names.length == 0) {
+         return text;
+      }
+
+      int length = literalsLength;
+      for (int i = 0; i < slots.length; i++) {
+         String value = values[slots[i]];
+         length += value == null ? names[slots[i]].length() + VARIABLE_START.length() + VARIABLE_END.length() : value.length();
+      }
+
+      StringBuilder sb = BUFFER.get();
+      sb.setLength(0);
+      sb.ensureCapacity(length);
+
+      for (int i = 0; i < slots.length; i++) {
+         sb.append(literals[i]);
+         String value = values[slots[i]];
+         if (value == null) {
+            sb.append(VARIABLE_START).append(names[slots[i]]).append(VARIABLE_END);
+         } else {
+            sb.append(value);
+         }
+      }
+      sb.append(literals[slots.length]);
+
+      String res = sb.toString();
+      if (sb.capacity() > MAX_REUSED_CAPACITY) {
+         BUFFER.remove();
+      } else {
+         sb.setLength(0);
+      }
+      return res;
+   }
+
+   // ------------------------
+   // Standard Getters
+   // ------------------------
+
+   public String getText() {
+      return text;
+   }
+
+}
@@ -27,12 +27,10 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Random;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
@@ -70,36 +68,27 @@ import org.titou10.jtb.variable.gen.Variables;
 @Singleton
 public class VariablesManager {
 
-   private static final Logger            log                    = LoggerFactory.getLogger(VariablesManager.class);
+   private static final Logger                     log                 = LoggerFactory.getLogger(VariablesManager.class);
 
-   private static final String            ENC                    = "UTF-8";
-   private static final String            EMPTY_VARIABLE_FILE    = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><variables></variables>";
+   private static final String                     ENC                 = "UTF-8";
+   private static final String                     EMPTY_VARIABLE_FILE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><variables></variables>";
 
-   private static final String            CHARS_1                = "abcdefghijklmnopqrstuvwxyz";
-   private static final String            CHARS_2                = CHARS_1.toUpperCase();
-   private static final String            CHARS_3                = "0123456789";
+   private static final int                        INT_MIN             = 0;
+   private static final int                        INT_MAX             = 9999;
 
-   private static final String            CHARS_ALPHABETIC       = CHARS_1 + CHARS_2;
-   private static final String            CHARS_ALPHANUMERIC     = CHARS_ALPHABETIC + CHARS_3;
-   private static final String            CHARS_NUMERIC          = CHARS_3;
-
-   private static final int               CHARS_ALPHABETIC_LEN   = CHARS_ALPHABETIC.length();
-   private static final int               CHARS_ALPHANUMERIC_LEN = CHARS_ALPHANUMERIC.length();
-   private static final int               CHARS_NUMERIC_LEN      = CHARS_NUMERIC.length();
-
-   private static final int               INT_MIN                = 0;
-   private static final int               INT_MAX                = 9999;
-
-   public static final VariableComparator VARIABLE_COMPARATOR    = new VariableComparator();
+   public static final VariableComparator          VARIABLE_COMPARATOR = new VariableComparator();
 
    @Inject
-   private ConfigManager                  cm;
+   private ConfigManager                           cm;
+
+   private JAXBContext                             jcVariables;
+   private IFile                                   variablesIFile;
+   private Variables                               variablesDef;
 
-   private JAXBContext                    jcVariables;
-   private IFile                          variablesIFile;
-   private Variables                      variablesDef;
+   private List<Variable>                          variables;
 
-   private List<Variable>                 variables;
+   // Generators of the variables by name, rebuilt each time the variables are reloaded or saved
+   private volatile Map<String, VariableGenerator> generators          = Collections.emptyMap();
 
    @PostConstruct
    private void initialize() throws Exception {
@@ -169,6 +158,9 @@ public class VariablesManager {
          variablesDef.getVariable().add(v);
       }
       variablesWriteFile();
+
+      // The variables may have been changed in the list
+      buildVariablesIndex();
    }
 
    public void reloadConfig() {
@@ -177,6 +169,8 @@ public class VariablesManager {
       variables.addAll(buildSystemVariables());
 
       Collections.sort(variables, VARIABLE_COMPARATOR);
+
+      buildVariablesIndex();
    }
 
    public List<Variable> getVariables() {
@@ -187,130 +181,65 @@ public class VariablesManager {
    // Variables Helper
    // ---------------------------
 
-   public String replaceDataFileVariables(Map<String, String> dataFileVariables, String originalText) {
+   // Replace the variables with a value in "values" (data file or global variables). Other variables are left as they are
+   public String replaceVariables(Map<String, String> values, String originalText) {
       if (Utils.isEmpty(originalText)) {
          return originalText;
       }
 
-      String res = originalText;
-
-      for (Entry<String, String> e : dataFileVariables.entrySet()) {
-         String v = buildVariableReplaceName(e.getKey());
-         res = res.replaceAll(v, e.getValue());
+      VariableTemplate template = VariableTemplate.compile(originalText);
+      if (!template.hasVariables()) {
+         return originalText;
       }
 
-      return res;
+      String[] res = new String[template.getNbVariables()];
+      for (int i = 0; i < res.length; i++) {
+         res[i] = values.get(template.getVariableName(i));
+      }
+      return template.render(res);
    }
 
    public String replaceTemplateVariables(String originalText) {
       if (Utils.isEmpty(originalText)) {
          return originalText;
       }
+      return replaceTemplateVariables(VariableTemplate.compile(originalText), Collections.emptyMap());
+   }
 
-      StringBuilder tag1 = new StringBuilder(32);
-      StringBuilder tag2 = new StringBuilder(32);
-      Random r = new Random(System.nanoTime());
+   /**
+    * Render a template parsed once. The variables with a value in "values" (data file variables) are replaced by this value, the
+    * other variables are replaced by a value generated for this call, the same for all the occurrences of a variable
+    */
+   public String replaceTemplateVariables(VariableTemplate template, Map<String, String> values) {
+      if (!template.hasVariables()) {
+         return template.getText();
+      }
 
-      String res = originalText;
+      Map<String, VariableGenerator> index = generators;
 
-      // For each possible variable
-      for (Variable v : variables) {
-         tag1.setLength(0);
-         tag2.setLength(0);
-         tag1.append(buildVariableReplaceName(v.getName()));
-         tag2.append(buildVariableDisplayName(v));
-
-         if (res.contains(tag2)) {
-            String val = resolveVariable(r, v);
-            res = res.replaceAll(tag1.toString(), val);
+      String[] res = new String[template.getNbVariables()];
+      for (int i = 0; i < res.length; i++) {
+         String name = template.getVariableName(i);
+         String value = values.get(name);
+         if (value == null) {
+            VariableGenerator generator = index.get(name);
+            if (generator != null) {
+               value = generator.generate();
+            }
          }
+         res[i] = value;
       }
-      return res;
+      return template.render(res);
    }
 
-   public String resolveVariable(Random r, Variable variable) {
-
-      switch (variable.getKind()) {
-         case DATE:
-            SimpleDateFormat sdf = new SimpleDateFormat(variable.getDateTimePattern());
-            switch (variable.getDateTimeKind()) {
-               case STANDARD:
-                  return sdf.format(new Date());
-
-               case RANGE:
-                  long minDate = variable.getDateTimeMin().toGregorianCalendar().getTime().getTime();
-                  long maxDate = variable.getDateTimeMax().toGregorianCalendar().getTime().getTime();
-                  long diff = maxDate - minDate;
-                  long date = nextLong(r, diff) + minDate;
-
-                  return sdf.format(new Date(date));
-
-               case OFFSET:
-                  Calendar c = new GregorianCalendar();
-                  switch (variable.getDateTimeOffsetTU()) {
-                     case DAYS:
-                        c.add(Calendar.DAY_OF_MONTH, variable.getDateTimeOffset());
-                        break;
-                     case HOURS:
-                        c.add(Calendar.HOUR_OF_DAY, variable.getDateTimeOffset());
-                        break;
-                     case MILLISECONDS:
-                        c.add(Calendar.MILLISECOND, variable.getDateTimeOffset());
-                        break;
-                     case MINUTES:
-                        c.add(Calendar.MINUTE, variable.getDateTimeOffset());
-                        break;
-                     case MONTHS:
-                        c.add(Calendar.MONTH, variable.getDateTimeOffset());
-                        break;
-                     case SECONDS:
-                        c.add(Calendar.SECOND, variable.getDateTimeOffset());
-                        break;
-                     case YEARS:
-                        c.add(Calendar.YEAR, variable.getDateTimeOffset());
-                        break;
-                  }
-
-                  return sdf.format(c.getTime());
-
-            }
-
-         case INT:
-            int val = r.nextInt(variable.getMax() - variable.getMin()) + variable.getMin();
-            return String.valueOf(val);
-
-         case LIST:
-            int index = r.nextInt(variable.getListValue().size());
-            return variable.getListValue().get(index);
-
-         case STRING:
-            char[] text = new char[variable.getStringLength()];
-            switch (variable.getStringKind()) {
-               case ALPHABETIC:
-                  for (int i = 0; i < variable.getStringLength(); i++) {
-                     text[i] = CHARS_ALPHABETIC.charAt(r.nextInt(CHARS_ALPHABETIC_LEN));
-                  }
-               case ALPHANUMERIC:
-                  for (int i = 0; i < variable.getStringLength(); i++) {
-                     text[i] = CHARS_ALPHANUMERIC.charAt(r.nextInt(CHARS_ALPHANUMERIC_LEN));
-                  }
-                  break;
-               case NUMERIC:
-                  for (int i = 0; i < variable.getStringLength(); i++) {
-                     text[i] = CHARS_NUMERIC.charAt(r.nextInt(CHARS_NUMERIC_LEN));
-                  }
-                  break;
-               case CUSTOM:
-                  for (int i = 0; i < variable.getStringLength(); i++) {
-                     text[i] = variable.getStringChars().charAt(r.nextInt(variable.getStringChars().length()));
-                  }
-                  break;
-            }
-            return new String(text);
+   // Generate a value for a variable. Can be called by many threads at the same time
+   public String resolveVariable(Variable variable) {
+      VariableGenerator generator = generators.get(variable.getName());
+      if ((generator == null) || (generator.getVariable() != variable)) {
+         // Not a variable of the configuration, or not saved yet
+         generator = new VariableGenerator(variable);
       }
-
-      // Impossible
-      return null;
+      return generator.generate();
    }
 
    // ----------------------
@@ -511,6 +440,21 @@ public class VariablesManager {
    // Helpers
    // -------
 
+   private void buildVariablesIndex() {
+      Map<String, VariableGenerator> index = new HashMap<>(variables.size() * 2);
+      for (Variable v : variables) {
+         if (index.containsKey(v.getName())) {
+            continue;
+         }
+         try {
+            index.put(v.getName(), new VariableGenerator(v));
+         } catch (RuntimeException e) {
+            log.warn("Variable '{}' is not valid. Ignoring: {}", v.getName(), e.getMessage());
+         }
+      }
+      generators = index;
+   }
+
    private XMLGregorianCalendar toXMLGregorianCalendar(Calendar c) {
       if (c == null) {
          return null;
@@ -525,16 +469,6 @@ public class VariablesManager {
       }
    }
 
-   private long nextLong(Random rng, long n) {
-      // error checking and 2^x checking removed for simplicity.
-      long bits, val;
-      do {
-         bits = (rng.nextLong() << 1) >>> 1;
-         val = bits % n;
-      } while (bits - val + (n - 1) < 0L);
-      return val;
-   }
-
    // Parse Variables File into Variables Object
    private Variables parseVariablesFile(InputStream is) throws JAXBException {
       log.debug("Parsing Variable file '{}'", Constants.JTB_VARIABLE_CONFIG_FILE_NAME);
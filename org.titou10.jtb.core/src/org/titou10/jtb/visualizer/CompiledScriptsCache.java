@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2015-2017 Denis Forveille titou10.titou10@gmail.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.titou10.jtb.visualizer;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.titou10.jtb.visualizer.gen.Visualizer;
+import org.titou10.jtb.visualizer.gen.VisualizerKind;
+
+/**
+ *
+ * Cache of the compiled scripts of the script visualizers
+ *
+ * Scripts are keyed by visualizer name. Each entry remembers the version of the source it has been compiled from: the hash of the
+ * source for inline scripts, the last modification time and size of the file for external scripts. A script is recompiled when
+ * its source has changed. The least recently used entry is removed when the cache is full.
+ *
+ * Scripts are compiled one at a time, as the compiling engine is shared with the visualizers manager
+ *
+ * @author Denis Forveille
+ *
+ */
+final class CompiledScriptsCache {
+
+   private static final Logger              log     = LoggerFactory.getLogger(CompiledScriptsCache.class);
+
+   private static final ExecutorService     WARM_UP = Executors.newSingleThreadExecutor(r -> {
+                                                       Thread t = new Thread(r, "JTB-Visualizers-WarmUp");
+                                                       t.setDaemon(true);
+                                                       return t;
+                                                    });
+
+   private final Compilable                 compilingEngine;
+   private final Map<String, CompiledEntry> entries;
+
+   // Incremented each time the cache is invalidated, to stop a warm up of a previous configuration
+   private volatile int                     generation;
+
+   // ------------------------
+   // Constructor
+   // ------------------------
+
+   CompiledScriptsCache(Compilable compilingEngine, final int maxSize) {
+      this.compilingEngine = compilingEngine;
+      this.generation = 0;
+
+      // LinkedHashMap in access order: the eldest entry is the least recently used
+      this.entries = new LinkedHashMap<String, CompiledEntry>(maxSize, 0.75f, true) {
+         private static final long serialVersionUID = 1L;
+
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<String, CompiledEntry> eldest) {
+            if (size() > maxSize) {
+               log.debug("Cache full. Removing compiled script of visualizer '{}'", eldest.getKey());
+               return true;
+            }
+            return false;
+         }
+      };
+   }
+
+   // ------------------------
+   // Business Interface
+   // ------------------------
+
+   // Return the compiled script of a script visualizer, compiled again if its source has changed since the last call
+   synchronized CompiledScript getCompiledScript(Visualizer visualizer) throws ScriptException, IOException {
+      String version = computeVersion(visualizer);
+
+      CompiledEntry entry = entries.get(visualizer.getName());
+      if ((entry != null) && (entry.version.equals(version))) {
+         return entry.compiledScript;
+      }
+
+      log.debug("Compiling script of visualizer '{}' version {}", visualizer.getName(), version);
+      CompiledScript cs;
+      if (visualizer.getKind() == VisualizerKind.EXTERNAL_SCRIPT) {
+         try (FileReader fr = new FileReader(visualizer.getFileName())) {
+            cs = compilingEngine.compile(fr);
+         }
+      } else {
+         cs = compilingEngine.compile(visualizer.getSource());
+      }
+
+      entries.put(visualizer.getName(), new CompiledEntry(version, cs));
+      return cs;
+   }
+
+   // Remove all the compiled scripts, and stop the warm up in progress if any
+   synchronized void invalidate() {
+      log.debug("Invalidating {} compiled scripts", entries.size());
+      generation++;
+      entries.clear();
+   }
+
+   // Compile in background the scripts of the visualizers
+   void warmUp(List<Visualizer> visualizers) {
+      final int warmUpGeneration = generation;
+
+      final List<Visualizer> scriptVisualizers = new ArrayList<>();
+      for (Visualizer v : visualizers) {
+         if ((v.getKind() == VisualizerKind.INLINE_SCRIPT) || (v.getKind() == VisualizerKind.EXTERNAL_SCRIPT)) {
+            scriptVisualizers.add(v);
+         }
+      }
+      if (scriptVisualizers.isEmpty()) {
+         return;
+      }
+
+      WARM_UP.execute(() -> {
+         long start = System.currentTimeMillis();
+         for (Visualizer v : scriptVisualizers) {
+            if (warmUpGeneration != generation) {
+               log.debug("Configuration changed. Stopping warm up");
+               return;
+            }
+            try {
+               getCompiledScript(v);
+            } catch (Exception e) {
+               // The error will be reported to the user when the visualizer is launched
+               log.warn("Exception occurred when compiling script of visualizer '{}'. Ignoring: {}", v.getName(), e.getMessage());
+            }
+         }
+         log.debug("{} scripts compiled in {} ms", scriptVisualizers.size(), System.currentTimeMillis() - start);
+      });
+   }
+
+   // -------
+   // Helpers
+   // -------
+
+   private String computeVersion(Visualizer visualizer) {
+      if (visualizer.getKind() == VisualizerKind.EXTERNAL_SCRIPT) {
+         File f = new File(visualizer.getFileName());
+         return "F" + f.lastModified() + ":" + f.length();
+      }
+      String source = visualizer.getSource();
+      return source == null ? "S" : "S" + source.hashCode() + ":" + source.length();
+   }
+
+   private static final class CompiledEntry {
+      private final String         version;
+      private final CompiledScript compiledScript;
+
+      private CompiledEntry(String version, CompiledScript compiledScript) {
+         this.version = version;
+         this.compiledScript = compiledScript;
+      }
+   }
+}
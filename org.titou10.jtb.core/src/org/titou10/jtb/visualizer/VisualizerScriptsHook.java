@@ -18,14 +18,22 @@ package org.titou10.jtb.visualizer;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Base64;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,11 +47,16 @@ import org.slf4j.LoggerFactory;
  */
 public class VisualizerScriptsHook {
 
-   private static final Logger log           = LoggerFactory.getLogger(VisualizersManager.class);
+   private static final Logger          log           = LoggerFactory.getLogger(VisualizersManager.class);
 
-   private static final int    BUFFER_LENGTH = 2048;
+   private static final int             BUFFER_LENGTH = 8192;
 
-   private VisualizersManager  visualizersManager;
+   // Inflaters and Deflaters hold native memory: keep a few of them for reuse, as scripts may be executed by many threads
+   private static final int             MAX_POOLED    = Runtime.getRuntime().availableProcessors();
+   private static final Queue<Inflater> INFLATERS     = new ConcurrentLinkedQueue<>();
+   private static final Queue<Deflater> DEFLATERS     = new ConcurrentLinkedQueue<>();
+
+   private VisualizersManager           visualizersManager;
 
    VisualizerScriptsHook(VisualizersManager visualizersManager) {
       this.visualizersManager = visualizersManager;
@@ -70,20 +83,21 @@ public class VisualizerScriptsHook {
          return new byte[0];
       }
 
-      Deflater compresser = new Deflater();
-      compresser.setInput(uncompressedBytes);
-      compresser.finish();
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream(uncompressedBytes.length / 2);
+      Deflater compresser = borrowDeflater();
+      try {
+         compresser.setInput(uncompressedBytes);
+         compresser.finish();
 
-      byte[] buffer = new byte[2048];
-      ByteArrayOutputStream outputStream = new ByteArrayOutputStream(uncompressedBytes.length);
-      while (!compresser.finished()) {
-         int count = compresser.deflate(buffer);
-         outputStream.write(buffer, 0, count);
+         byte[] buffer = new byte[BUFFER_LENGTH];
+         while (!compresser.finished()) {
+            int count = compresser.deflate(buffer);
+            outputStream.write(buffer, 0, count);
+         }
+      } finally {
+         releaseDeflater(compresser);
       }
-      compresser.end();
-      outputStream.close();
-      byte[] res = outputStream.toByteArray();
-      log.debug("res={}", res);
+      log.debug("compressZlib {} bytes into {} bytes", uncompressedBytes.length, outputStream.size());
       return outputStream.toByteArray();
    }
 
@@ -97,17 +111,22 @@ public class VisualizerScriptsHook {
          return new byte[0];
       }
 
-      Inflater decompresser = new Inflater();
-      decompresser.setInput(compressedBytes);
-
-      byte[] buffer = new byte[BUFFER_LENGTH];
-      ByteArrayOutputStream outputStream = new ByteArrayOutputStream(compressedBytes.length);
-      while (!decompresser.finished()) {
-         int count = decompresser.inflate(buffer);
-         outputStream.write(buffer, 0, count);
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream(compressedBytes.length * 2);
+      Inflater decompresser = borrowInflater();
+      try {
+         decompresser.setInput(compressedBytes);
+
+         byte[] buffer = new byte[BUFFER_LENGTH];
+         while (!decompresser.finished()) {
+            int count = decompresser.inflate(buffer);
+            if ((count == 0) && (decompresser.needsInput() || decompresser.needsDictionary())) {
+               throw new DataFormatException("Compressed data is truncated or needs a dictionary");
+            }
+            outputStream.write(buffer, 0, count);
+         }
+      } finally {
+         releaseInflater(decompresser);
       }
-      decompresser.end();
-      outputStream.close();
       return outputStream.toByteArray();
    }
 
@@ -133,9 +152,9 @@ public class VisualizerScriptsHook {
       }
 
       ByteArrayOutputStream outBytes = new ByteArrayOutputStream(uncompressedBytes.length / 2);
-      GZIPOutputStream gzipOutput = new GZIPOutputStream(outBytes);
-      gzipOutput.write(uncompressedBytes);
-      gzipOutput.close();
+      try (GZIPOutputStream gzipOutput = new GZIPOutputStream(outBytes, BUFFER_LENGTH)) {
+         gzipOutput.write(uncompressedBytes);
+      }
       return outBytes.toByteArray();
    }
 
@@ -149,16 +168,9 @@ public class VisualizerScriptsHook {
          return new byte[0];
       }
 
-      GZIPInputStream inStream = new GZIPInputStream(new ByteArrayInputStream(compressedBytes));
-      ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
-
-      int res = 0;
-      byte buffer[] = new byte[BUFFER_LENGTH];
-      while (res >= 0) {
-         res = inStream.read(buffer, 0, buffer.length);
-         if (res > 0) {
-            outBytes.write(buffer, 0, res);
-         }
+      ByteArrayOutputStream outBytes = new ByteArrayOutputStream(compressedBytes.length * 2);
+      try (GZIPInputStream inStream = new GZIPInputStream(new ByteArrayInputStream(compressedBytes), BUFFER_LENGTH)) {
+         copy(inStream, outBytes);
       }
       return outBytes.toByteArray();
    }
@@ -168,6 +180,92 @@ public class VisualizerScriptsHook {
       return new String(decompressGzip(compressedBytes));
    }
 
+   // ---------------
+   // Streaming Compression/Decompression Helpers
+   // For large payloads: the data is processed by chunks, without building intermediate arrays.
+   // The streams passed as parameters are not closed
+   // ---------------
+
+   public long compressZlib(InputStream in, OutputStream out) throws IOException {
+      log.debug("compressZlib - streams");
+
+      Deflater compresser = borrowDeflater();
+      try {
+         DeflaterOutputStream dos = new DeflaterOutputStream(new NonClosingOutputStream(out), compresser, BUFFER_LENGTH);
+         long n = copy(in, dos);
+         dos.finish();
+         return n;
+      } finally {
+         releaseDeflater(compresser);
+      }
+   }
+
+   public long decompressZlib(InputStream in, OutputStream out) throws IOException {
+      log.debug("decompressZlib - streams");
+
+      try (InputStream zis = decompressZlibStream(new NonClosingInputStream(in))) {
+         return copy(zis, out);
+      }
+   }
+
+   public long compressGzip(InputStream in, OutputStream out) throws IOException {
+      log.debug("compressGzip - streams");
+
+      GZIPOutputStream gzipOutput = new GZIPOutputStream(new NonClosingOutputStream(out), BUFFER_LENGTH);
+      long n = copy(in, gzipOutput);
+      gzipOutput.finish();
+      return n;
+   }
+
+   public long decompressGzip(InputStream in, OutputStream out) throws IOException {
+      log.debug("decompressGzip - streams");
+
+      try (GZIPInputStream inStream = new GZIPInputStream(new NonClosingInputStream(in), BUFFER_LENGTH)) {
+         return copy(inStream, out);
+      }
+   }
+
+   // Stream of the decompressed data, read by chunks by the script. Must be closed by the script
+   public InputStream decompressZlibStream(byte[] compressedBytes) {
+      log.debug("decompressZlibStream - bytes");
+      return decompressZlibStream(new ByteArrayInputStream(compressedBytes));
+   }
+
+   public InputStream decompressZlibStream(InputStream in) {
+      log.debug("decompressZlibStream - stream");
+
+      final Inflater decompresser = borrowInflater();
+      return new InflaterInputStream(in, decompresser, BUFFER_LENGTH) {
+         private boolean closed = false;
+
+         @Override
+         public void close() throws IOException {
+            if (!closed) {
+               closed = true;
+               super.close();
+               releaseInflater(decompresser);
+            }
+         }
+      };
+   }
+
+   public InputStream decompressGzipStream(byte[] compressedBytes) throws IOException {
+      log.debug("decompressGzipStream");
+      return new GZIPInputStream(new ByteArrayInputStream(compressedBytes), BUFFER_LENGTH);
+   }
+
+   // Copy an InputStream to an OutputStream. Return the number of bytes copied
+   public long copy(InputStream in, OutputStream out) throws IOException {
+      long n = 0;
+      byte[] buffer = new byte[BUFFER_LENGTH];
+      int count;
+      while ((count = in.read(buffer)) != -1) {
+         out.write(buffer, 0, count);
+         n += count;
+      }
+      return n;
+   }
+
    // ---------------
    // Base64 Helpers
    // ---------------
@@ -250,4 +348,64 @@ public class VisualizerScriptsHook {
          throw e;
       }
    }
+
+   // -------
+   // Helpers
+   // -------
+
+   private static Inflater borrowInflater() {
+      Inflater inflater = INFLATERS.poll();
+      return inflater == null ? new Inflater() : inflater;
+   }
+
+   private static void releaseInflater(Inflater inflater) {
+      if (INFLATERS.size() < MAX_POOLED) {
+         inflater.reset();
+         INFLATERS.offer(inflater);
+      } else {
+         inflater.end();
+      }
+   }
+
+   private static Deflater borrowDeflater() {
+      Deflater deflater = DEFLATERS.poll();
+      return deflater == null ? new Deflater() : deflater;
+   }
+
+   private static void releaseDeflater(Deflater deflater) {
+      if (DEFLATERS.size() < MAX_POOLED) {
+         deflater.reset();
+         DEFLATERS.offer(deflater);
+      } else {
+         deflater.end();
+      }
+   }
+
+   // Streams that do not close the stream of the caller
+   private static final class NonClosingInputStream extends FilterInputStream {
+      private NonClosingInputStream(InputStream in) {
+         super(in);
+      }
+
+      @Override
+      public void close() {
+         // NOP
+      }
+   }
+
+   private static final class NonClosingOutputStream extends FilterOutputStream {
+      private NonClosingOutputStream(OutputStream out) {
+         super(out);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+         out.write(b, off, len);
+      }
+
+      @Override
+      public void close() throws IOException {
+         flush();
+      }
+   }
 }
@@ -21,7 +21,6 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
@@ -29,19 +28,29 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import javax.script.Bindings;
 import javax.script.Compilable;
 import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
@@ -55,6 +64,7 @@ import javax.xml.bind.Unmarshaller;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.e4.core.di.annotations.Creatable;
 import org.eclipse.swt.program.Program;
 import org.eclipse.swt.widgets.Shell;
@@ -62,6 +72,8 @@ import org.eclipse.swt.widgets.Text;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.titou10.jtb.config.ConfigManager;
+import org.titou10.jtb.jms.model.JTBMessage;
+import org.titou10.jtb.jms.model.JTBMessageTemplate;
 import org.titou10.jtb.jms.model.JTBMessageType;
 import org.titou10.jtb.util.Constants;
 import org.titou10.jtb.util.Utils;
@@ -101,6 +113,10 @@ public class VisualizersManager {
    private static final String                      JS_PARAM_PAYLOAD_BYTES       = "jtb_payloadBytes";
    private static final String                      JS_PARAM_PAYLOAD_MAP         = "jtb_payloadMap";
 
+   private static final int                         COMPILED_SCRIPTS_CACHE_SIZE  = 32;
+   private static final int                         BATCH_MAX_PENDING_PER_WORKER = 16;
+   private static final int                         BATCH_OUTPUT_LENGTH          = 2048;
+
    private static final List<VisualizerMessageType> COL_TEXT                     = Collections
             .singletonList(VisualizerMessageType.TEXT);
    private static final List<VisualizerMessageType> COL_BYTES                    = Collections
@@ -128,7 +144,7 @@ public class VisualizersManager {
    private List<Visualizer>                         visualizers;
    private Map<JTBMessageType, String[]>            visualizersPerJTBMessageType;
 
-   private Map<String, CompiledScript>              mapCompiledScripts;
+   private CompiledScriptsCache                     compiledScriptsCache;
 
    @PostConstruct
    private void initialize() throws Exception {
@@ -149,9 +165,9 @@ public class VisualizersManager {
       visualizersDef = parseVisualizersFile(this.visualizersIFile.getContents());
 
       // Initialize script engine
-      mapCompiledScripts = new HashMap<>();
       scriptEngine = new ScriptEngineManager().getEngineByName(JS_LANGUAGE);
       compilingEngine = (Compilable) scriptEngine;
+      compiledScriptsCache = new CompiledScriptsCache(compilingEngine, COMPILED_SCRIPTS_CACHE_SIZE);
       visualizerScriptsHook = new VisualizerScriptsHook(this);
 
       // Build list of visualizers
@@ -235,7 +251,9 @@ public class VisualizersManager {
          visualizersPerJTBMessageType.put(e.getKey(), e.getValue().toArray(new String[e.getValue().size()]));
       }
 
-      mapCompiledScripts.clear();
+      // Scripts may have changed: compile them again in background
+      compiledScriptsCache.invalidate();
+      compiledScriptsCache.warmUp(visualizers);
    }
 
    // ---------------
@@ -395,19 +413,8 @@ public class VisualizersManager {
                               Map<String, Object> payloadMap) throws Exception {
       log.debug("executeScript");
 
-      // Get and compile the Script
-      CompiledScript cs;
-      if (visualizer.getKind() == VisualizerKind.EXTERNAL_SCRIPT) {
-         FileReader dfr = new FileReader(visualizer.getFileName());
-         cs = compilingEngine.compile(dfr);
-      } else {
-         // Allow caching only for inline scripts as external scripts may change without JTB knowing it
-         cs = mapCompiledScripts.get(visualizer.getName());
-         if (cs == null) {
-            cs = compilingEngine.compile(visualizer.getSource());
-            mapCompiledScripts.put(visualizer.getName(), cs);
-         }
-      }
+      // Get the compiled Script. External scripts are compiled again when their file has changed
+      CompiledScript cs = compiledScriptsCache.getCompiledScript(visualizer);
 
       // Set parameters
       SimpleBindings global = new SimpleBindings();
@@ -447,6 +454,84 @@ public class VisualizersManager {
       }
    }
 
+   /**
+    * Execute a script visualizer on many messages and write what the script prints for each message into a file, in the order of
+    * the messages.<br>
+    * The messages are processed by a pool of workers, one per processor. Each worker has its own script engine with the script
+    * compiled once, and reuses the same bindings for all the messages it processes.
+    *
+    * @return the number of messages for which the script failed
+    */
+   public int executeScriptBatch(String name,
+                                 List<JTBMessage> jtbMessages,
+                                 File resultFile,
+                                 IProgressMonitor monitor) throws Exception {
+      log.debug("executeScriptBatch name: {} nbMessages={}", name, jtbMessages.size());
+
+      Visualizer visualizer = getVizualiserFromName(name);
+      if (!(isScriptVisualizer(visualizer))) {
+         throw new IllegalArgumentException("Visualizer '" + name + "' is not a script visualizer");
+      }
+
+      // Fail fast if the script does not compile
+      compiledScriptsCache.getCompiledScript(visualizer);
+      final String source;
+      if (visualizer.getKind() == VisualizerKind.EXTERNAL_SCRIPT) {
+         source = new String(Files.readAllBytes(Paths.get(visualizer.getFileName())));
+      } else {
+         source = visualizer.getSource();
+      }
+
+      final int nbMessages = jtbMessages.size();
+      final int nbWorkers = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), nbMessages));
+      final int maxPending = nbWorkers * BATCH_MAX_PENDING_PER_WORKER;
+
+      final ThreadLocal<BatchWorker> workers = ThreadLocal.withInitial(() -> new BatchWorker(source));
+      AtomicInteger threadNumber = new AtomicInteger(0);
+      ExecutorService executor = Executors.newFixedThreadPool(nbWorkers, r -> {
+         Thread t = new Thread(r, "JTB-VisualizerBatch-" + threadNumber.incrementAndGet());
+         t.setDaemon(true);
+         return t;
+      });
+
+      // Results are written in the order of the messages, while the next messages are processed
+      Deque<Future<BatchResult>> pending = new ArrayDeque<>(maxPending);
+      int nbSubmitted = 0;
+      int nbInError = 0;
+      try (BufferedWriter bw = Files.newBufferedWriter(resultFile.toPath(), StandardCharsets.UTF_8)) {
+         while ((nbSubmitted < nbMessages) || (!pending.isEmpty())) {
+            if (monitor.isCanceled()) {
+               log.debug("executeScriptBatch canceled after {} messages", nbSubmitted - pending.size());
+               break;
+            }
+
+            while ((nbSubmitted < nbMessages) && (pending.size() < maxPending)) {
+               final JTBMessage jtbMessage = jtbMessages.get(nbSubmitted++);
+               pending.addLast(executor.submit(() -> workers.get().execute(jtbMessage)));
+            }
+
+            BatchResult result = pending.removeFirst().get();
+            if (result.inError) {
+               nbInError++;
+            }
+            bw.write(result.output);
+            monitor.worked(1);
+         }
+      } finally {
+         for (Future<BatchResult> f : pending) {
+            f.cancel(true);
+         }
+         executor.shutdownNow();
+      }
+
+      log.info("Visualizer '{}' executed on {} messages. {} in error", name, nbMessages, nbInError);
+      return nbInError;
+   }
+
+   public boolean isScriptVisualizer(String name) {
+      return isScriptVisualizer(getVizualiserFromName(name));
+   }
+
    public void launchExternalExtension(String extension, String payloadText) throws IOException {
       log.debug("launchExternalExtension - Text");
 
@@ -683,6 +768,13 @@ public class VisualizersManager {
       }
    }
 
+   private boolean isScriptVisualizer(Visualizer visualizer) {
+      if (visualizer == null) {
+         return false;
+      }
+      return (visualizer.getKind() == VisualizerKind.INLINE_SCRIPT) || (visualizer.getKind() == VisualizerKind.EXTERNAL_SCRIPT);
+   }
+
    private Visualizer getVizualiserFromName(String name) {
       return visualizers.stream().filter(v -> v.getName().equals(name)).findFirst().orElse(null);
    }
@@ -701,6 +793,62 @@ public class VisualizersManager {
       return 0;
    }
 
+   // Script engine of a worker of a batch execution. Nashorn engines are not thread safe: each worker has its own
+   private final class BatchWorker {
+      private final ScriptEngine   engine;
+      private final Bindings       bindings;
+      private final StringWriter   output;
+      private final String         source;
+      private CompiledScript       cs;
+
+      private BatchWorker(String source) {
+         this.engine = new ScriptEngineManager().getEngineByName(JS_LANGUAGE);
+         this.bindings = engine.createBindings();
+         this.output = new StringWriter(BATCH_OUTPUT_LENGTH);
+         this.source = source;
+
+         PrintWriter pw = new PrintWriter(output, true);
+         engine.getContext().setWriter(pw);
+         engine.getContext().setErrorWriter(pw);
+      }
+
+      private BatchResult execute(JTBMessage jtbMessage) {
+         output.getBuffer().setLength(0);
+
+         boolean inError = false;
+         try {
+            output.write("--- Message " + jtbMessage.getJmsMessage().getJMSMessageID() + " ---\n");
+
+            JTBMessageTemplate jtbMessageTemplate = new JTBMessageTemplate(jtbMessage);
+            bindings.put(JS_PARAM_VISUALIZER, visualizerScriptsHook);
+            bindings.put(JS_PARAM_JMS_TYPE, jtbMessage.getJtbMessageType().name());
+            bindings.put(JS_PARAM_PAYLOAD_TEXT, jtbMessageTemplate.getPayloadText());
+            bindings.put(JS_PARAM_PAYLOAD_BYTES, jtbMessageTemplate.getPayloadBytes());
+            bindings.put(JS_PARAM_PAYLOAD_MAP, jtbMessageTemplate.getPayloadMap());
+
+            if (cs == null) {
+               cs = ((Compilable) engine).compile(source);
+            }
+            cs.eval(bindings);
+         } catch (Exception e) {
+            inError = true;
+            e.printStackTrace(new PrintWriter(output, true));
+         }
+         output.write("\n");
+         return new BatchResult(output.toString(), inError);
+      }
+   }
+
+   private static final class BatchResult {
+      private final String  output;
+      private final boolean inError;
+
+      private BatchResult(String output, boolean inError) {
+         this.output = output;
+         this.inError = inError;
+      }
+   }
+
    public final static class VisualizerComparator implements Comparator<Visualizer> {
 
       @Override
@@ -72,6 +72,17 @@ public class VisualizerInlineScriptHelpDialog extends Dialog {
       sb.append("String decompressZlibToString(byte[] bytes) : Uses the Java 'Inflater' class to decompress the bytes to a String")
                .append(CR);
       sb.append(CR);
+      sb.append("Streaming variants for large payloads. The streams passed as parameters are not closed:").append(CR);
+      sb.append("long compressZlib(InputStream in, OutputStream out)   : Compress 'in' to 'out' (zlib)").append(CR);
+      sb.append("long decompressZlib(InputStream in, OutputStream out) : Decompress 'in' to 'out' (zlib)").append(CR);
+      sb.append("long compressGzip(InputStream in, OutputStream out)   : Compress 'in' to 'out' (gzip)").append(CR);
+      sb.append("long decompressGzip(InputStream in, OutputStream out) : Decompress 'in' to 'out' (gzip)").append(CR);
+      sb.append("InputStream decompressZlibStream(byte[] bytes)        : Stream of the decompressed bytes (zlib). Must be closed")
+               .append(CR);
+      sb.append("InputStream decompressGzipStream(byte[] bytes)        : Stream of the decompressed bytes (gzip). Must be closed")
+               .append(CR);
+      sb.append("long copy(InputStream in, OutputStream out)           : Copy 'in' to 'out'").append(CR);
+      sb.append(CR);
 
       helpText = sb.toString();
    }
@@ -16,10 +16,20 @@
  */
 package org.titou10.jtb.visualizer.ui;
 
+import java.io.File;
+import java.util.List;
+
 import javax.inject.Inject;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.e4.core.di.annotations.Execute;
+import org.eclipse.e4.ui.di.UISynchronize;
 import org.eclipse.e4.ui.model.application.ui.menu.MMenuItem;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.swt.widgets.Shell;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,6 +37,7 @@ import org.titou10.jtb.jms.model.JTBMessage;
 import org.titou10.jtb.jms.model.JTBMessageTemplate;
 import org.titou10.jtb.ui.JTBStatusReporter;
 import org.titou10.jtb.util.Constants;
+import org.titou10.jtb.util.Utils;
 import org.titou10.jtb.visualizer.VisualizersManager;
 
 /**
@@ -46,10 +57,29 @@ public class VisualizerShowPayloadAsHandler {
    private VisualizersManager  visualizersManager;
 
    @Execute
-   public void execute(Shell shell, MMenuItem menuItem) {
+   @SuppressWarnings("unchecked")
+   public void execute(Shell shell, UISynchronize sync, MMenuItem menuItem) {
       log.debug("execute");
 
       String visualizerName = (String) menuItem.getTransientData().get(Constants.VISUALIZER_PARAM_NAME);
+
+      // Many messages: execute the visualizer on all of them in the background
+      List<JTBMessage> jtbMessages = (List<JTBMessage>) menuItem.getTransientData().get(Constants.VISUALIZER_PARAM_JTBMESSAGES);
+      if (jtbMessages != null) {
+         FileDialog dlg = new FileDialog(shell, SWT.SAVE);
+         dlg.setText("Save results of visualizer as...");
+         dlg.setFileName(Utils.buildFileName(visualizerName, ".txt", null, "results"));
+         dlg.setOverwrite(true);
+         String fileName = dlg.open();
+         if (fileName == null) {
+            return;
+         }
+
+         VisualizerBatchJob job = new VisualizerBatchJob(sync, visualizerName, jtbMessages, new File(fileName));
+         job.schedule();
+         return;
+      }
+
       JTBMessage jtbMessage = (JTBMessage) menuItem.getTransientData().get(Constants.VISUALIZER_PARAM_JTBMESSAGE);
 
       try {
@@ -66,4 +96,54 @@ public class VisualizerShowPayloadAsHandler {
       }
    }
 
+   // --------------
+   // Helper Classes
+   // --------------
+
+   /**
+    * Job that executes a script visualizer on many messages
+    */
+   private final class VisualizerBatchJob extends Job {
+
+      private final UISynchronize    sync;
+      private final String           visualizerName;
+      private final List<JTBMessage> jtbMessages;
+      private final File             resultFile;
+
+      private VisualizerBatchJob(UISynchronize sync, String visualizerName, List<JTBMessage> jtbMessages, File resultFile) {
+         super("Executing visualizer '" + visualizerName + "' on " + jtbMessages.size() + " messages");
+         this.sync = sync;
+         this.visualizerName = visualizerName;
+         this.jtbMessages = jtbMessages;
+         this.resultFile = resultFile;
+      }
+
+      @Override
+      protected IStatus run(IProgressMonitor monitor) {
+         monitor.beginTask(getName(), jtbMessages.size());
+
+         try {
+            int nbInError = visualizersManager.executeScriptBatch(visualizerName, jtbMessages, resultFile, monitor);
+            if (monitor.isCanceled()) {
+               return Status.CANCEL_STATUS;
+            }
+
+            String msg = "Results of visualizer '" + visualizerName + "' written to " + resultFile.getAbsolutePath();
+            if (nbInError > 0) {
+               String msgError = msg + "\nThe script failed for " + nbInError + " out of " + jtbMessages.size() + " messages";
+               sync.asyncExec(() -> jtbStatusReporter.showWarning(msgError, null, ""));
+            } else {
+               sync.asyncExec(() -> jtbStatusReporter.showInfo(msg, null, ""));
+            }
+         } catch (Exception e) {
+            log.error("Exception occurred when executing the visualizer", e);
+            sync.asyncExec(() -> jtbStatusReporter.showError("An error occurred when executing the visualizer", e, ""));
+         } finally {
+            monitor.done();
+         }
+
+         return Status.OK_STATUS;
+      }
+   }
+
 }
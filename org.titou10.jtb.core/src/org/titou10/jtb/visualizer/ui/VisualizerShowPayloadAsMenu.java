@@ -16,7 +16,11 @@
  */
 package org.titou10.jtb.visualizer.ui;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -31,6 +35,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.titou10.jtb.jms.model.JTBDestination;
 import org.titou10.jtb.jms.model.JTBMessage;
+import org.titou10.jtb.jms.model.JTBMessageType;
 import org.titou10.jtb.util.Constants;
 import org.titou10.jtb.visualizer.VisualizersManager;
 
@@ -56,8 +61,13 @@ public class VisualizerShowPayloadAsMenu {
                            @Named(Constants.CURRENT_TAB_JTBDESTINATION) JTBDestination jtbDestination) {
       log.debug("aboutToShow");
 
-      // Works only if One message is selected
-      if ((selection == null) || (selection.size() != 1)) {
+      if ((selection == null) || (selection.isEmpty())) {
+         return;
+      }
+
+      // Many messages: script visualizers may be executed on all of them
+      if (selection.size() > 1) {
+         aboutToShowBatch(items, selection, jtbDestination);
          return;
       }
 
@@ -93,4 +103,47 @@ public class VisualizerShowPayloadAsMenu {
          items.add(dynamicItem);
       }
    }
+
+   private void aboutToShowBatch(List<MMenuElement> items, List<JTBMessage> selection, JTBDestination jtbDestination) {
+
+      // Enable menu only if the selected messages are from the active tab
+      if (!selection.get(0).getJtbDestination().getName().equals(jtbDestination.getName())) {
+         return;
+      }
+
+      // Keep the script visualizers linked to the kinds of all the selected messages
+      Set<JTBMessageType> jtbMessageTypes = EnumSet.noneOf(JTBMessageType.class);
+      for (JTBMessage jtbMessage : selection) {
+         jtbMessageTypes.add(jtbMessage.getJtbMessageType());
+      }
+      List<String> visualizerNames = null;
+      for (JTBMessageType jtbMessageType : jtbMessageTypes) {
+         String[] visualizers = visualizersManager.getVizualisersNamesForMessageType(jtbMessageType);
+         if (visualizers == null) {
+            return;
+         }
+         if (visualizerNames == null) {
+            visualizerNames = new ArrayList<>(Arrays.asList(visualizers));
+         } else {
+            visualizerNames.retainAll(Arrays.asList(visualizers));
+         }
+      }
+
+      List<JTBMessage> jtbMessages = new ArrayList<>(selection);
+      for (String visualizerName : visualizerNames) {
+         if (!(visualizersManager.isScriptVisualizer(visualizerName))) {
+            continue;
+         }
+
+         MDirectMenuItem dynamicItem = modelService.createModelElement(MDirectMenuItem.class);
+         dynamicItem.setLabel(visualizerName + " (" + jtbMessages.size() + " messages)");
+         dynamicItem.setIconURI(Constants.VISUALIZER_MENU_ICON);
+         dynamicItem.setContributorURI(Constants.BASE_CORE_PLUGIN);
+         dynamicItem.setContributionURI(Constants.VISUALIZER_MENU_URI);
+         dynamicItem.getTransientData().put(Constants.VISUALIZER_PARAM_NAME, visualizerName);
+         dynamicItem.getTransientData().put(Constants.VISUALIZER_PARAM_JTBMESSAGES, jtbMessages);
+
+         items.add(dynamicItem);
+      }
+   }
 }
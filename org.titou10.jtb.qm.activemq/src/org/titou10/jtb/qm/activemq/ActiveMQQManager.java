@@ -18,6 +18,7 @@ package org.titou10.jtb.qm.activemq;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -29,6 +30,8 @@ import java.util.TreeSet;
 
 import javax.jms.Connection;
 import javax.jms.JMSException;
+import javax.management.Attribute;
+import javax.management.AttributeList;
 import javax.management.AttributeNotFoundException;
 import javax.management.InstanceNotFoundException;
 import javax.management.MBeanException;
@@ -78,6 +81,9 @@ public class ActiveMQQManager extends QManager {
    private static final String                       JMX_QUEUE_LEGACY       = "org.apache.activemq:Type=Queue,Destination=%s,*";
    private static final String                       JMX_TOPIC_LEGACY       = "org.apache.activemq:Type=Topic,Destination=%s,*";
 
+   private static final String[]                     QUEUE_DEPTH_ATTRIBUTES = { "QueueSize" };
+   private static final String[]                     STRING_SIGNATURE       = { String.class.getName() };
+
    private static final String                       SYSTEM_PREFIX          = "ActiveMQ.";
 
    private static final String                       CR                     = "\n";
@@ -411,6 +417,99 @@ public class ActiveMQQManager extends QManager {
       return depth;
    }
 
+   @Override
+   public Map<String, Integer> getQueueDepths(Connection jmsConnection, Collection<String> queueNames) {
+
+      Integer hash = jmsConnection.hashCode();
+      MBeanServerConnection mbsc = mbscs.get(hash);
+      boolean legacy = useLegacys.get(hash);
+
+      Map<String, Integer> depths = new HashMap<>(queueNames.size());
+      for (String queueName : queueNames) {
+         depths.put(queueName, null);
+      }
+
+      // One query for all the queue MBeans instead of one query per queue
+      // JMX has no call to read an attribute of many MBeans, so "QueueSize" is still read once per MBean
+      Set<ObjectName> objectNames;
+      try {
+         objectNames = mbsc.queryNames(new ObjectName(legacy ? JMX_QUEUES_LEGACY : JMX_QUEUES), null);
+      } catch (Exception e) {
+         log.warn("Exception occurred when querying queue MBeans. Falling back to one call per queue: {}", e.getMessage());
+         return super.getQueueDepths(jmsConnection, queueNames);
+      }
+
+      for (ObjectName objectName : objectNames) {
+         String dName = objectName.getKeyProperty(legacy ? "Destination" : "destinationName");
+         if ((dName == null) || (!depths.containsKey(dName))) {
+            continue;
+         }
+         try {
+            AttributeList attributes = mbsc.getAttributes(objectName, QUEUE_DEPTH_ATTRIBUTES);
+            if (!attributes.isEmpty()) {
+               depths.put(dName, ((Long) ((Attribute) attributes.get(0)).getValue()).intValue());
+            }
+         } catch (Exception e) {
+            log.warn("Exception occurred when reading depth of queue '{}'. Retrying alone: {}", dName, e.getMessage());
+            depths.put(dName, getQueueDepth(jmsConnection, dName));
+         }
+      }
+      return depths;
+   }
+
+   @Override
+   public Integer purgeQueue(Connection jmsConnection, String queueName) {
+
+      Integer hash = jmsConnection.hashCode();
+      MBeanServerConnection mbsc = mbscs.get(hash);
+      boolean legacy = useLegacys.get(hash);
+
+      try {
+         ObjectName on = new ObjectName(String.format(legacy ? JMX_QUEUE_LEGACY : JMX_QUEUE, queueName));
+         Set<ObjectName> attributesSet = mbsc.queryNames(on, null);
+         if ((attributesSet == null) || (attributesSet.isEmpty())) {
+            return null;
+         }
+         ObjectName queueObjectName = attributesSet.iterator().next();
+
+         Long depth = (Long) mbsc.getAttribute(queueObjectName, "QueueSize");
+         mbsc.invoke(queueObjectName, "purge", null, null);
+         return depth.intValue();
+      } catch (Exception e) {
+         log.error("Exception when purging queue with JMX. Falling back to JMS", e);
+         return null;
+      }
+   }
+
+   @Override
+   public Integer removeMessages(Connection jmsConnection, String queueName, List<String> jmsMessageIDs) {
+
+      Integer hash = jmsConnection.hashCode();
+      MBeanServerConnection mbsc = mbscs.get(hash);
+      boolean legacy = useLegacys.get(hash);
+
+      try {
+         ObjectName on = new ObjectName(String.format(legacy ? JMX_QUEUE_LEGACY : JMX_QUEUE, queueName));
+         Set<ObjectName> attributesSet = mbsc.queryNames(on, null);
+         if ((attributesSet == null) || (attributesSet.isEmpty())) {
+            return null;
+         }
+         ObjectName queueObjectName = attributesSet.iterator().next();
+
+         int nb = 0;
+         for (String jmsMessageID : jmsMessageIDs) {
+            Boolean removed = (Boolean) mbsc.invoke(queueObjectName, "removeMessage", new Object[] { jmsMessageID }, STRING_SIGNATURE);
+            if (Boolean.TRUE.equals(removed)) {
+               nb++;
+            }
+         }
+         return nb;
+      } catch (Exception e) {
+         log.error("Exception when removing messages with JMX. Falling back to JMS", e);
+         return null;
+      }
+   }
+
    @Override
    public Map<String, Object> getQueueInformation(Connection jmsConnection, String queueName) {
 
@@ -20,6 +20,7 @@ package org.titou10.jtb.qm.artemis2;
 import java.text.SimpleDateFormat;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -36,7 +37,13 @@ import javax.jms.Queue;
 import javax.jms.QueueRequestor;
 import javax.jms.QueueSession;
 import javax.jms.Session;
+import javax.json.JsonArray;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
 
+import org.apache.activemq.artemis.api.core.JsonUtil;
 import org.apache.activemq.artemis.api.core.TransportConfiguration;
 import org.apache.activemq.artemis.api.core.management.ResourceNames;
 import org.apache.activemq.artemis.api.jms.ActiveMQJMSClient;
@@ -76,6 +83,9 @@ public class ActiveMQArtemis2QManager extends QManager {
    private static final String                EXTRA_PROPERTIES_SEP = ";";
    private static final String                EXTRA_PROPERTIES_VAL = "=";
 
+   private static final String                LIST_Q_NO_FILTER     = "{\"field\":\"\",\"operation\":\"\",\"value\":\"\"}";
+   private static final int                   LIST_Q_PAGE_SIZE     = 500;
+
    private static final String                HELP_TEXT;
 
    private List<QManagerProperty>             parameters           = new ArrayList<QManagerProperty>();
@@ -359,6 +369,74 @@ public class ActiveMQArtemis2QManager extends QManager {
       return n == null ? null : n.intValue();
    }
 
+   @Override
+   public Map<String, Integer> getQueueDepths(Connection jmsConnection, Collection<String> queueNames) {
+      Integer hash = jmsConnection.hashCode();
+      QueueRequestor requestorJMS = requestorJMSs.get(hash);
+      Session sessionJMS = sessionJMSs.get(hash);
+
+      // Use the "listQueues" operation of the broker, page by page, to get the message count of all the queues at once
+      // The depth of a JMS queue is the sum of the message count of the queues bound to the address with the same name
+      Map<String, Long> counts = new HashMap<>(queueNames.size());
+      try {
+         int page = 1;
+         int nbRead = 0;
+         int total;
+         do {
+            String json = sendAdminOperation(String.class,
+                                             sessionJMS,
+                                             requestorJMS,
+                                             ResourceNames.BROKER,
+                                             "listQueues",
+                                             LIST_Q_NO_FILTER,
+                                             page++,
+                                             LIST_Q_PAGE_SIZE);
+
+            JsonObject result = JsonUtil.readJsonObject(json);
+            total = result.getInt("count");
+            JsonArray data = result.getJsonArray("data");
+            for (JsonObject queue : data.getValuesAs(JsonObject.class)) {
+               String address = queue.getString("address");
+               counts.merge(address, jsonToLong(queue.get("messageCount")), Long::sum);
+            }
+            nbRead += data.size();
+            if (data.isEmpty()) {
+               break;
+            }
+         } while (nbRead < total);
+      } catch (Exception e) {
+         log.warn("Exception occurred when listing queues. Falling back to one call per queue: {}", e.getMessage());
+         return super.getQueueDepths(jmsConnection, queueNames);
+      }
+
+      Map<String, Integer> depths = new HashMap<>(queueNames.size());
+      for (String queueName : queueNames) {
+         Long count = counts.get(queueName);
+         depths.put(queueName, count == null ? null : count.intValue());
+      }
+      return depths;
+   }
+
+   @Override
+   public Integer purgeQueue(Connection jmsConnection, String queueName) {
+      Integer hash = jmsConnection.hashCode();
+      QueueRequestor requestorJMS = requestorJMSs.get(hash);
+      Session sessionJMS = sessionJMSs.get(hash);
+
+      // Source: org.apache.activemq.artemis.api.core.management.QueueControl
+      try {
+         Number n = sendAdminOperation(Number.class,
+                                       sessionJMS,
+                                       requestorJMS,
+                                       ResourceNames.QUEUE + queueName,
+                                       "removeAllMessages");
+         return n == null ? 0 : n.intValue();
+      } catch (Exception e) {
+         log.warn("Exception occurred when purging queue {}. Falling back to JMS: {}", queueName, e.getMessage());
+         return null;
+      }
+   }
+
    @Override
    public Map<String, Object> getQueueInformation(Connection jmsConnection, String queueName) {
 
@@ -511,6 +589,33 @@ public class ActiveMQArtemis2QManager extends QManager {
       return (T) JMSManagementHelper.getResult(r);
    }
 
+   @SuppressWarnings("unchecked")
+   private <T> T sendAdminOperation(Class<T> clazz,
+                                    Session sessionJMS,
+                                    QueueRequestor requestorJMS,
+                                    String resourceName,
+                                    String operationName,
+                                    Object... parameters) throws Exception {
+      Message m = sessionJMS.createMessage();
+      JMSManagementHelper.putOperationInvocation(m, resourceName, operationName, parameters);
+      Message r = requestorJMS.request(m);
+      if (!JMSManagementHelper.hasOperationSucceeded(r)) {
+         throw new Exception(String.valueOf(JMSManagementHelper.getResult(r)));
+      }
+      return (T) JMSManagementHelper.getResult(r);
+   }
+
+   private long jsonToLong(JsonValue value) {
+      // Depending on the version of the broker, numbers are returned as JSON strings or numbers
+      if (value instanceof JsonNumber) {
+         return ((JsonNumber) value).longValue();
+      }
+      if (value instanceof JsonString) {
+         return Long.parseLong(((JsonString) value).getString());
+      }
+      return 0L;
+   }
+
    private <T> T samNull(Class<T> clazz, Session sessionJMS, QueueRequestor requestorJMS, String resourceName, String methodName) {
       try {
          return sendAdminMessage(clazz, sessionJMS, requestorJMS, resourceName, methodName);
@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.LinkedHashMap;
@@ -410,6 +411,64 @@ public class MQQManager extends QManager {
       return depth;
    }
 
+   @Override
+   public Map<String, Integer> getQueueDepths(Connection jmsConnection, Collection<String> queueNames) {
+
+      Integer hash = jmsConnection.hashCode();
+      PCFMessageAgent agent = mqAgents.get(hash);
+
+      Map<String, Integer> depths = new HashMap<>(queueNames.size());
+
+      // One PCF request to get the current depth of all local queues
+      try {
+         PCFMessage request = new PCFMessage(CMQCFC.MQCMD_INQUIRE_Q);
+         request.addParameter(CMQC.MQCA_Q_NAME, "*");
+         request.addParameter(CMQC.MQIA_Q_TYPE, CMQC.MQQT_LOCAL);
+         request.addParameter(CMQCFC.MQIACF_Q_ATTRS, new int[] { CMQC.MQCA_Q_NAME, CMQC.MQIA_CURRENT_Q_DEPTH });
+
+         PCFMessage[] responses = agent.send(request);
+         for (PCFMessage response : responses) {
+            String qName = response.getStringParameterValue(CMQC.MQCA_Q_NAME).trim();
+            if (queueNames.contains(qName)) {
+               depths.put(qName, response.getIntParameterValue(CMQC.MQIA_CURRENT_Q_DEPTH));
+            }
+         }
+      } catch (MQException | IOException e) {
+         log.warn("Exception occurred when reading queue depths with PCF. Falling back to one call per queue: {}", e.getMessage());
+      }
+
+      // Queues not returned by the PCF request (alias queues, PCF request failed..)
+      for (String queueName : queueNames) {
+         if (!depths.containsKey(queueName)) {
+            depths.put(queueName, getQueueDepth(jmsConnection, queueName));
+         }
+      }
+
+      return depths;
+   }
+
+   @Override
+   public Integer purgeQueue(Connection jmsConnection, String queueName) {
+
+      Integer hash = jmsConnection.hashCode();
+      PCFMessageAgent agent = mqAgents.get(hash);
+
+      // MQCMD_CLEAR_Q fails if the queue is opened by an application or if there are uncommitted messages
+      try {
+         Integer depth = getQueueDepth(jmsConnection, queueName);
+
+         PCFMessage request = new PCFMessage(CMQCFC.MQCMD_CLEAR_Q);
+         request.addParameter(CMQC.MQCA_Q_NAME, queueName);
+         agent.send(request);
+
+         log.debug("Queue {} cleared. Depth before clear: {}", queueName, depth);
+         return depth == null ? 0 : depth;
+      } catch (MQException | IOException e) {
+         log.warn("Exception occurred when clearing queue {} with PCF. Falling back to JMS: {}", queueName, e.getMessage());
+         return null;
+      }
+   }
+
    @Override
    public Map<String, Object> getQueueInformation(Connection jmsConnection, String queueName) {
 
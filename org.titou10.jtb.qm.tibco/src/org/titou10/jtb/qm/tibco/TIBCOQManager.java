@@ -340,6 +340,21 @@ public class TIBCOQManager extends QManager {
       }
    }
 
+   @Override
+   public Integer purgeQueue(Connection jmsConnection, String queueName) {
+      Integer hash = jmsConnection.hashCode();
+      TibjmsAdmin tibcoAdmin = queueManagers.get(hash);
+
+      try {
+         Integer depth = getQueueDepth(jmsConnection, queueName);
+         tibcoAdmin.purgeQueue(queueName);
+         return depth == null ? 0 : depth;
+      } catch (TibjmsAdminException e) {
+         log.warn("Exception occured while purging queue {}. Falling back to JMS. Msg={}", queueName, e.getMessage());
+         return null;
+      }
+   }
+
    @Override
    public Map<String, Object> getQueueInformation(Connection jmsConnection, String queueName) {
       Map<String, Object> properties = new LinkedHashMap<>();
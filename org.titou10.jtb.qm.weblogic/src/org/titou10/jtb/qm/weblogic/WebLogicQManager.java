@@ -330,6 +330,12 @@ public class WebLogicQManager extends QManager {
       }
    }
 
+   @Override
+   public boolean supportsConcurrentQueueDepth() {
+      // MBeanServerConnection is thread safe
+      return true;
+   }
+
    @Override
    public Integer getQueueDepth(Connection jmsConnection, String queueName) {
       Integer hash = jmsConnection.hashCode();
@@ -346,6 +352,25 @@ public class WebLogicQManager extends QManager {
       return depth;
    }
 
+   @Override
+   public Integer purgeQueue(Connection jmsConnection, String queueName) {
+      Integer hash = jmsConnection.hashCode();
+      MBeanServerConnection mbsc = mbscs.get(hash);
+      Map<Integer, ObjectName> destinationObjectNames = destinationONPerConnection.get(hash);
+
+      try {
+         // An empty selector selects all the messages
+         Integer nb = (Integer) mbsc.invoke(destinationObjectNames.get(queueName.hashCode()),
+                                            "deleteMessages",
+                                            new Object[] { "" },
+                                            new String[] { String.class.getName() });
+         return nb;
+      } catch (Exception e) {
+         log.error("Exception when purging queue with JMX. Falling back to JMS", e);
+         return null;
+      }
+   }
+
    @Override
    public Map<String, Object> getQueueInformation(Connection jmsConnection, String queueName) {
       return getDestinationInformation(jmsConnection, queueName);
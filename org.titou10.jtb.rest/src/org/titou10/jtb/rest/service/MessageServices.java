@@ -122,8 +122,9 @@ public class MessageServices {
    }
 
    // -----------------------------------------------------------------------
-   // Post/Publish a message to Session:Destination from a Template
-   // POST /rest/message/<sessionName>/<destinationName>/<templateName>
+   // Post/Publish messages to Session:Destination from a Template
+   // POST /rest/message/<sessionName>/<destinationName>/<templateName>?count=n&batchSize=b
+   // defaults: count=1, batchSize=1
    // -----------------------------------------------------------------------
 
    @POST
@@ -131,15 +132,23 @@ public class MessageServices {
    @Produces(MediaType.APPLICATION_JSON)
    public Response postMessageTemplate(@PathParam(Constants.P_SESSION_NAME) String sessionName,
                                        @PathParam(Constants.P_DESTINATION_NAME) String destinationName,
-                                       @PathParam(Constants.P_TEMPLATE_NAME) String templateName) {
-      log.debug("postMessageTemplate. sessionName={} destinationName={} templateName={}",
+                                       @PathParam(Constants.P_TEMPLATE_NAME) String templateName,
+                                       @DefaultValue("1") @QueryParam(Constants.P_COUNT) int count,
+                                       @DefaultValue("1") @QueryParam(Constants.P_BATCH_SIZE) int batchSize) {
+      log.debug("postMessageTemplate. sessionName={} destinationName={} templateName={} count={} batchSize={}",
                 sessionName,
                 destinationName,
-                templateName);
+                templateName,
+                count,
+                batchSize);
+
+      if ((count < 1) || (batchSize < 1)) {
+         return Response.status(Response.Status.BAD_REQUEST).entity("count and batchSize must be greater than 0").build();
+      }
 
       try {
 
-         MessageOutput message = eConfigManager.postMessageTemplate(sessionName, destinationName, templateName);
+         MessageOutput message = eConfigManager.postMessageTemplate(sessionName, destinationName, templateName, count, batchSize);
          log.debug("message={}", message);
          return Response.status(Response.Status.CREATED).entity(message).build();
 
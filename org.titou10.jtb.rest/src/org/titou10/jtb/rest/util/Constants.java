@@ -49,6 +49,8 @@ public final class Constants {
    public static final String  P_SCRIPT_NAME                 = "scriptName";
    public static final String  P_MODE                        = "mode";
    public static final String  P_LIMIT                       = "limit";
+   public static final String  P_COUNT                       = "count";
+   public static final String  P_BATCH_SIZE                  = "batchSize";
 
    private Constants() {
       // NOP